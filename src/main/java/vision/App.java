@@ -4,9 +4,11 @@ import java.io.File;
 
 import vision.neuralnetwork.NeuralNetwork;
 import vision.neuralnetwork.Transform;
+import vision.neuralnetwork.loader.CachingLoader;
 import vision.neuralnetwork.loader.Loader;
-import vision.neuralnetwork.loader.MetaData;
+import vision.neuralnetwork.loader.PrefetchLoader;
 import vision.neuralnetwork.loader.image.ImageLoader;
+import vision.neuralnetwork.loader.image.ImageMetaData;
 
 public class App {
 
@@ -25,46 +27,55 @@ public class App {
 		final String testImages = String.format("%s%s%s", directory, File.separator, "t10k-images.idx3-ubyte");
 		final String testLabels = String.format("%s%s%s", directory, File.separator, "t10k-labels.idx1-ubyte");
 
-		Loader trainLoader = new ImageLoader(trainImages, trainLabels, 32);
-		Loader testLoader = new ImageLoader(testImages, testLabels, 32);
+		ImageLoader trainImageLoader = new ImageLoader(trainImages, trainLabels, 32);
+		trainImageLoader.setShuffle(true);
+
+		Loader trainLoader = new PrefetchLoader(trainImageLoader, 2, 64);
+		Loader testLoader = new PrefetchLoader(new CachingLoader(new ImageLoader(testImages, testLabels, 32), 256L << 20), 2, 64);
 
 		System.out.println(Runtime.getRuntime().availableProcessors() + " processors available");
 
-		MetaData metaData = trainLoader.open();
-		int inputSize = metaData.getInputSize();
+		ImageMetaData metaData = trainImageLoader.open();
+		int width = metaData.getWidth();
+		int height = metaData.getHeight();
 		int outputSize = metaData.getExpectedSize();
-		trainLoader.close();
+		trainImageLoader.close();
+
+		NeuralNetwork neuralNetwork;
 
-		NeuralNetwork neuralNetwork = NeuralNetwork.load(filename);
+		if (new File(filename).exists()) {
+			neuralNetwork = NeuralNetwork.load(filename);
 
-		if (neuralNetwork == null) {
-			System.out.println("Unable to load neural network from saved file. Creating new network.");
+			System.out.println("Neural network loaded from saved file: " + filename + "\n");
+		} else {
+			System.out.println("No saved neural network found. Creating new network.");
 
 			neuralNetwork = new NeuralNetwork();
 			
-			neuralNetwork.setScaleInitialWeights(0.2);
+			neuralNetwork.setScaleInitialWeights(0.1);
 			neuralNetwork.setThreads(32);
 			neuralNetwork.setEpochs(100);
 			neuralNetwork.setLearningRate(0.02, 0.001);
 			
-			neuralNetwork.add(Transform.DENSE, 200, inputSize);
+			neuralNetwork.setInputShape(1, height, width);
+			neuralNetwork.add(Transform.CONV2D, 8, 5, 1, 2);
+			neuralNetwork.add(Transform.RELU);
+			neuralNetwork.add(Transform.MAXPOOL, 2);
+			neuralNetwork.add(Transform.CONV2D, 16, 3, 1, 1);
 			neuralNetwork.add(Transform.RELU);
+			neuralNetwork.add(Transform.MAXPOOL, 2);
 			neuralNetwork.add(Transform.DENSE, outputSize);
 			neuralNetwork.add(Transform.SOFTMAX);
-
-			
-		} else {
-			System.out.println("Neural network loaded from saved file: " + filename + "\n");
 		}
 
+		neuralNetwork.setCheckpoint(filename, 1);
+		neuralNetwork.setEarlyStopping(5, 0.001);
+
 		System.out.println(neuralNetwork);
 
 		neuralNetwork.fit(trainLoader, testLoader);
-		if (neuralNetwork.save(filename)) {
-			System.out.println("Neural network saved to file: " + filename);
-		} else {
-			System.out.println("Unable to save neural network to: " + filename);
-		}
+		neuralNetwork.save(filename);
+		System.out.println("Neural network saved to file: " + filename);
 	}
 
 }
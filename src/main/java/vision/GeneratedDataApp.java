@@ -1,5 +1,7 @@
 package vision;
 
+import java.io.File;
+
 import vision.neuralnetwork.NeuralNetwork;
 import vision.neuralnetwork.Transform;
 import vision.neuralnetwork.loader.Loader;
@@ -10,10 +12,14 @@ public class GeneratedDataApp {
 		String filename = "neural1.net";
 		System.out.println(Runtime.getRuntime().availableProcessors() + " processors available");
 		
-		NeuralNetwork neuralNetwork = NeuralNetwork.load(filename);
+		NeuralNetwork neuralNetwork;
 		
-		if (neuralNetwork == null) {
-			System.out.println("Unable to load neural network from saved file. Creating new network.");
+		if (new File(filename).exists()) {
+			neuralNetwork = NeuralNetwork.load(filename);
+			
+			System.out.println("Neural network loaded from saved file: " + filename + "\n");
+		} else {
+			System.out.println("No saved neural network found. Creating new network.");
 			
 			int inputRows = 10;
 			int outputRows = 3;
@@ -30,8 +36,6 @@ public class GeneratedDataApp {
 			neuralNetwork.setThreads(32);
 			neuralNetwork.setEpochs(100);
 			neuralNetwork.setLearningRate(0.02, 0.001);
-		}else {
-			System.out.println("Neural network loaded from saved file: " + filename + "\n");
 		}
 		
 		System.out.println(neuralNetwork);
@@ -40,10 +44,7 @@ public class GeneratedDataApp {
 		Loader testLoader = new TestLoader(10_000, 32);
 		
 		neuralNetwork.fit(trainLoader, testLoader);
-		if(neuralNetwork.save(filename)) {
-			System.out.println("Neural network saved to file: " + filename);
-		}else {
-			System.out.println("Unable to save neural network to: " + filename);
-		}
+		neuralNetwork.save(filename);
+		System.out.println("Neural network saved to file: " + filename);
 	}
 }
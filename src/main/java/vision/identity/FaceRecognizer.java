@@ -0,0 +1,106 @@
+package vision.identity;
+
+import java.util.List;
+
+import vision.neuralnetwork.NeuralNetwork;
+
+/*
+ * Identifies faces by the embeddings a trained network gives them, the
+ * output of its layer before the final dense layer. Faces are inputs in
+ * the network's own input layout.
+ *
+ * Searches scan the whole gallery until approximate search is turned on
+ * and the gallery reaches its minimum size. An index is then built and
+ * rebuilt whenever a tenth of the gallery has been enrolled since, or
+ * after a removal.
+ */
+public class FaceRecognizer {
+	private final NeuralNetwork neuralNetwork;
+	private final Gallery gallery;
+
+	private int approximateMinimumSize = Integer.MAX_VALUE;
+	private int lists;
+	private int probes;
+	private volatile IvfIndex index;
+
+	public FaceRecognizer(NeuralNetwork neuralNetwork) {
+		this.neuralNetwork = neuralNetwork;
+		this.gallery = new Gallery(neuralNetwork.getEmbeddingSize());
+	}
+
+	public Gallery getGallery() {
+		return gallery;
+	}
+
+	/*
+	 * Uses an IvfIndex with the given number of lists and probes once the
+	 * gallery holds at least minimumSize embeddings; a list count of zero
+	 * means the square root of the gallery size.
+	 */
+	public void setApproximateSearch(int minimumSize, int lists, int probes) {
+		this.approximateMinimumSize = minimumSize;
+		this.lists = lists;
+		this.probes = probes;
+
+		index = null;
+	}
+
+	public void enroll(String person, double[] face) {
+		gallery.enroll(person, neuralNetwork.embed(face));
+	}
+
+	/*
+	 * Enrolls count faces of the person, one after the other in faces.
+	 */
+	public void enroll(String person, double[] faces, int count) {
+		int dimension = gallery.getDimension();
+		float[] embeddings = neuralNetwork.embedBatch(faces, count);
+
+		for (int i = 0; i < count; i++) {
+			float[] embedding = new float[dimension];
+
+			System.arraycopy(embeddings, i * dimension, embedding, 0, dimension);
+			gallery.enroll(person, embedding);
+		}
+	}
+
+	public boolean remove(String person) {
+		return gallery.remove(person);
+	}
+
+	/*
+	 * The k enrolled people the face most resembles, best first.
+	 */
+	public List<Match> identify(double[] face, int k) {
+		return gallery.search(neuralNetwork.embed(face), k, getIndex());
+	}
+
+	private IvfIndex getIndex() {
+		int size = gallery.getSize();
+
+		if (size < approximateMinimumSize) {
+			return null;
+		}
+
+		IvfIndex current = index;
+
+		if (isStale(current, size)) {
+			synchronized (this) {
+				current = index;
+
+				if (isStale(current, size)) {
+					int listCount = lists > 0 ? lists : (int) Math.sqrt(size);
+
+					current = gallery.buildIndex(listCount, probes, 0);
+					index = current;
+				}
+			}
+		}
+
+		return current;
+	}
+
+	private boolean isStale(IvfIndex current, int size) {
+		return current == null || !gallery.isIndexed(current) || size - current.getSize() > current.getSize() / 10;
+	}
+}
@@ -0,0 +1,248 @@
+package vision.identity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import vision.matrix.VectorOps;
+
+/*
+ * The enrolled embeddings of every known person. Embeddings are scaled to
+ * unit length and packed one after another in a single float array, so a
+ * query is a sequential scan of dot products (cosine similarities) with
+ * the SIMD kernels. Each person keeps only their best score, and the top
+ * k people are returned.
+ *
+ * Searches may run on many threads at once; enrolling and removing wait
+ * for them to finish.
+ */
+public class Gallery {
+	private static final VectorOps ops = VectorOps.create();
+
+	private final int dimension;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private float[] embeddings = new float[0];
+	private int[] owners = new int[0];
+	private int size;
+
+	/*
+	 * Person ids index this list and are never reused; a removed person's
+	 * entry is null. The generation changes whenever rows move.
+	 */
+	private ArrayList<String> persons = new ArrayList<>();
+	private HashMap<String, Integer> ids = new HashMap<>();
+	private int generation;
+
+	public Gallery(int dimension) {
+		this.dimension = dimension;
+	}
+
+	public int getDimension() {
+		return dimension;
+	}
+
+	/*
+	 * The number of enrolled embeddings.
+	 */
+	public int getSize() {
+		lock.readLock().lock();
+
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int getPersonCount() {
+		lock.readLock().lock();
+
+		try {
+			return ids.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public void enroll(String person, float[] embedding) {
+		float[] unit = normalize(embedding);
+
+		lock.writeLock().lock();
+
+		try {
+			Integer id = ids.get(person);
+
+			if (id == null) {
+				id = persons.size();
+				persons.add(person);
+				ids.put(person, id);
+			}
+
+			if (size == owners.length) {
+				int capacity = Math.max(16, size * 2);
+
+				embeddings = Arrays.copyOf(embeddings, capacity * dimension);
+				owners = Arrays.copyOf(owners, capacity);
+			}
+
+			System.arraycopy(unit, 0, embeddings, size * dimension, dimension);
+			owners[size++] = id;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * Removes every embedding of the person, closing up the gap.
+	 */
+	public boolean remove(String person) {
+		lock.writeLock().lock();
+
+		try {
+			Integer id = ids.remove(person);
+
+			if (id == null) {
+				return false;
+			}
+
+			persons.set(id, null);
+
+			int kept = 0;
+
+			for (int row = 0; row < size; row++) {
+				if (owners[row] != id) {
+					System.arraycopy(embeddings, row * dimension, embeddings, kept * dimension, dimension);
+					owners[kept++] = owners[row];
+				}
+			}
+
+			size = kept;
+			generation++;
+
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * The k people most similar to the query, most similar first.
+	 */
+	public List<Match> search(float[] query, int k) {
+		return search(query, k, null);
+	}
+
+	/*
+	 * As search, but the rows the index was built from are scored by the
+	 * index; rows enrolled since are still scanned exactly. An index built
+	 * before a removal is ignored.
+	 */
+	public List<Match> search(float[] query, int k, IvfIndex index) {
+		float[] unit = normalize(query);
+
+		lock.readLock().lock();
+
+		try {
+			float[] best = new float[persons.size()];
+			Arrays.fill(best, Float.NEGATIVE_INFINITY);
+
+			int from = 0;
+
+			if (index != null && covers(index)) {
+				index.score(unit, best);
+				from = index.getSize();
+			}
+
+			for (int row = from; row < size; row++) {
+				float similarity = (float) ops.dot(embeddings, row * dimension, unit, 0, dimension);
+				int owner = owners[row];
+
+				if (similarity > best[owner]) {
+					best[owner] = similarity;
+				}
+			}
+
+			return top(best, k);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * Clusters the current embeddings into an approximate index. See
+	 * IvfIndex. Unless the gallery is empty, lists must be at least one.
+	 */
+	public IvfIndex buildIndex(int lists, int probes, long seed) {
+		lock.readLock().lock();
+
+		try {
+			return new IvfIndex(this, embeddings, owners, size, generation, lists, probes, seed);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * Whether the index covers a prefix of this gallery's rows.
+	 */
+	public boolean isIndexed(IvfIndex index) {
+		lock.readLock().lock();
+
+		try {
+			return covers(index);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private boolean covers(IvfIndex index) {
+		return index.getGallery() == this && index.getGeneration() == generation && index.getSize() <= size;
+	}
+
+	private List<Match> top(float[] best, int k) {
+		ArrayList<Match> matches = new ArrayList<>();
+
+		for (int id = 0; id < best.length && k > 0; id++) {
+			if (best[id] == Float.NEGATIVE_INFINITY) {
+				continue;
+			}
+
+			if (matches.size() == k && best[id] <= matches.get(k - 1).getSimilarity()) {
+				continue;
+			}
+
+			Match match = new Match(persons.get(id), best[id]);
+			int position = matches.size();
+
+			while (position > 0 && matches.get(position - 1).getSimilarity() < match.getSimilarity()) {
+				position--;
+			}
+
+			matches.add(position, match);
+
+			if (matches.size() > k) {
+				matches.remove(k);
+			}
+		}
+
+		return matches;
+	}
+
+	float[] normalize(float[] embedding) {
+		if (embedding.length != dimension) {
+			throw new IllegalArgumentException("Embedding has " + embedding.length + " values; expected " + dimension);
+		}
+
+		double length = Math.sqrt(ops.dot(embedding, 0, embedding, 0, dimension));
+		float[] unit = new float[dimension];
+
+		for (int i = 0; i < dimension; i++) {
+			unit[i] = length == 0 ? 0 : (float) (embedding[i] / length);
+		}
+
+		return unit;
+	}
+}
@@ -0,0 +1,230 @@
+package vision.identity;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import vision.matrix.VectorOps;
+
+/*
+ * An approximate search index over a gallery (an inverted file). Spherical
+ * k-means splits the embeddings into lists around unit centroids, and the
+ * embeddings are repacked list by list. A query scores every centroid and
+ * then scans only the lists of the best few, the probes, so it reads about
+ * probes / lists of the gallery. Around the square root of the gallery
+ * size is a usual number of lists; more probes trade speed for recall.
+ *
+ * The index is a snapshot built by Gallery.buildIndex. Rows enrolled after
+ * it was built are scanned exactly by the gallery, and a removal makes the
+ * gallery ignore the index until it is rebuilt.
+ */
+public class IvfIndex {
+	private static final VectorOps ops = VectorOps.create();
+	private static final int ITERATIONS = 8;
+	private static final int SAMPLES_PER_LIST = 64;
+
+	private final Gallery gallery;
+	private final int dimension;
+	private final int size;
+	private final int generation;
+	private final int lists;
+	private final int probes;
+
+	private final float[] centroids;
+	private final int[] offsets;
+	private final float[] embeddings;
+	private final int[] owners;
+
+	IvfIndex(Gallery gallery, float[] source, int[] sourceOwners, int size, int generation, int lists, int probes, long seed) {
+		if (lists < 1 && size > 0) {
+			throw new IllegalArgumentException("Index of " + size + " embeddings has " + lists + " lists; expected at least 1");
+		}
+
+		this.gallery = gallery;
+		this.dimension = gallery.getDimension();
+		this.size = size;
+		this.generation = generation;
+		this.lists = Math.max(0, Math.min(lists, size));
+		this.probes = Math.max(1, Math.min(probes, this.lists));
+
+		centroids = train(source, new Random(seed));
+
+		int[] assignments = new int[size];
+		offsets = new int[this.lists + 1];
+
+		for (int row = 0; row < size; row++) {
+			assignments[row] = nearest(source, row * dimension);
+			offsets[assignments[row] + 1]++;
+		}
+
+		for (int list = 0; list < this.lists; list++) {
+			offsets[list + 1] += offsets[list];
+		}
+
+		int[] next = offsets.clone();
+
+		embeddings = new float[size * dimension];
+		owners = new int[size];
+
+		for (int row = 0; row < size; row++) {
+			int packed = next[assignments[row]]++;
+
+			System.arraycopy(source, row * dimension, embeddings, packed * dimension, dimension);
+			owners[packed] = sourceOwners[row];
+		}
+	}
+
+	/*
+	 * k-means on a random sample of the rows, comparing by dot product and
+	 * keeping each centroid at unit length. A list left empty is moved to
+	 * another sampled row.
+	 */
+	private float[] train(float[] source, Random random) {
+		int samples = Math.min(size, SAMPLES_PER_LIST * lists);
+		int[] rows = new int[size];
+
+		for (int row = 0; row < size; row++) {
+			rows[row] = row;
+		}
+
+		for (int i = 0; i < samples; i++) {
+			int j = i + random.nextInt(size - i);
+			int row = rows[i];
+
+			rows[i] = rows[j];
+			rows[j] = row;
+		}
+
+		float[] result = new float[lists * dimension];
+
+		for (int list = 0; list < lists; list++) {
+			System.arraycopy(source, rows[list] * dimension, result, list * dimension, dimension);
+		}
+
+		double[] sums = new double[lists * dimension];
+		int[] counts = new int[lists];
+
+		for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+			Arrays.fill(sums, 0);
+			Arrays.fill(counts, 0);
+
+			for (int i = 0; i < samples; i++) {
+				int offset = rows[i] * dimension;
+				int list = nearest(source, offset, result);
+
+				for (int d = 0; d < dimension; d++) {
+					sums[list * dimension + d] += source[offset + d];
+				}
+
+				counts[list]++;
+			}
+
+			for (int list = 0; list < lists; list++) {
+				if (counts[list] == 0) {
+					System.arraycopy(source, rows[random.nextInt(samples)] * dimension, result, list * dimension, dimension);
+					continue;
+				}
+
+				double length = 0;
+
+				for (int d = 0; d < dimension; d++) {
+					length += sums[list * dimension + d] * sums[list * dimension + d];
+				}
+
+				length = Math.sqrt(length);
+
+				for (int d = 0; d < dimension; d++) {
+					result[list * dimension + d] = length == 0 ? 0 : (float) (sums[list * dimension + d] / length);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private int nearest(float[] source, int offset) {
+		return nearest(source, offset, centroids);
+	}
+
+	private int nearest(float[] source, int offset, float[] centres) {
+		int best = 0;
+		double bestScore = Double.NEGATIVE_INFINITY;
+
+		for (int list = 0; list < lists; list++) {
+			double score = ops.dot(centres, list * dimension, source, offset, dimension);
+
+			if (score > bestScore) {
+				bestScore = score;
+				best = list;
+			}
+		}
+
+		return best;
+	}
+
+	/*
+	 * Raises each person's best similarity to the unit query from the
+	 * rows in the probed lists.
+	 */
+	void score(float[] query, float[] best) {
+		if (lists == 0) {
+			return;
+		}
+
+		int[] probed = new int[probes];
+		double[] probedScores = new double[probes];
+		int count = 0;
+
+		for (int list = 0; list < lists; list++) {
+			double score = ops.dot(centroids, list * dimension, query, 0, dimension);
+
+			if (count == probes && score <= probedScores[probes - 1]) {
+				continue;
+			}
+
+			int position = count < probes ? count++ : probes - 1;
+
+			while (position > 0 && probedScores[position - 1] < score) {
+				probed[position] = probed[position - 1];
+				probedScores[position] = probedScores[position - 1];
+				position--;
+			}
+
+			probed[position] = list;
+			probedScores[position] = score;
+		}
+
+		for (int list : probed) {
+			for (int row = offsets[list]; row < offsets[list + 1]; row++) {
+				float similarity = (float) ops.dot(embeddings, row * dimension, query, 0, dimension);
+				int owner = owners[row];
+
+				if (similarity > best[owner]) {
+					best[owner] = similarity;
+				}
+			}
+		}
+	}
+
+	Gallery getGallery() {
+		return gallery;
+	}
+
+	int getGeneration() {
+		return generation;
+	}
+
+	/*
+	 * The number of gallery rows the index was built from.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	public int getLists() {
+		return lists;
+	}
+
+	public int getProbes() {
+		return probes;
+	}
+}
@@ -0,0 +1,28 @@
+package vision.identity;
+
+/*
+ * A person found by a search, with the cosine similarity between the
+ * query and the closest of their enrolled embeddings.
+ */
+public class Match {
+	private final String person;
+	private final float similarity;
+
+	Match(String person, float similarity) {
+		this.person = person;
+		this.similarity = similarity;
+	}
+
+	public String getPerson() {
+		return person;
+	}
+
+	public float getSimilarity() {
+		return similarity;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s (%.3f)", person, similarity);
+	}
+}
@@ -0,0 +1,326 @@
+package vision.matrix;
+
+import java.util.Arrays;
+
+/*
+ * Kernels that lower convolution and max pooling onto matrices holding
+ * one item per column. An image is stored down its column channel by
+ * channel and row by row, so each pixel is a matrix row whose values for
+ * the whole batch are contiguous.
+ *
+ * im2col writes one row per channel and window tap, and one column per
+ * output position and item, position-major. A filters x taps weight
+ * matrix times these columns is then, read row by row, already the
+ * convolution's output in the same image layout as its input.
+ * Every routine has a double and a float overload.
+ */
+public final class Convolutions {
+
+	private Convolutions() {
+	}
+
+	/*
+	 * Copies each window tap of the input into its row of columns; taps
+	 * that fall in the padding are zero.
+	 */
+	public static void im2col(double[] input, double[] columns, Window window, int items) {
+		int size = window.getSize();
+		int stride = window.getStride();
+		int padding = window.getPadding();
+		int height = window.getHeight();
+		int width = window.getWidth();
+		int outputHeight = window.getOutputHeight();
+		int outputWidth = window.getOutputWidth();
+
+		int index = 0;
+
+		for (int channel = 0; channel < window.getChannels(); channel++) {
+			for (int ky = 0; ky < size; ky++) {
+				for (int kx = 0; kx < size; kx++) {
+					for (int oy = 0; oy < outputHeight; oy++) {
+						int y = oy * stride + ky - padding;
+
+						for (int ox = 0; ox < outputWidth; ox++) {
+							int x = ox * stride + kx - padding;
+
+							if (y < 0 || y >= height || x < 0 || x >= width) {
+								Arrays.fill(columns, index, index + items, 0);
+							} else {
+								System.arraycopy(input, ((channel * height + y) * width + x) * items, columns, index, items);
+							}
+
+							index += items;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * The reverse of im2col: clears the image, then adds every tap in
+	 * columns back onto the pixel it was copied from.
+	 */
+	public static void col2im(double[] columns, double[] image, Window window, int items) {
+		int size = window.getSize();
+		int stride = window.getStride();
+		int padding = window.getPadding();
+		int height = window.getHeight();
+		int width = window.getWidth();
+		int outputHeight = window.getOutputHeight();
+		int outputWidth = window.getOutputWidth();
+
+		Arrays.fill(image, 0, window.getInputSize() * items, 0);
+
+		int index = 0;
+
+		for (int channel = 0; channel < window.getChannels(); channel++) {
+			for (int ky = 0; ky < size; ky++) {
+				for (int kx = 0; kx < size; kx++) {
+					for (int oy = 0; oy < outputHeight; oy++) {
+						int y = oy * stride + ky - padding;
+
+						for (int ox = 0; ox < outputWidth; ox++) {
+							int x = ox * stride + kx - padding;
+
+							if (y >= 0 && y < height && x >= 0 && x < width) {
+								int pixel = ((channel * height + y) * width + x) * items;
+
+								for (int item = 0; item < items; item++) {
+									image[pixel + item] += columns[index + item];
+								}
+							}
+
+							index += items;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * The largest value under the window at each position, channel by
+	 * channel. Pooling windows have no padding.
+	 */
+	public static void maxPool(double[] input, double[] output, Window window, int items) {
+		int size = window.getSize();
+		int stride = window.getStride();
+		int height = window.getHeight();
+		int width = window.getWidth();
+		int outputHeight = window.getOutputHeight();
+		int outputWidth = window.getOutputWidth();
+
+		int index = 0;
+
+		for (int channel = 0; channel < window.getChannels(); channel++) {
+			for (int oy = 0; oy < outputHeight; oy++) {
+				for (int ox = 0; ox < outputWidth; ox++) {
+					int corner = (channel * height + oy * stride) * width + ox * stride;
+
+					System.arraycopy(input, corner * items, output, index, items);
+
+					for (int ky = 0; ky < size; ky++) {
+						for (int kx = ky == 0 ? 1 : 0; kx < size; kx++) {
+							int pixel = (corner + ky * width + kx) * items;
+
+							for (int item = 0; item < items; item++) {
+								output[index + item] = Math.max(output[index + item], input[pixel + item]);
+							}
+						}
+					}
+
+					index += items;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Routes the error at each pooled value back to the first input under
+	 * its window that holds the maximum, so nothing has to be recorded on
+	 * the forward pass. Clears inputError first.
+	 */
+	public static void maxPoolError(double[] input, double[] output, double[] error, double[] inputError, Window window, int items) {
+		int size = window.getSize();
+		int stride = window.getStride();
+		int height = window.getHeight();
+		int width = window.getWidth();
+		int outputHeight = window.getOutputHeight();
+		int outputWidth = window.getOutputWidth();
+
+		Arrays.fill(inputError, 0, window.getInputSize() * items, 0);
+
+		int index = 0;
+
+		for (int channel = 0; channel < window.getChannels(); channel++) {
+			for (int oy = 0; oy < outputHeight; oy++) {
+				for (int ox = 0; ox < outputWidth; ox++) {
+					int corner = (channel * height + oy * stride) * width + ox * stride;
+
+					for (int item = 0; item < items; item++) {
+						double max = output[index + item];
+
+						taps:
+						for (int ky = 0; ky < size; ky++) {
+							for (int kx = 0; kx < size; kx++) {
+								int pixel = (corner + ky * width + kx) * items + item;
+
+								if (input[pixel] == max) {
+									inputError[pixel] += error[index + item];
+									break taps;
+								}
+							}
+						}
+					}
+
+					index += items;
+				}
+			}
+		}
+	}
+
+	public static void im2col(float[] input, float[] columns, Window window, int items) {
+		int size = window.getSize();
+		int stride = window.getStride();
+		int padding = window.getPadding();
+		int height = window.getHeight();
+		int width = window.getWidth();
+		int outputHeight = window.getOutputHeight();
+		int outputWidth = window.getOutputWidth();
+
+		int index = 0;
+
+		for (int channel = 0; channel < window.getChannels(); channel++) {
+			for (int ky = 0; ky < size; ky++) {
+				for (int kx = 0; kx < size; kx++) {
+					for (int oy = 0; oy < outputHeight; oy++) {
+						int y = oy * stride + ky - padding;
+
+						for (int ox = 0; ox < outputWidth; ox++) {
+							int x = ox * stride + kx - padding;
+
+							if (y < 0 || y >= height || x < 0 || x >= width) {
+								Arrays.fill(columns, index, index + items, 0);
+							} else {
+								System.arraycopy(input, ((channel * height + y) * width + x) * items, columns, index, items);
+							}
+
+							index += items;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	public static void col2im(float[] columns, float[] image, Window window, int items) {
+		int size = window.getSize();
+		int stride = window.getStride();
+		int padding = window.getPadding();
+		int height = window.getHeight();
+		int width = window.getWidth();
+		int outputHeight = window.getOutputHeight();
+		int outputWidth = window.getOutputWidth();
+
+		Arrays.fill(image, 0, window.getInputSize() * items, 0);
+
+		int index = 0;
+
+		for (int channel = 0; channel < window.getChannels(); channel++) {
+			for (int ky = 0; ky < size; ky++) {
+				for (int kx = 0; kx < size; kx++) {
+					for (int oy = 0; oy < outputHeight; oy++) {
+						int y = oy * stride + ky - padding;
+
+						for (int ox = 0; ox < outputWidth; ox++) {
+							int x = ox * stride + kx - padding;
+
+							if (y >= 0 && y < height && x >= 0 && x < width) {
+								int pixel = ((channel * height + y) * width + x) * items;
+
+								for (int item = 0; item < items; item++) {
+									image[pixel + item] += columns[index + item];
+								}
+							}
+
+							index += items;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	public static void maxPool(float[] input, float[] output, Window window, int items) {
+		int size = window.getSize();
+		int stride = window.getStride();
+		int height = window.getHeight();
+		int width = window.getWidth();
+		int outputHeight = window.getOutputHeight();
+		int outputWidth = window.getOutputWidth();
+
+		int index = 0;
+
+		for (int channel = 0; channel < window.getChannels(); channel++) {
+			for (int oy = 0; oy < outputHeight; oy++) {
+				for (int ox = 0; ox < outputWidth; ox++) {
+					int corner = (channel * height + oy * stride) * width + ox * stride;
+
+					System.arraycopy(input, corner * items, output, index, items);
+
+					for (int ky = 0; ky < size; ky++) {
+						for (int kx = ky == 0 ? 1 : 0; kx < size; kx++) {
+							int pixel = (corner + ky * width + kx) * items;
+
+							for (int item = 0; item < items; item++) {
+								output[index + item] = Math.max(output[index + item], input[pixel + item]);
+							}
+						}
+					}
+
+					index += items;
+				}
+			}
+		}
+	}
+
+	public static void maxPoolError(float[] input, float[] output, float[] error, float[] inputError, Window window, int items) {
+		int size = window.getSize();
+		int stride = window.getStride();
+		int height = window.getHeight();
+		int width = window.getWidth();
+		int outputHeight = window.getOutputHeight();
+		int outputWidth = window.getOutputWidth();
+
+		Arrays.fill(inputError, 0, window.getInputSize() * items, 0);
+
+		int index = 0;
+
+		for (int channel = 0; channel < window.getChannels(); channel++) {
+			for (int oy = 0; oy < outputHeight; oy++) {
+				for (int ox = 0; ox < outputWidth; ox++) {
+					int corner = (channel * height + oy * stride) * width + ox * stride;
+
+					for (int item = 0; item < items; item++) {
+						float max = output[index + item];
+
+						taps:
+						for (int ky = 0; ky < size; ky++) {
+							for (int kx = 0; kx < size; kx++) {
+								int pixel = (corner + ky * width + kx) * items + item;
+
+								if (input[pixel] == max) {
+									inputError[pixel] += error[index + item];
+									break taps;
+								}
+							}
+						}
+					}
+
+					index += items;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,410 @@
+package vision.matrix;
+
+import java.util.Arrays;
+
+/*
+ * Cache-blocked general matrix multiply on row-major arrays: c += a * b,
+ * where a is m x k, b is k x n and c is m x n. The transpose variants read
+ * a or b in transposed order instead of materializing a transposed copy.
+ *
+ * The loops are blocked so that a kc x nc panel of b stays in L2 while
+ * the micro-kernel streams rows of it through L1. The micro-kernel holds
+ * four values of a in registers and updates four rows of c at once.
+ * Every routine has a double and a float overload.
+ */
+public final class Gemm {
+	private static final int L1_BYTES = 32 * 1024;
+	private static final int L2_BYTES = 256 * 1024;
+	private static final int TILE_ROWS = 4;
+
+	private Gemm() {
+	}
+
+	static int blockCols(int n, int elementBytes) {
+		// One row of b plus the four rows of c being updated should fit in L1.
+		int nc = L1_BYTES / (elementBytes * (TILE_ROWS + 1));
+		nc -= nc % 8;
+
+		return Math.min(n, nc);
+	}
+
+	static int blockDepth(int k, int nc, int elementBytes) {
+		// The kc x nc panel of b should occupy no more than half of L2.
+		int kc = L2_BYTES / (2 * elementBytes * Math.max(nc, 1));
+
+		return Math.max(1, Math.min(k, kc));
+	}
+
+	static int blockRows(int m, int kc, int elementBytes) {
+		// The mc x kc block of a shares L2 with the panel of b.
+		int mc = L2_BYTES / (2 * elementBytes * Math.max(kc, 1));
+		mc -= mc % TILE_ROWS;
+
+		return Math.max(TILE_ROWS, Math.min(m, mc));
+	}
+
+	public static void multiply(double[] a, double[] b, double[] c, int m, int n, int k) {
+		blocked(a, k, 1, b, c, m, n, k);
+	}
+
+	/*
+	 * c += transpose(a) * b, where a is stored as k x m.
+	 */
+	public static void multiplyTransposeLeft(double[] a, double[] b, double[] c, int m, int n, int k) {
+		blocked(a, 1, m, b, c, m, n, k);
+	}
+
+	/*
+	 * c = a * b + bias, with bias holding one value per row of c. The bias
+	 * is written before the product is accumulated instead of clearing c,
+	 * and with relu set, negative results are zeroed in the epilogue.
+	 */
+	public static void multiplyAddBias(double[] a, double[] b, double[] bias, double[] c, int m, int n, int k,
+			boolean relu) {
+		for (int i = 0; i < m; i++) {
+			Arrays.fill(c, i * n, (i + 1) * n, bias[i]);
+		}
+
+		blocked(a, k, 1, b, c, relu ? c : null, m, n, k);
+	}
+
+	/*
+	 * c = transpose(a) * b, keeping only the elements where mask is
+	 * positive; this is the error through a dense layer and the ReLU
+	 * before it. c is cleared first.
+	 */
+	public static void multiplyTransposeLeftMasked(double[] a, double[] b, double[] mask, double[] c, int m,
+			int n, int k) {
+		Arrays.fill(c, 0, m * n, 0);
+
+		blocked(a, 1, m, b, c, mask, m, n, k);
+	}
+
+	/*
+	 * c += a * transpose(b), where b is stored as n x k.
+	 */
+	public static void multiplyTransposeRight(double[] a, double[] b, double[] c, int m, int n, int k) {
+		int kc = Math.max(1, Math.min(k, L1_BYTES / (Double.BYTES * (TILE_ROWS + 1))));
+
+		for (int pp = 0; pp < k; pp += kc) {
+			int pEnd = Math.min(pp + kc, k);
+
+			for (int i = 0; i < m; i++) {
+				dotKernel(a, b, c, n, k, i, pp, pEnd);
+			}
+		}
+	}
+
+	private static void blocked(double[] a, int rowStride, int colStride, double[] b, double[] c, int m, int n,
+			int k) {
+		blocked(a, rowStride, colStride, b, c, null, m, n, k);
+	}
+
+	private static void blocked(double[] a, int rowStride, int colStride, double[] b, double[] c, double[] mask,
+			int m, int n, int k) {
+		int nc = blockCols(n, Double.BYTES);
+		int kc = blockDepth(k, nc, Double.BYTES);
+		int mc = blockRows(m, kc, Double.BYTES);
+
+		for (int pp = 0; pp < k; pp += kc) {
+			int pEnd = Math.min(pp + kc, k);
+
+			for (int jj = 0; jj < n; jj += nc) {
+				int jEnd = Math.min(jj + nc, n);
+
+				for (int ii = 0; ii < m; ii += mc) {
+					int iEnd = Math.min(ii + mc, m);
+
+					kernel(a, rowStride, colStride, b, c, n, ii, iEnd, jj, jEnd, pp, pEnd);
+
+					if (mask != null && pEnd == k) {
+						mask(mask, c, n, ii, iEnd, jj, jEnd);
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Epilogue run on a block of c once its last depth panel is done, while
+	 * the block is still in cache: zeroes every element whose mask is not
+	 * positive. Passing c as its own mask applies a ReLU.
+	 */
+	private static void mask(double[] mask, double[] c, int n, int iStart, int iEnd, int jStart, int jEnd) {
+		for (int i = iStart; i < iEnd; i++) {
+			int row = i * n;
+
+			for (int j = row + jStart; j < row + jEnd; j++) {
+				c[j] = mask[j] > 0 ? c[j] : 0;
+			}
+		}
+	}
+
+	private static void kernel(double[] a, int rowStride, int colStride, double[] b, double[] c, int n, int iStart,
+			int iEnd, int jStart, int jEnd, int pStart, int pEnd) {
+		int i = iStart;
+
+		for (; i + TILE_ROWS <= iEnd; i += TILE_ROWS) {
+			int a0 = i * rowStride;
+			int a1 = a0 + rowStride;
+			int a2 = a1 + rowStride;
+			int a3 = a2 + rowStride;
+
+			int c0 = i * n;
+			int c1 = c0 + n;
+			int c2 = c1 + n;
+			int c3 = c2 + n;
+
+			for (int p = pStart; p < pEnd; p++) {
+				int aCol = p * colStride;
+
+				double v0 = a[a0 + aCol];
+				double v1 = a[a1 + aCol];
+				double v2 = a[a2 + aCol];
+				double v3 = a[a3 + aCol];
+
+				int bRow = p * n;
+
+				for (int j = jStart; j < jEnd; j++) {
+					double bv = b[bRow + j];
+
+					c[c0 + j] += v0 * bv;
+					c[c1 + j] += v1 * bv;
+					c[c2 + j] += v2 * bv;
+					c[c3 + j] += v3 * bv;
+				}
+			}
+		}
+
+		for (; i < iEnd; i++) {
+			int aRow = i * rowStride;
+			int cRow = i * n;
+
+			for (int p = pStart; p < pEnd; p++) {
+				double v = a[aRow + p * colStride];
+				int bRow = p * n;
+
+				for (int j = jStart; j < jEnd; j++) {
+					c[cRow + j] += v * b[bRow + j];
+				}
+			}
+		}
+	}
+
+	private static void dotKernel(double[] a, double[] b, double[] c, int n, int k, int i, int pStart, int pEnd) {
+		int aRow = i * k;
+		int cRow = i * n;
+		int j = 0;
+
+		for (; j + TILE_ROWS <= n; j += TILE_ROWS) {
+			int b0 = j * k;
+			int b1 = b0 + k;
+			int b2 = b1 + k;
+			int b3 = b2 + k;
+
+			double s0 = 0;
+			double s1 = 0;
+			double s2 = 0;
+			double s3 = 0;
+
+			for (int p = pStart; p < pEnd; p++) {
+				double av = a[aRow + p];
+
+				s0 += av * b[b0 + p];
+				s1 += av * b[b1 + p];
+				s2 += av * b[b2 + p];
+				s3 += av * b[b3 + p];
+			}
+
+			c[cRow + j] += s0;
+			c[cRow + j + 1] += s1;
+			c[cRow + j + 2] += s2;
+			c[cRow + j + 3] += s3;
+		}
+
+		for (; j < n; j++) {
+			int bRow = j * k;
+			double sum = 0;
+
+			for (int p = pStart; p < pEnd; p++) {
+				sum += a[aRow + p] * b[bRow + p];
+			}
+
+			c[cRow + j] += sum;
+		}
+	}
+	public static void multiply(float[] a, float[] b, float[] c, int m, int n, int k) {
+		blocked(a, k, 1, b, c, m, n, k);
+	}
+
+	public static void multiplyTransposeLeft(float[] a, float[] b, float[] c, int m, int n, int k) {
+		blocked(a, 1, m, b, c, m, n, k);
+	}
+
+	public static void multiplyAddBias(float[] a, float[] b, float[] bias, float[] c, int m, int n, int k,
+			boolean relu) {
+		for (int i = 0; i < m; i++) {
+			Arrays.fill(c, i * n, (i + 1) * n, bias[i]);
+		}
+
+		blocked(a, k, 1, b, c, relu ? c : null, m, n, k);
+	}
+
+	public static void multiplyTransposeLeftMasked(float[] a, float[] b, float[] mask, float[] c, int m,
+			int n, int k) {
+		Arrays.fill(c, 0, m * n, 0);
+
+		blocked(a, 1, m, b, c, mask, m, n, k);
+	}
+
+	public static void multiplyTransposeRight(float[] a, float[] b, float[] c, int m, int n, int k) {
+		int kc = Math.max(1, Math.min(k, L1_BYTES / (Float.BYTES * (TILE_ROWS + 1))));
+
+		for (int pp = 0; pp < k; pp += kc) {
+			int pEnd = Math.min(pp + kc, k);
+
+			for (int i = 0; i < m; i++) {
+				dotKernel(a, b, c, n, k, i, pp, pEnd);
+			}
+		}
+	}
+
+	private static void blocked(float[] a, int rowStride, int colStride, float[] b, float[] c, int m, int n,
+			int k) {
+		blocked(a, rowStride, colStride, b, c, null, m, n, k);
+	}
+
+	private static void blocked(float[] a, int rowStride, int colStride, float[] b, float[] c, float[] mask,
+			int m, int n, int k) {
+		int nc = blockCols(n, Float.BYTES);
+		int kc = blockDepth(k, nc, Float.BYTES);
+		int mc = blockRows(m, kc, Float.BYTES);
+
+		for (int pp = 0; pp < k; pp += kc) {
+			int pEnd = Math.min(pp + kc, k);
+
+			for (int jj = 0; jj < n; jj += nc) {
+				int jEnd = Math.min(jj + nc, n);
+
+				for (int ii = 0; ii < m; ii += mc) {
+					int iEnd = Math.min(ii + mc, m);
+
+					kernel(a, rowStride, colStride, b, c, n, ii, iEnd, jj, jEnd, pp, pEnd);
+
+					if (mask != null && pEnd == k) {
+						mask(mask, c, n, ii, iEnd, jj, jEnd);
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Epilogue run on a block of c once its last depth panel is done, while
+	 * the block is still in cache: zeroes every element whose mask is not
+	 * positive. Passing c as its own mask applies a ReLU.
+	 */
+	private static void mask(float[] mask, float[] c, int n, int iStart, int iEnd, int jStart, int jEnd) {
+		for (int i = iStart; i < iEnd; i++) {
+			int row = i * n;
+
+			for (int j = row + jStart; j < row + jEnd; j++) {
+				c[j] = mask[j] > 0 ? c[j] : 0;
+			}
+		}
+	}
+
+	private static void kernel(float[] a, int rowStride, int colStride, float[] b, float[] c, int n, int iStart,
+			int iEnd, int jStart, int jEnd, int pStart, int pEnd) {
+		int i = iStart;
+
+		for (; i + TILE_ROWS <= iEnd; i += TILE_ROWS) {
+			int a0 = i * rowStride;
+			int a1 = a0 + rowStride;
+			int a2 = a1 + rowStride;
+			int a3 = a2 + rowStride;
+
+			int c0 = i * n;
+			int c1 = c0 + n;
+			int c2 = c1 + n;
+			int c3 = c2 + n;
+
+			for (int p = pStart; p < pEnd; p++) {
+				int aCol = p * colStride;
+
+				float v0 = a[a0 + aCol];
+				float v1 = a[a1 + aCol];
+				float v2 = a[a2 + aCol];
+				float v3 = a[a3 + aCol];
+
+				int bRow = p * n;
+
+				for (int j = jStart; j < jEnd; j++) {
+					float bv = b[bRow + j];
+
+					c[c0 + j] += v0 * bv;
+					c[c1 + j] += v1 * bv;
+					c[c2 + j] += v2 * bv;
+					c[c3 + j] += v3 * bv;
+				}
+			}
+		}
+
+		for (; i < iEnd; i++) {
+			int aRow = i * rowStride;
+			int cRow = i * n;
+
+			for (int p = pStart; p < pEnd; p++) {
+				float v = a[aRow + p * colStride];
+				int bRow = p * n;
+
+				for (int j = jStart; j < jEnd; j++) {
+					c[cRow + j] += v * b[bRow + j];
+				}
+			}
+		}
+	}
+
+	private static void dotKernel(float[] a, float[] b, float[] c, int n, int k, int i, int pStart, int pEnd) {
+		int aRow = i * k;
+		int cRow = i * n;
+		int j = 0;
+
+		for (; j + TILE_ROWS <= n; j += TILE_ROWS) {
+			int b0 = j * k;
+			int b1 = b0 + k;
+			int b2 = b1 + k;
+			int b3 = b2 + k;
+
+			float s0 = 0;
+			float s1 = 0;
+			float s2 = 0;
+			float s3 = 0;
+
+			for (int p = pStart; p < pEnd; p++) {
+				float av = a[aRow + p];
+
+				s0 += av * b[b0 + p];
+				s1 += av * b[b1 + p];
+				s2 += av * b[b2 + p];
+				s3 += av * b[b3 + p];
+			}
+
+			c[cRow + j] += s0;
+			c[cRow + j + 1] += s1;
+			c[cRow + j + 2] += s2;
+			c[cRow + j + 3] += s3;
+		}
+
+		for (; j < n; j++) {
+			int bRow = j * k;
+			float sum = 0;
+
+			for (int p = pStart; p < pEnd; p++) {
+				sum += a[aRow + p] * b[bRow + p];
+			}
+
+			c[cRow + j] += sum;
+		}
+	}
+}
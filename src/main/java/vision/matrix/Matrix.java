@@ -1,6 +1,7 @@
 package vision.matrix;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -8,6 +9,8 @@ public class Matrix implements Serializable{
 	private static final long serialVersionUID = 1L;
 
 	private static final String NUMBER_FORMAT = "%+12.5f";
+	private static final long GEMM_THRESHOLD = 16 * 16 * 16;
+	private static final VectorOps ops = VectorOps.create();
 	private double tolerance = 0.000001;
 	
 	private int rows;
@@ -41,7 +44,12 @@ public class Matrix implements Serializable{
 		double produce(int row, int col, double value);
 	}
 	
+	/*
+	 * Values are stored row-major in exactly one of these arrays, depending
+	 * on the precision the matrix was created with.
+	 */
 	private double[] a;
+	private float[] f;
 	
 	public Matrix(int rows, int cols) {
 		this.rows = rows;
@@ -49,6 +57,17 @@ public class Matrix implements Serializable{
 		a = new double[rows * cols];
 	}
 	
+	public Matrix(int rows, int cols, Precision precision) {
+		this.rows = rows;
+		this.cols = cols;
+		
+		if (precision == Precision.FLOAT) {
+			f = new float[rows * cols];
+		} else {
+			a = new double[rows * cols];
+		}
+	}
+	
 	public Matrix(int rows, int cols, Producer producer) {
 		this(rows, cols);
 		
@@ -58,13 +77,16 @@ public class Matrix implements Serializable{
 	}
 	
 	public Matrix(int rows, int cols, double[] values) {
+		this(rows, cols);
+		
+		loadColumns(values);
+	}
+	
+	private Matrix(int rows, int cols, double[] a, float[] f) {
 		this.rows = rows;
 		this.cols = cols;
-		
-		Matrix temp = new Matrix(cols, rows);
-		temp.a = values;
-		Matrix transposed = temp.transpose();
-		a = transposed.a;
+		this.a = a;
+		this.f = f;
 	}
 	
 	public int getRows() {
@@ -75,11 +97,121 @@ public class Matrix implements Serializable{
 		return cols;
 	}
 	
+	public Precision getPrecision() {
+		return f != null ? Precision.FLOAT : Precision.DOUBLE;
+	}
+	
+	public Matrix toPrecision(Precision precision) {
+		if (precision == getPrecision()) {
+			return this;
+		}
+		
+		Matrix result = new Matrix(rows, cols, precision);
+		
+		for (int i = 0; i < size(); i++) {
+			result.store(i, value(i));
+		}
+		
+		return result;
+	}
+	
+	private int size() {
+		return rows * cols;
+	}
+	
+	private double value(int index) {
+		return f != null ? f[index] : a[index];
+	}
+	
+	private void store(int index, double value) {
+		if (f != null) {
+			f[index] = (float) value;
+		} else {
+			a[index] = value;
+		}
+	}
+	
+	private Matrix like(int rows, int cols) {
+		return new Matrix(rows, cols, getPrecision());
+	}
+	
+	/*
+	 * Loads values stored column by column, the layout loaders use for
+	 * batches of items.
+	 */
+	public Matrix setColumns(double[] values) {
+		loadColumns(values);
+		
+		return this;
+	}
+	
+	private void loadColumns(double[] values) {
+		int index = 0;
+		
+		for (int col = 0; col < cols; col++) {
+			for (int row = 0; row < rows; row++) {
+				store(row * cols + col, values[index++]);
+			}
+		}
+	}
+	
+	public int getElementBytes() {
+		return f != null ? Float.BYTES : Double.BYTES;
+	}
+	
+	/*
+	 * Reads the elements in row order and in this matrix's precision from
+	 * the buffer's position, which is advanced past them.
+	 */
+	public Matrix read(ByteBuffer buffer) {
+		if (f != null) {
+			buffer.asFloatBuffer().get(f);
+		} else {
+			buffer.asDoubleBuffer().get(a);
+		}
+		
+		buffer.position(buffer.position() + size() * getElementBytes());
+		
+		return this;
+	}
+	
+	public void write(ByteBuffer buffer) {
+		if (f != null) {
+			buffer.asFloatBuffer().put(f);
+		} else {
+			buffer.asDoubleBuffer().put(a);
+		}
+		
+		buffer.position(buffer.position() + size() * getElementBytes());
+	}
+	
+	public Matrix setColumn(int col, double[] values, int offset) {
+		for (int row = 0; row < rows; row++) {
+			store(row * cols + col, values[offset + row]);
+		}
+		
+		return this;
+	}
+	
+	public Matrix clear() {
+		if (f != null) {
+			Arrays.fill(f, 0);
+		} else {
+			Arrays.fill(a, 0);
+		}
+		
+		return this;
+	}
+	
+	public boolean hasShape(int rows, int cols, Precision precision) {
+		return this.rows == rows && this.cols == cols && getPrecision() == precision;
+	}
+	
 	public Matrix apply(IndexValueProducer producer) {
-		Matrix result = new Matrix(rows, cols);
+		Matrix result = like(rows, cols);
 		
-		for (int i = 0; i < a.length; i++) {
-			result.a[i] = producer.produce(i, a[i]);
+		for (int i = 0; i < size(); i++) {
+			result.store(i, producer.produce(i, value(i)));
 		}
 		
 		return result;
@@ -90,7 +222,7 @@ public class Matrix implements Serializable{
 		
 		for (int row = 0; row < rows; row++) {
 			for (int col = 0; col < cols; col++) {
-				a[index] = producer.produce(row, col, a[index]);
+				store(index, producer.produce(row, col, value(index)));
 				
 				index++;
 			}
@@ -100,24 +232,24 @@ public class Matrix implements Serializable{
 	}
 	
 	public Matrix modify(ValueProducer producer) {
-		for (int i = 0; i < a.length; i++) {
-			a[i] = producer.produce(a[i]);
+		for (int i = 0; i < size(); i++) {
+			store(i, producer.produce(value(i)));
 		}
 		
 		return this;
 	}
 	
 	public Matrix modify(IndexValueProducer producer) {
-		for (int i = 0; i < a.length; i++) {
-			a[i] = producer.produce(i, a[i]);
+		for (int i = 0; i < size(); i++) {
+			store(i, producer.produce(i, value(i)));
 		}
 		
 		return this;
 	}
 	
 	public void forEach(IndexValueConsumer consumer) {
-		for (int i = 0; i < a.length; i++) {
-			consumer.consume(i, a[i]);
+		for (int i = 0; i < size(); i++) {
+			consumer.consume(i, value(i));
 		}
 	}
 	
@@ -126,7 +258,7 @@ public class Matrix implements Serializable{
 		
 		for (int row = 0; row < rows; row++) {
 			for(int col = 0; col < cols; col++) {
-				consumer.consume(row, col, index, a[index++]);
+				consumer.consume(row, col, index, value(index++));
 			}
 		}
 	}
@@ -136,37 +268,312 @@ public class Matrix implements Serializable{
 		
 		for (int row = 0; row < rows; row++) {
 			for(int col = 0; col < cols; col++) {
-				consumer.consume(row, col, a[index++]);
+				consumer.consume(row, col, value(index++));
 			}
 		}
 	}
 	
 	public Matrix multiply(Matrix m) {
-		Matrix result = new Matrix(rows, m.cols);
-		
+		return multiply(m, like(rows, m.cols));
+	}
+	
+	public Matrix multiply(Matrix m, Matrix result) {
 		assert cols == m.rows: "Cannot multiply matrices; incompatible dimensions";
+		assert result.rows == rows && result.cols == m.cols: "Result matrix has the wrong dimensions";
+		assert f != null == (m.f != null) && f != null == (result.f != null): "Cannot multiply matrices; different precisions";
+		
+		result.clear();
 		
+		if (f != null) {
+			Gemm.multiply(f, m.f, result.f, rows, m.cols, cols);
+			return result;
+		}
+
+		if ((long)rows * cols * m.cols > GEMM_THRESHOLD) {
+			Gemm.multiply(a, m.a, result.a, rows, m.cols, cols);
+			return result;
+		}
+
 		for (int row = 0; row < result.rows; row++) {
+			int aRow = row * cols;
+			int resultRow = row * result.cols;
+
 			for (int n = 0; n < cols; n++) {
-				
+				double value = a[aRow + n];
+				int mRow = n * m.cols;
+
 				for(int col = 0; col < result.cols; col++) {
-					result.a[row * result.cols + col] += a[row * cols + n] * m.a[col + n * m.cols];
+					result.a[resultRow + col] += value * m.a[mRow + col];
 				}
-				
+
 			}
 		}
+
+		return result;
+	}
+	
+	public Matrix multiplyTransposeLeft(Matrix m) {
+		return multiplyTransposeLeft(m, like(cols, m.cols));
+	}
+	
+	public Matrix multiplyTransposeLeft(Matrix m, Matrix result) {
+		assert rows == m.rows: "Cannot multiply matrices; incompatible dimensions";
+		assert result.rows == cols && result.cols == m.cols: "Result matrix has the wrong dimensions";
+		assert f != null == (m.f != null) && f != null == (result.f != null): "Cannot multiply matrices; different precisions";
+		
+		result.clear();
+		
+		if (f != null) {
+			Gemm.multiplyTransposeLeft(f, m.f, result.f, cols, m.cols, rows);
+		} else {
+			Gemm.multiplyTransposeLeft(a, m.a, result.a, cols, m.cols, rows);
+		}
 		
 		return result;
 	}
 	
-	public double sum() {
-		double sum = 0;
+	/*
+	 * result = this * m + bias, followed by a ReLU if relu is set; one sweep
+	 * over the result instead of separate bias and activation passes.
+	 */
+	public Matrix multiplyAddBias(Matrix m, Matrix bias, boolean relu, Matrix result) {
+		assert cols == m.rows: "Cannot multiply matrices; incompatible dimensions";
+		assert result.rows == rows && result.cols == m.cols: "Result matrix has the wrong dimensions";
+		assert bias.rows == rows: "Bias must have one row per matrix row";
+		assert f != null == (m.f != null) && f != null == (result.f != null) && f != null == (bias.f != null): "Cannot multiply matrices; different precisions";
+
+		if (f != null) {
+			Gemm.multiplyAddBias(f, m.f, bias.f, result.f, rows, m.cols, cols, relu);
+		} else {
+			Gemm.multiplyAddBias(a, m.a, bias.a, result.a, rows, m.cols, cols, relu);
+		}
+
+		return result;
+	}
+
+	/*
+	 * result = transpose(this) * m, zeroed wherever mask is not positive.
+	 */
+	public Matrix multiplyTransposeLeftMasked(Matrix m, Matrix mask, Matrix result) {
+		assert rows == m.rows: "Cannot multiply matrices; incompatible dimensions";
+		assert result.rows == cols && result.cols == m.cols: "Result matrix has the wrong dimensions";
+		assert mask.size() == result.size(): "Mask must have the same size as the result";
+		assert f != null == (m.f != null) && f != null == (result.f != null) && f != null == (mask.f != null): "Cannot multiply matrices; different precisions";
+
+		if (f != null) {
+			Gemm.multiplyTransposeLeftMasked(f, m.f, mask.f, result.f, cols, m.cols, rows);
+		} else {
+			Gemm.multiplyTransposeLeftMasked(a, m.a, mask.a, result.a, cols, m.cols, rows);
+		}
+
+		return result;
+	}
+
+	public Matrix multiplyTransposeRight(Matrix m) {
+		return like(rows, m.rows).addProductTransposeRight(this, m);
+	}
+	
+	/*
+	 * A matrix of the given shape that shares this matrix's values in row
+	 * order, so writes through either are seen by both.
+	 */
+	public Matrix reshape(int rows, int cols) {
+		assert rows * cols == size(): "Cannot reshape matrix; different sizes";
+		
+		return new Matrix(rows, cols, a, f);
+	}
+	
+	/*
+	 * The windows over this batch of images laid out as columns, ready to
+	 * be multiplied by a filter matrix. See Convolutions.
+	 */
+	public Matrix im2col(Window window, Matrix result) {
+		assert rows == window.getInputSize(): "Matrix does not hold images of the window's shape";
+		assert result.rows == window.getTaps() && result.cols == window.getPositions() * cols: "Result matrix has the wrong dimensions";
+		assert f != null == (result.f != null): "Cannot lower matrix; different precisions";
+		
+		if (f != null) {
+			Convolutions.im2col(f, result.f, window, cols);
+		} else {
+			Convolutions.im2col(a, result.a, window, cols);
+		}
+		
+		return result;
+	}
+	
+	/*
+	 * Sums these columns back onto the images they were taken from.
+	 */
+	public Matrix col2im(Window window, Matrix result) {
+		assert rows == window.getTaps() && cols == window.getPositions() * result.cols: "Matrix does not hold the window's columns";
+		assert result.rows == window.getInputSize(): "Result matrix has the wrong dimensions";
+		assert f != null == (result.f != null): "Cannot fold matrix; different precisions";
+		
+		if (f != null) {
+			Convolutions.col2im(f, result.f, window, result.cols);
+		} else {
+			Convolutions.col2im(a, result.a, window, result.cols);
+		}
+		
+		return result;
+	}
+	
+	public Matrix maxPool(Window window, Matrix result) {
+		assert rows == window.getInputSize(): "Matrix does not hold images of the window's shape";
+		assert result.rows == window.getChannels() * window.getPositions() && result.cols == cols: "Result matrix has the wrong dimensions";
+		assert f != null == (result.f != null): "Cannot pool matrix; different precisions";
+		
+		if (f != null) {
+			Convolutions.maxPool(f, result.f, window, cols);
+		} else {
+			Convolutions.maxPool(a, result.a, window, cols);
+		}
+		
+		return result;
+	}
+	
+	/*
+	 * The error at the input of a max pool, given this error at its output
+	 * and the input and output of its forward pass.
+	 */
+	public Matrix maxPoolError(Window window, Matrix input, Matrix output, Matrix result) {
+		assert size() == output.size() && input.size() == result.size(): "Cannot route error; incompatible dimensions";
+		assert f != null == (input.f != null) && f != null == (output.f != null) && f != null == (result.f != null): "Cannot route error; different precisions";
+		
+		if (f != null) {
+			Convolutions.maxPoolError(input.f, output.f, f, result.f, window, cols);
+		} else {
+			Convolutions.maxPoolError(input.a, output.a, a, result.a, window, cols);
+		}
+		
+		return result;
+	}
+	
+	public Matrix relu() {
+		if (f != null) {
+			ops.relu(f, f, f.length);
+		} else {
+			ops.relu(a, a, a.length);
+		}
+		
+		return this;
+	}
+	
+	public Matrix reluMask(Matrix input) {
+		return reluMask(input, like(rows, cols));
+	}
+	
+	public Matrix reluMask(Matrix input, Matrix result) {
+		assert f != null == (input.f != null) && f != null == (result.f != null): "Cannot mask matrix; different precisions";
+		
+		if (f != null) {
+			ops.reluMask(f, input.f, result.f, f.length);
+		} else {
+			ops.reluMask(a, input.a, result.a, a.length);
+		}
+		
+		return result;
+	}
+	
+	public Matrix addScaled(double factor, Matrix m) {
+		assert size() == m.size(): "Cannot add matrices; incompatible dimensions";
+		assert f != null == (m.f != null): "Cannot add matrices; different precisions";
 		
-		for (var v : a) {
-			sum += v;
+		if (f != null) {
+			ops.axpy((float) factor, m.f, 0, f, 0, f.length);
+		} else {
+			ops.axpy(factor, m.a, 0, a, 0, a.length);
 		}
 		
-		return sum;
+		return this;
+	}
+	
+	/*
+	 * Optimizer steps applied to this parameter in place; gradient holds
+	 * summed gradients and is multiplied by scale. See Updates.
+	 */
+	public Matrix momentumUpdate(Matrix gradient, double scale, Matrix velocity, double rate, double momentum, boolean nesterov) {
+		assert size() == gradient.size() && size() == velocity.size(): "Cannot update matrix; incompatible dimensions";
+		assert f != null == (gradient.f != null) && f != null == (velocity.f != null): "Cannot update matrix; different precisions";
+
+		if (f != null) {
+			Updates.momentum(f, gradient.f, velocity.f, f.length, scale, rate, momentum, nesterov);
+		} else {
+			Updates.momentum(a, gradient.a, velocity.a, a.length, scale, rate, momentum, nesterov);
+		}
+
+		return this;
+	}
+
+	public Matrix rmsPropUpdate(Matrix gradient, double scale, Matrix meanSquare, double rate, double decay, double epsilon) {
+		assert size() == gradient.size() && size() == meanSquare.size(): "Cannot update matrix; incompatible dimensions";
+		assert f != null == (gradient.f != null) && f != null == (meanSquare.f != null): "Cannot update matrix; different precisions";
+
+		if (f != null) {
+			Updates.rmsProp(f, gradient.f, meanSquare.f, f.length, scale, rate, decay, epsilon);
+		} else {
+			Updates.rmsProp(a, gradient.a, meanSquare.a, a.length, scale, rate, decay, epsilon);
+		}
+
+		return this;
+	}
+
+	public Matrix adamUpdate(Matrix gradient, double scale, Matrix mean, Matrix variance, double rate, double beta1, double beta2, double epsilon) {
+		assert size() == gradient.size() && size() == mean.size() && size() == variance.size(): "Cannot update matrix; incompatible dimensions";
+		assert f != null == (gradient.f != null) && f != null == (mean.f != null) && f != null == (variance.f != null): "Cannot update matrix; different precisions";
+
+		if (f != null) {
+			Updates.adam(f, gradient.f, mean.f, variance.f, f.length, scale, rate, beta1, beta2, epsilon);
+		} else {
+			Updates.adam(a, gradient.a, mean.a, variance.a, a.length, scale, rate, beta1, beta2, epsilon);
+		}
+
+		return this;
+	}
+
+	public Matrix addProductTransposeRight(Matrix m1, Matrix m2) {
+		assert rows == m1.rows && cols == m2.rows && m1.cols == m2.cols: "Cannot multiply matrices; incompatible dimensions";
+		assert f != null == (m1.f != null) && f != null == (m2.f != null): "Cannot multiply matrices; different precisions";
+		
+		if (f != null) {
+			Gemm.multiplyTransposeRight(m1.f, m2.f, f, rows, cols, m1.cols);
+		} else {
+			Gemm.multiplyTransposeRight(m1.a, m2.a, a, rows, cols, m1.cols);
+		}
+		
+		return this;
+	}
+	
+	public Matrix addRowSums(Matrix m) {
+		assert rows == m.rows && cols == 1: "Row sums must be added to a column vector";
+		
+		int index = 0;
+		
+		for (int row = 0; row < rows; row++) {
+			double sum = 0;
+			
+			for (int col = 0; col < m.cols; col++) {
+				sum += m.value(index++);
+			}
+			
+			store(row, value(row) + sum);
+		}
+		
+		return this;
+	}
+	
+	public Matrix subtract(Matrix m, Matrix result) {
+		assert size() == m.size() && size() == result.size(): "Cannot subtract matrices; incompatible dimensions";
+		
+		for (int i = 0; i < size(); i++) {
+			result.store(i, value(i) - m.value(i));
+		}
+		
+		return result;
+	}
+	
+	public double sum() {
+		return f != null ? ops.sum(f, f.length) : ops.sum(a, a.length);
 	}
 	
 	public Matrix getGreatestRowNumbers() {
@@ -189,13 +596,13 @@ public class Matrix implements Serializable{
 	}
 	
 	public Matrix sumColumns() {
-		Matrix result = new Matrix(1, cols);
-		
-		int index = 0;
+		Matrix result = like(1, cols);
 		
 		for (int row = 0; row < rows; row++) {
-			for(int col = 0; col < cols; col++) {
-				result.a[col] += a[index++];
+			if (f != null) {
+				ops.axpy(1, f, row * cols, result.f, 0, cols);
+			} else {
+				ops.axpy(1, a, row * cols, result.a, 0, cols);
 			}
 		}
 		
@@ -203,53 +610,175 @@ public class Matrix implements Serializable{
 	}
 	
 	public Matrix transpose() {
-		Matrix result = new Matrix(cols, rows);
+		Matrix result = like(cols, rows);
 		
-		for (int i = 0; i < a.length; i++) {
+		for (int i = 0; i < size(); i++) {
 			int row = i / cols;
 			int col = i % cols;
 
-			result.a[col * rows + row] = a[i];
+			result.store(col * rows + row, value(i));
 		}
 		
 		return result;
 	}
 	
 	public Matrix averageColumn() {
-		Matrix result = new Matrix(rows, 1);
+		Matrix result = like(rows, 1);
 		
 		forEach((row, col, index, value) -> {
-			result.a[row] += value / cols;
+			result.store(row, result.value(row) + value / cols);
 		});
 		
 		return result;
 	}
 	
 	public Matrix softMax() {
-		Matrix result = new Matrix(rows, cols, i -> Math.exp(a[i]));
-		Matrix colSum = result.sumColumns();
+		return softMax(like(rows, cols));
+	}
+	
+	/*
+	 * Softmax of each column. The column maximum is subtracted before
+	 * exponentiating, so large values cannot overflow.
+	 */
+	public Matrix softMax(Matrix result) {
+		assert result.rows == rows && result.cols == cols: "Result matrix has the wrong dimensions";
+		assert f != null == (result.f != null): "Result matrix has a different precision";
 		
-		result.modify((row, col, value) -> {
-			return value / colSum.get(col);
-		});
+		for (int col = 0; col < cols; col++) {
+			double max = columnMax(col);
+			
+			for (int index = col; index < size(); index += cols) {
+				result.store(index, value(index) - max);
+			}
+		}
+		
+		result.exp();
+		
+		for (int col = 0; col < cols; col++) {
+			double sum = 0;
+			
+			for (int index = col; index < size(); index += cols) {
+				sum += result.value(index);
+			}
+			
+			double inverseSum = 1.0 / sum;
+			
+			for (int index = col; index < size(); index += cols) {
+				result.store(index, result.value(index) * inverseSum);
+			}
+		}
 		
 		return result;
 	}
 	
+	/*
+	 * Treats each column as the logits of one sample and returns the cross
+	 * entropy of their softmax against expected, summed over the columns.
+	 * The loss comes from the log-softmax, so it stays finite however small
+	 * a probability gets. The same sweep writes the gradient of the loss
+	 * with respect to the logits (softmax minus expected) to gradient, and
+	 * the row of each column's largest logit to predictions. Predictions
+	 * may be null; so may gradient, at the cost of a temporary matrix.
+	 */
+	public double softMaxCrossEntropy(Matrix expected, Matrix gradient, Matrix predictions) {
+		assert expected.rows == rows && expected.cols == cols: "Expected matrix has the wrong dimensions";
+		assert gradient == null || gradient.rows == rows && gradient.cols == cols: "Gradient matrix has the wrong dimensions";
+		assert gradient == null || f != null == (gradient.f != null): "Gradient matrix has a different precision";
+		assert predictions == null || predictions.size() == cols: "Predictions need one element per column";
+		
+		Matrix target = gradient != null ? gradient : like(rows, cols);
+		double loss = 0;
+		
+		/*
+		 * The log-softmax of a logit is its distance from the column maximum
+		 * less the log of the column sum, so the loss takes the distances
+		 * here and the log sums once the exponentials are known.
+		 */
+		for (int col = 0; col < cols; col++) {
+			int maxIndex = col;
+			double max = value(col);
+			
+			for (int index = col + cols; index < size(); index += cols) {
+				if (value(index) > max) {
+					max = value(index);
+					maxIndex = index;
+				}
+			}
+			
+			for (int index = col; index < size(); index += cols) {
+				double shifted = value(index) - max;
+				double expectedValue = expected.value(index);
+				
+				if (expectedValue != 0) {
+					loss -= expectedValue * shifted;
+				}
+				
+				target.store(index, shifted);
+			}
+			
+			if (predictions != null) {
+				predictions.store(col, maxIndex / cols);
+			}
+		}
+		
+		target.exp();
+		
+		for (int col = 0; col < cols; col++) {
+			double sum = 0;
+			double expectedSum = 0;
+			
+			for (int index = col; index < size(); index += cols) {
+				sum += target.value(index);
+				expectedSum += expected.value(index);
+			}
+			
+			loss += expectedSum * Math.log(sum);
+			
+			double inverseSum = 1.0 / sum;
+			
+			for (int index = col; index < size(); index += cols) {
+				target.store(index, target.value(index) * inverseSum - expected.value(index));
+			}
+		}
+		
+		return loss;
+	}
+	
+	private double columnMax(int col) {
+		double max = value(col);
+		
+		for (int index = col + cols; index < size(); index += cols) {
+			max = Math.max(max, value(index));
+		}
+		
+		return max;
+	}
+	
+	/*
+	 * Exponentiates every element in place through the vector kernels.
+	 */
+	private void exp() {
+		if (f != null) {
+			ops.exp(f, f, f.length);
+		} else {
+			ops.exp(a, a, a.length);
+		}
+	}
+	
 	public void set(int row, int col, double value) {
-		a[row * cols + col] = value;
+		store(row * cols + col, value);
 	}
 	
 	public double get(int row, int col) {
-		return a[row * cols + col];
+		return value(row * cols + col);
 	}
 	
 	public double get(int index) {
-		return a[index];
+		return value(index);
 	}
 	
 	public Matrix addIncrement(int row, int col, double increment) {
-		Matrix result = apply((index, value) -> a[index]);
+		Matrix result = apply((index, value) -> value);
 		
 		double originalValue = get(row, col);
 		double newValue = originalValue + increment;
@@ -268,7 +797,7 @@ public class Matrix implements Serializable{
 		final int prime = 31;
 		int result = 1;
 		
-		result = prime * result + Arrays.hashCode(a);
+		result = prime * result + (f != null ? Arrays.hashCode(f) : Arrays.hashCode(a));
 		result = prime * result + Objects.hash(cols, rows);
 		return result;
 	}
@@ -284,8 +813,8 @@ public class Matrix implements Serializable{
 		
 		Matrix other = (Matrix) obj;
 		
-		for (int i = 0; i < a.length; i++) {
-			if (Math.abs(a[i] - other.a[i]) > tolerance) {
+		for (int i = 0; i < size(); i++) {
+			if (Math.abs(value(i) - other.value(i)) > tolerance) {
 				return false;
 			}
 		}
@@ -308,7 +837,7 @@ public class Matrix implements Serializable{
 		
 		for(int row = 0; row < rows; row++) {
 			for (int col = 0; col < cols; col++) {
-				sb.append(String.format(NUMBER_FORMAT, a[index]));
+				sb.append(String.format(NUMBER_FORMAT, value(index)));
 				
 				index++;
 			}
@@ -319,7 +848,34 @@ public class Matrix implements Serializable{
 		return sb.toString();
 	}
 
+	/*
+	 * Returns the backing array of a double matrix, which writes go
+	 * through to. A float matrix has no double array, so it returns a copy
+	 * of its values instead and writes to that copy are lost; use
+	 * getFloats to change a float matrix in place.
+	 */
 	public double[] get() {
+		if (f != null) {
+			double[] values = new double[f.length];
+			
+			for (int i = 0; i < f.length; i++) {
+				values[i] = f[i];
+			}
+			
+			return values;
+		}
+		
 		return a;
 	}
+
+	/*
+	 * Returns the backing array of a float matrix.
+	 */
+	public float[] getFloats() {
+		if (f == null) {
+			throw new IllegalStateException("Matrix has double precision");
+		}
+
+		return f;
+	}
 }
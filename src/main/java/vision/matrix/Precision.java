@@ -0,0 +1,5 @@
+package vision.matrix;
+
+public enum Precision {
+	DOUBLE, FLOAT
+}
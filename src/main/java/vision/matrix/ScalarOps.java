@@ -0,0 +1,95 @@
+package vision.matrix;
+
+public class ScalarOps implements VectorOps {
+
+	@Override
+	public void relu(double[] src, double[] dst, int length) {
+		for (int i = 0; i < length; i++) {
+			double value = src[i];
+			dst[i] = value > 0 ? value : 0;
+		}
+	}
+
+	@Override
+	public void reluMask(double[] error, double[] input, double[] dst, int length) {
+		for (int i = 0; i < length; i++) {
+			dst[i] = input[i] > 0 ? error[i] : 0;
+		}
+	}
+
+	@Override
+	public void exp(double[] src, double[] dst, int length) {
+		for (int i = 0; i < length; i++) {
+			dst[i] = Math.exp(src[i]);
+		}
+	}
+
+	@Override
+	public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			y[yOffset + i] += alpha * x[xOffset + i];
+		}
+	}
+
+	@Override
+	public double sum(double[] a, int length) {
+		double sum = 0;
+
+		for (int i = 0; i < length; i++) {
+			sum += a[i];
+		}
+
+		return sum;
+	}
+
+	@Override
+	public void relu(float[] src, float[] dst, int length) {
+		for (int i = 0; i < length; i++) {
+			float value = src[i];
+			dst[i] = value > 0 ? value : 0;
+		}
+	}
+
+	@Override
+	public void reluMask(float[] error, float[] input, float[] dst, int length) {
+		for (int i = 0; i < length; i++) {
+			dst[i] = input[i] > 0 ? error[i] : 0;
+		}
+	}
+
+	@Override
+	public void exp(float[] src, float[] dst, int length) {
+		for (int i = 0; i < length; i++) {
+			dst[i] = (float) Math.exp(src[i]);
+		}
+	}
+
+	@Override
+	public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			y[yOffset + i] += alpha * x[xOffset + i];
+		}
+	}
+
+	@Override
+	public double sum(float[] a, int length) {
+		double sum = 0;
+
+		for (int i = 0; i < length; i++) {
+			sum += a[i];
+		}
+
+		return sum;
+	}
+
+	@Override
+	public double dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+		float sum = 0;
+
+		for (int i = 0; i < length; i++) {
+			sum += a[aOffset + i] * b[bOffset + i];
+		}
+
+		return sum;
+	}
+}
@@ -0,0 +1,205 @@
+package vision.matrix;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+public class SimdOps implements VectorOps {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	@Override
+	public void relu(double[] src, double[] dst, int length) {
+		DoubleVector zero = DoubleVector.zero(SPECIES);
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+
+		for (; i < bound; i += SPECIES.length()) {
+			DoubleVector v = DoubleVector.fromArray(SPECIES, src, i);
+			VectorMask<Double> positive = v.compare(VectorOperators.GT, 0.0);
+
+			zero.blend(v, positive).intoArray(dst, i);
+		}
+
+		for (; i < length; i++) {
+			double value = src[i];
+			dst[i] = value > 0 ? value : 0;
+		}
+	}
+
+	@Override
+	public void reluMask(double[] error, double[] input, double[] dst, int length) {
+		DoubleVector zero = DoubleVector.zero(SPECIES);
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+
+		for (; i < bound; i += SPECIES.length()) {
+			VectorMask<Double> positive = DoubleVector.fromArray(SPECIES, input, i).compare(VectorOperators.GT, 0.0);
+
+			zero.blend(DoubleVector.fromArray(SPECIES, error, i), positive).intoArray(dst, i);
+		}
+
+		for (; i < length; i++) {
+			dst[i] = input[i] > 0 ? error[i] : 0;
+		}
+	}
+
+	@Override
+	public void exp(double[] src, double[] dst, int length) {
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+
+		for (; i < bound; i += SPECIES.length()) {
+			DoubleVector.fromArray(SPECIES, src, i).lanewise(VectorOperators.EXP).intoArray(dst, i);
+		}
+
+		for (; i < length; i++) {
+			dst[i] = Math.exp(src[i]);
+		}
+	}
+
+	@Override
+	public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+
+		for (; i < bound; i += SPECIES.length()) {
+			DoubleVector xv = DoubleVector.fromArray(SPECIES, x, xOffset + i);
+			DoubleVector yv = DoubleVector.fromArray(SPECIES, y, yOffset + i);
+
+			xv.mul(alpha).add(yv).intoArray(y, yOffset + i);
+		}
+
+		for (; i < length; i++) {
+			y[yOffset + i] += alpha * x[xOffset + i];
+		}
+	}
+
+	@Override
+	public double sum(double[] a, int length) {
+		DoubleVector acc = DoubleVector.zero(SPECIES);
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+
+		for (; i < bound; i += SPECIES.length()) {
+			acc = acc.add(DoubleVector.fromArray(SPECIES, a, i));
+		}
+
+		double sum = acc.reduceLanes(VectorOperators.ADD);
+
+		for (; i < length; i++) {
+			sum += a[i];
+		}
+
+		return sum;
+	}
+
+	@Override
+	public void relu(float[] src, float[] dst, int length) {
+		FloatVector zero = FloatVector.zero(FLOAT_SPECIES);
+		int bound = FLOAT_SPECIES.loopBound(length);
+		int i = 0;
+
+		for (; i < bound; i += FLOAT_SPECIES.length()) {
+			FloatVector v = FloatVector.fromArray(FLOAT_SPECIES, src, i);
+			VectorMask<Float> positive = v.compare(VectorOperators.GT, 0.0f);
+
+			zero.blend(v, positive).intoArray(dst, i);
+		}
+
+		for (; i < length; i++) {
+			float value = src[i];
+			dst[i] = value > 0 ? value : 0;
+		}
+	}
+
+	@Override
+	public void reluMask(float[] error, float[] input, float[] dst, int length) {
+		FloatVector zero = FloatVector.zero(FLOAT_SPECIES);
+		int bound = FLOAT_SPECIES.loopBound(length);
+		int i = 0;
+
+		for (; i < bound; i += FLOAT_SPECIES.length()) {
+			VectorMask<Float> positive = FloatVector.fromArray(FLOAT_SPECIES, input, i).compare(VectorOperators.GT, 0.0f);
+
+			zero.blend(FloatVector.fromArray(FLOAT_SPECIES, error, i), positive).intoArray(dst, i);
+		}
+
+		for (; i < length; i++) {
+			dst[i] = input[i] > 0 ? error[i] : 0;
+		}
+	}
+
+	@Override
+	public void exp(float[] src, float[] dst, int length) {
+		int bound = FLOAT_SPECIES.loopBound(length);
+		int i = 0;
+
+		for (; i < bound; i += FLOAT_SPECIES.length()) {
+			FloatVector.fromArray(FLOAT_SPECIES, src, i).lanewise(VectorOperators.EXP).intoArray(dst, i);
+		}
+
+		for (; i < length; i++) {
+			dst[i] = (float) Math.exp(src[i]);
+		}
+	}
+
+	@Override
+	public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+		int bound = FLOAT_SPECIES.loopBound(length);
+		int i = 0;
+
+		for (; i < bound; i += FLOAT_SPECIES.length()) {
+			FloatVector xv = FloatVector.fromArray(FLOAT_SPECIES, x, xOffset + i);
+			FloatVector yv = FloatVector.fromArray(FLOAT_SPECIES, y, yOffset + i);
+
+			xv.mul(alpha).add(yv).intoArray(y, yOffset + i);
+		}
+
+		for (; i < length; i++) {
+			y[yOffset + i] += alpha * x[xOffset + i];
+		}
+	}
+
+	@Override
+	public double sum(float[] a, int length) {
+		FloatVector acc = FloatVector.zero(FLOAT_SPECIES);
+		int bound = FLOAT_SPECIES.loopBound(length);
+		int i = 0;
+
+		for (; i < bound; i += FLOAT_SPECIES.length()) {
+			acc = acc.add(FloatVector.fromArray(FLOAT_SPECIES, a, i));
+		}
+
+		double sum = acc.reduceLanes(VectorOperators.ADD);
+
+		for (; i < length; i++) {
+			sum += a[i];
+		}
+
+		return sum;
+	}
+
+	@Override
+	public double dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+		FloatVector acc = FloatVector.zero(FLOAT_SPECIES);
+		int bound = FLOAT_SPECIES.loopBound(length);
+		int i = 0;
+
+		for (; i < bound; i += FLOAT_SPECIES.length()) {
+			FloatVector x = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+
+			acc = x.fma(FloatVector.fromArray(FLOAT_SPECIES, b, bOffset + i), acc);
+		}
+
+		float sum = acc.reduceLanes(VectorOperators.ADD);
+
+		for (; i < length; i++) {
+			sum += a[aOffset + i] * b[bOffset + i];
+		}
+
+		return sum;
+	}
+}
@@ -0,0 +1,111 @@
+package vision.matrix;
+
+/*
+ * Optimizer update kernels. Each makes one pass over a parameter tensor,
+ * reading the summed gradient (multiplied by scale to get its mean) and
+ * updating the optimizer's state and the parameter in place.
+ * Every routine has a double and a float overload.
+ */
+public final class Updates {
+
+	private Updates() {
+	}
+
+	/*
+	 * velocity = momentum * velocity + gradient, then the parameter moves
+	 * by rate times the velocity, or for Nesterov momentum by rate times
+	 * (gradient + momentum * velocity).
+	 */
+	public static void momentum(double[] parameter, double[] gradient, double[] velocity, int length, double scale,
+			double rate, double momentum, boolean nesterov) {
+		for (int i = 0; i < length; i++) {
+			double g = scale * gradient[i];
+			double v = momentum * velocity[i] + g;
+
+			velocity[i] = v;
+			parameter[i] -= rate * (nesterov ? g + momentum * v : v);
+		}
+	}
+
+	/*
+	 * meanSquare = decay * meanSquare + (1 - decay) * gradient^2, and the
+	 * step is divided by the root of the mean square.
+	 */
+	public static void rmsProp(double[] parameter, double[] gradient, double[] meanSquare, int length, double scale,
+			double rate, double decay, double epsilon) {
+		for (int i = 0; i < length; i++) {
+			double g = scale * gradient[i];
+			double s = decay * meanSquare[i] + (1 - decay) * g * g;
+
+			meanSquare[i] = s;
+			parameter[i] -= rate * g / (Math.sqrt(s) + epsilon);
+		}
+	}
+
+	/*
+	 * The caller folds the bias corrections for the current step into rate
+	 * and epsilon, so the moments are used as they are.
+	 */
+	public static void adam(double[] parameter, double[] gradient, double[] mean, double[] variance, int length,
+			double scale, double rate, double beta1, double beta2, double epsilon) {
+		for (int i = 0; i < length; i++) {
+			double g = scale * gradient[i];
+			double m = beta1 * mean[i] + (1 - beta1) * g;
+			double v = beta2 * variance[i] + (1 - beta2) * g * g;
+
+			mean[i] = m;
+			variance[i] = v;
+			parameter[i] -= rate * m / (Math.sqrt(v) + epsilon);
+		}
+	}
+
+	public static void momentum(float[] parameter, float[] gradient, float[] velocity, int length, double scale,
+			double rate, double momentum, boolean nesterov) {
+		float s = (float) scale;
+		float r = (float) rate;
+		float mu = (float) momentum;
+
+		for (int i = 0; i < length; i++) {
+			float g = s * gradient[i];
+			float v = mu * velocity[i] + g;
+
+			velocity[i] = v;
+			parameter[i] -= r * (nesterov ? g + mu * v : v);
+		}
+	}
+
+	public static void rmsProp(float[] parameter, float[] gradient, float[] meanSquare, int length, double scale,
+			double rate, double decay, double epsilon) {
+		float s = (float) scale;
+		float r = (float) rate;
+		float d = (float) decay;
+		float e = (float) epsilon;
+
+		for (int i = 0; i < length; i++) {
+			float g = s * gradient[i];
+			float ms = d * meanSquare[i] + (1 - d) * g * g;
+
+			meanSquare[i] = ms;
+			parameter[i] -= r * g / ((float) Math.sqrt(ms) + e);
+		}
+	}
+
+	public static void adam(float[] parameter, float[] gradient, float[] mean, float[] variance, int length,
+			double scale, double rate, double beta1, double beta2, double epsilon) {
+		float s = (float) scale;
+		float r = (float) rate;
+		float b1 = (float) beta1;
+		float b2 = (float) beta2;
+		float e = (float) epsilon;
+
+		for (int i = 0; i < length; i++) {
+			float g = s * gradient[i];
+			float m = b1 * mean[i] + (1 - b1) * g;
+			float v = b2 * variance[i] + (1 - b2) * g * g;
+
+			mean[i] = m;
+			variance[i] = v;
+			parameter[i] -= r * m / ((float) Math.sqrt(v) + e);
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package vision.matrix;
+
+/*
+ * Element-wise and reduction kernels used by Matrix for the hot parts of
+ * the forward and backward passes. The SIMD implementation needs the
+ * jdk.incubator.vector module at runtime (--add-modules jdk.incubator.vector);
+ * without it, or with -Dvision.simd=false, the scalar implementation is used.
+ */
+public interface VectorOps {
+	void relu(double[] src, double[] dst, int length);
+
+	void reluMask(double[] error, double[] input, double[] dst, int length);
+
+	void exp(double[] src, double[] dst, int length);
+
+	void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length);
+
+	double sum(double[] a, int length);
+
+	void relu(float[] src, float[] dst, int length);
+
+	void reluMask(float[] error, float[] input, float[] dst, int length);
+
+	void exp(float[] src, float[] dst, int length);
+
+	void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length);
+
+	double sum(float[] a, int length);
+
+	double dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+	static VectorOps create() {
+		if (!Boolean.parseBoolean(System.getProperty("vision.simd", "true"))) {
+			return new ScalarOps();
+		}
+
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+			return new ScalarOps();
+		}
+
+		try {
+			return (VectorOps) Class.forName("vision.matrix.SimdOps").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return new ScalarOps();
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package vision.matrix;
+
+import java.io.Serializable;
+
+/*
+ * A square window slid over a channels x height x width image, as used
+ * by convolution and pooling. Positions are counted row by row over the
+ * output, whose height and width follow from the stride and the zero
+ * padding added around each edge of the input.
+ */
+public class Window implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final int channels;
+	private final int height;
+	private final int width;
+	private final int size;
+	private final int stride;
+	private final int padding;
+
+	public Window(int channels, int height, int width, int size, int stride, int padding) {
+		this.channels = channels;
+		this.height = height;
+		this.width = width;
+		this.size = size;
+		this.stride = stride;
+		this.padding = padding;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getStride() {
+		return stride;
+	}
+
+	public int getPadding() {
+		return padding;
+	}
+
+	public int getOutputHeight() {
+		return (height + 2 * padding - size) / stride + 1;
+	}
+
+	public int getOutputWidth() {
+		return (width + 2 * padding - size) / stride + 1;
+	}
+
+	public int getPositions() {
+		return getOutputHeight() * getOutputWidth();
+	}
+
+	public int getInputSize() {
+		return channels * height * width;
+	}
+
+	/*
+	 * Rows of the column matrix: one per channel and tap of the window.
+	 */
+	public int getTaps() {
+		return channels * size * size;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%dx%d stride %d padding %d over %dx%dx%d", size, size, stride, padding, channels, height, width);
+	}
+}
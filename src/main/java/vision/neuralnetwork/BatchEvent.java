@@ -0,0 +1,63 @@
+package vision.neuralnetwork;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("vision.neuralnetwork.Batch")
+@Label("Batch")
+@Category("NeuralFaceID")
+@StackTrace(false)
+class BatchEvent extends Event {
+	@Label("Training")
+	boolean training;
+
+	@Label("Items")
+	int items;
+
+	@Label("Load")
+	@Timespan
+	long loadNanos;
+
+	@Label("Decode")
+	@Timespan
+	long decodeNanos;
+
+	@Label("Forward")
+	@Timespan
+	long forwardNanos;
+
+	@Label("Backward")
+	@Timespan
+	long backwardNanos;
+
+	@Label("Lock Wait")
+	@Timespan
+	long lockWaitNanos;
+
+	@Label("Adjust")
+	@Timespan
+	long adjustNanos;
+
+	static void emit(BatchMetrics metrics) {
+		BatchEvent event = new BatchEvent();
+
+		if (!event.isEnabled()) {
+			return;
+		}
+
+		event.training = metrics.isTraining();
+		event.items = metrics.getItems();
+		event.loadNanos = metrics.getLoadNanos();
+		event.decodeNanos = metrics.getDecodeNanos();
+		event.forwardNanos = metrics.getForwardNanos();
+		event.backwardNanos = metrics.getBackwardNanos();
+		event.lockWaitNanos = metrics.getLockWaitNanos();
+		event.adjustNanos = metrics.getAdjustNanos();
+
+		event.commit();
+	}
+}
@@ -0,0 +1,112 @@
+package vision.neuralnetwork;
+
+/*
+ * Timings of one batch. Phases a batch did not go through, such as the
+ * backward pass during evaluation, are zero.
+ */
+public class BatchMetrics {
+	private boolean training;
+	private int batch;
+	private int numberBatches;
+	private int items;
+
+	private long loadNanos;
+	private long decodeNanos;
+	private long forwardNanos;
+	private long backwardNanos;
+	private long lockWaitNanos;
+	private long adjustNanos;
+
+	private double loss;
+	private double percentCorrect;
+
+	BatchMetrics(boolean training) {
+		this.training = training;
+	}
+
+	public boolean isTraining() {
+		return training;
+	}
+
+	public int getBatch() {
+		return batch;
+	}
+
+	public int getNumberBatches() {
+		return numberBatches;
+	}
+
+	void setBatch(int batch, int numberBatches) {
+		this.batch = batch;
+		this.numberBatches = numberBatches;
+	}
+
+	public int getItems() {
+		return items;
+	}
+
+	void setItems(int items) {
+		this.items = items;
+	}
+
+	public long getLoadNanos() {
+		return loadNanos;
+	}
+
+	void setLoadNanos(long loadNanos) {
+		this.loadNanos = loadNanos;
+	}
+
+	public long getDecodeNanos() {
+		return decodeNanos;
+	}
+
+	void setDecodeNanos(long decodeNanos) {
+		this.decodeNanos = decodeNanos;
+	}
+
+	public long getForwardNanos() {
+		return forwardNanos;
+	}
+
+	void setForwardNanos(long forwardNanos) {
+		this.forwardNanos = forwardNanos;
+	}
+
+	public long getBackwardNanos() {
+		return backwardNanos;
+	}
+
+	void setBackwardNanos(long backwardNanos) {
+		this.backwardNanos = backwardNanos;
+	}
+
+	public long getLockWaitNanos() {
+		return lockWaitNanos;
+	}
+
+	void setLockWaitNanos(long lockWaitNanos) {
+		this.lockWaitNanos = lockWaitNanos;
+	}
+
+	public long getAdjustNanos() {
+		return adjustNanos;
+	}
+
+	void setAdjustNanos(long adjustNanos) {
+		this.adjustNanos = adjustNanos;
+	}
+
+	public double getLoss() {
+		return loss;
+	}
+
+	public double getPercentCorrect() {
+		return percentCorrect;
+	}
+
+	void setEvaluation(double loss, double percentCorrect) {
+		this.loss = loss;
+		this.percentCorrect = percentCorrect;
+	}
+}
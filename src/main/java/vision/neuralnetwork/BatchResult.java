@@ -1,27 +1,38 @@
 package vision.neuralnetwork;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 
 import vision.matrix.Matrix;
 
 public class BatchResult {
-	private LinkedList<Matrix> io = new LinkedList<>();
-	private LinkedList<Matrix> weightErrors = new LinkedList<>();
-	private LinkedList<Matrix> weightInputs = new LinkedList<>();
+	private ArrayList<Matrix> io = new ArrayList<>();
+	private ArrayList<Matrix> weightErrors = new ArrayList<>();
+	private ArrayList<Matrix> weightInputs = new ArrayList<>();
 	
 	private Matrix inputError;
 	private double loss;
 	private double percentCorrect;
 	
+	public void clear() {
+		io.clear();
+		weightErrors.clear();
+		weightInputs.clear();
+		
+		inputError = null;
+		loss = 0;
+		percentCorrect = 0;
+	}
+	
 	public void addWeightInput(Matrix input) {
 		weightInputs.add(input);
 	}
 	
-	public LinkedList<Matrix> getWeightInputs() {
+	public List<Matrix> getWeightInputs() {
 		return weightInputs;
 	}
 	
-	public LinkedList<Matrix> getIo() {
+	public List<Matrix> getIo() {
 		return io;
 	}
 	
@@ -30,15 +41,15 @@ public class BatchResult {
 	}
 	
 	public Matrix getOutput() {
-		return io.getLast();
+		return io.get(io.size() - 1);
 	}
 
-	public LinkedList<Matrix> getWeightErrors() {
+	public List<Matrix> getWeightErrors() {
 		return weightErrors;
 	}
 
 	public void addWeightError(Matrix weightError) {
-		weightErrors.addFirst(weightError);
+		weightErrors.add(0, weightError);
 	}
 
 	public Matrix getInputError() {
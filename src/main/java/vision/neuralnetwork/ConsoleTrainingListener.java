@@ -0,0 +1,42 @@
+package vision.neuralnetwork;
+
+/*
+ * Prints a line per epoch: a row of dots while training, then throughput
+ * and, when evaluating, the loss and percentage correct.
+ */
+public class ConsoleTrainingListener implements TrainingListener {
+	private static final int DOTS = 30;
+
+	@Override
+	public void epochStarted(int epoch) {
+		System.out.printf("Epoch %3d ", epoch + 1);
+	}
+
+	@Override
+	public void batchCompleted(BatchMetrics metrics) {
+		int printDot = Math.max(1, metrics.getNumberBatches() / DOTS);
+
+		if (metrics.isTraining() && metrics.getBatch() % printDot == 0) {
+			System.out.print(".");
+		}
+	}
+
+	@Override
+	public void passCompleted(EpochMetrics metrics) {
+		if (metrics.isTraining()) {
+			System.out.printf(" %8.0f samples/s ", metrics.getSamplesPerSecond());
+		} else {
+			System.out.printf("Loss: %.3f -- Percent Correct: %.2f", metrics.getAverageLoss(), metrics.getAveragePercentCorrect());
+		}
+	}
+
+	@Override
+	public void epochCompleted(int epoch) {
+		System.out.println();
+	}
+
+	@Override
+	public void stoppedEarly(int epoch) {
+		System.out.printf("Stopped early after epoch %d; evaluation loss no longer improving\n", epoch + 1);
+	}
+}
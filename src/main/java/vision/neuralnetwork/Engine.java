@@ -2,9 +2,12 @@ package vision.neuralnetwork;
 
 import java.io.Serializable;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Random;
 
 import vision.matrix.Matrix;
+import vision.matrix.Precision;
+import vision.matrix.Window;
 
 public class Engine implements Serializable{
 	private static final long serialVersionUID = 1L;
@@ -12,10 +15,18 @@ public class Engine implements Serializable{
 	private LinkedList<Transform> transforms= new LinkedList<>();
 	private LinkedList<Matrix> weights = new LinkedList<>();
 	private LinkedList<Matrix> biases = new LinkedList<>();
+	private LinkedList<Window> windows = new LinkedList<>();
+	private int[] inputShape;
 	
 	private LossFunction lossFunction = LossFunction.CROSSENTROPY;
 	private boolean storeInputError = false;
 	private double scaleInitialWeights = 1;
+	private Precision precision = Precision.DOUBLE;
+	private Optimizer optimizer = Optimizer.SGD;
+	private double[] optimizerParams = {};
+	
+	transient private Random random;
+	transient private OptimizerState optimizerState;
 	
 	public void setScaleInitialWeights(double scale) {
 		this.scaleInitialWeights = scale;
@@ -25,54 +36,184 @@ public class Engine implements Serializable{
 		}
 	}
 	
-	public void evaluate(BatchResult batchResult, Matrix expected) {
-		if(lossFunction != LossFunction.CROSSENTROPY) {
-			throw new UnsupportedOperationException("Loss function must be cross entropy");
+	public Precision getPrecision() {
+		return precision == null ? Precision.DOUBLE : precision;
+	}
+	
+	public void setPrecision(Precision precision) {
+		this.precision = precision;
+		
+		weights.replaceAll(weight -> weight.toPrecision(precision));
+		biases.replaceAll(bias -> bias.toPrecision(precision));
+		optimizerState = null;
+	}
+	
+	public Optimizer getOptimizer() {
+		return optimizer == null ? Optimizer.SGD : optimizer;
+	}
+	
+	/*
+	 * Selects the optimizer and its parameters, as listed in Optimizer;
+	 * any left out take their defaults. Clears the optimizer state.
+	 */
+	public void setOptimizer(Optimizer optimizer, double... params) {
+		this.optimizer = optimizer;
+		this.optimizerParams = params.clone();
+		
+		optimizerState = null;
+	}
+	
+	double[] getOptimizerParams() {
+		return optimizerParams == null ? new double[0] : optimizerParams;
+	}
+	
+	private double getOptimizerParam(int index, double defaultValue) {
+		return optimizerParams != null && index < optimizerParams.length ? optimizerParams[index] : defaultValue;
+	}
+	
+	boolean hasOptimizerState() {
+		return optimizerState != null && optimizerState.getStep() != 0;
+	}
+	
+	public OptimizerState getOptimizerState() {
+		if (optimizerState == null) {
+			optimizerState = new OptimizerState(weights, biases, getOptimizer());
 		}
 		
-		double loss = LossFunctions.crossEntropy(expected, batchResult.getOutput()).averageColumn().get(0);
+		return optimizerState;
+	}
+	
+	/*
+	 * The channels, height and width of the images fed to the network,
+	 * which convolution and pooling layers need.
+	 */
+	public void setInputShape(int channels, int height, int width) {
+		this.inputShape = new int[] {channels, height, width};
 		
-		Matrix predictions = batchResult.getOutput().getGreatestRowNumbers();
-		Matrix actual = expected.getGreatestRowNumbers();
+		if (transforms.size() != 0) {
+			throw new RuntimeException("Input shape must be set before adding any layers!");
+		}
+	}
+	
+	public void setSeed(long seed) {
+		random = new Random(seed);
+		
+		if (weights.size() != 0) {
+			throw new RuntimeException("Seed must be set before adding any layers!");
+		}
+	}
+	
+	public void evaluate(BatchResult batchResult, Matrix expected) {
+		evaluate(batchResult, expected, new Workspace());
+	}
+	
+	/*
+	 * Sets the loss and the percentage of correct predictions from the
+	 * logits feeding the softmax, in one sweep over the batch.
+	 */
+	public void evaluate(BatchResult batchResult, Matrix expected, Workspace workspace) {
+		checkSoftMaxCrossEntropy();
+		
+		Matrix logits = batchResult.getIo().get(transforms.size() - 1);
+		Matrix predictions = workspace.getPredictions(logits.getCols());
+		Matrix gradient = workspace.getLossGradient(logits.getRows(), logits.getCols(), logits.getPrecision());
+		
+		double loss = logits.softMaxCrossEntropy(expected, gradient, predictions);
 		
 		int correct = 0;
 		
-		for (int i = 0; i < actual.getCols(); i++) {
-			if ((int)actual.get(i) == (int)predictions.get(i)) {
+		for (int col = 0; col < logits.getCols(); col++) {
+			if ((int)predictions.get(col) == greatestRow(expected, col)) {
 				correct++;
 			}
 		}
 		
-		double percentCorrect = (100.0 * correct) / actual.getCols();
+		double percentCorrect = (100.0 * correct) / logits.getCols();
 		
-		batchResult.setLoss(loss);
+		batchResult.setLoss(loss / logits.getCols());
 		batchResult.setPercentCorrect(percentCorrect);
 	}
 	
-	BatchResult runForwards(Matrix input) {
-		BatchResult batchResult = new BatchResult();
-		Matrix output = input;
+	private static int greatestRow(Matrix m, int col) {
+		int greatest = 0;
+		
+		for (int row = 1; row < m.getRows(); row++) {
+			if (m.get(row, col) > m.get(greatest, col)) {
+				greatest = row;
+			}
+		}
+		
+		return greatest;
+	}
+	
+	private void checkSoftMaxCrossEntropy() {
+		if(lossFunction != LossFunction.CROSSENTROPY || transforms.getLast() != Transform.SOFTMAX) {
+			throw new UnsupportedOperationException("Loss function must be cross entropy and last transform must be softmax");
+		}
+	}
+	
+	public BatchResult runForwards(Matrix input) {
+		return runForwards(input, new Workspace());
+	}
+	
+	/*
+	 * Runs the batch using the workspace's buffers. The result belongs to
+	 * the workspace and is only valid until its next batch.
+	 */
+	public BatchResult runForwards(Matrix input, Workspace workspace) {
+		BatchResult batchResult = workspace.getBatchResult();
+		Matrix output = input.toPrecision(getPrecision());
 		
-		int denseIndex = 0;
+		int weightIndex = 0;
+		int windowIndex = 0;
 		
 		batchResult.addIo(output);
 		
-		for(var t: transforms) {
-			if(t == Transform.DENSE) {
+		for(int t = 0; t < transforms.size(); t++) {
+			Transform transform = transforms.get(t);
+			
+			if(transform == Transform.DENSE) {
 				
 				batchResult.addWeightInput(output);
-				Matrix weight = weights.get(denseIndex);
-				Matrix bias = biases.get(denseIndex);
+				Matrix weight = weights.get(weightIndex);
+				Matrix bias = biases.get(weightIndex);
+				
+				Matrix result = workspace.getOutput(t, weight.getRows(), output.getCols(), getPrecision());
+				boolean relu = isFollowedByRelu(t);
+				
+				output = weight.multiplyAddBias(output, bias, relu, result);
 				
-				output = weight.multiply(output).modify((row, col, value) -> value + bias.get(row));
-						
-				++denseIndex;
+				++weightIndex;
+				
+				if(relu) {
+					/*
+					 * The ReLU ran in the dense layer's epilogue, so both
+					 * transforms share the same output.
+					 */
+					batchResult.addIo(output);
+					++t;
+				}
 			}
-			else if(t == Transform.RELU) {
-				output = output.modify(value -> value > 0 ? value: 0);
+			else if(transform == Transform.CONV2D) {
+				Matrix columns = lower(t, output, windows.get(windowIndex++), workspace);
+				boolean relu = isFollowedByRelu(t);
+				
+				batchResult.addWeightInput(columns);
+				output = convolve(t, columns, weightIndex++, relu, output.getCols(), workspace);
+				
+				if(relu) {
+					batchResult.addIo(output);
+					++t;
+				}
+			}
+			else if(transform == Transform.MAXPOOL) {
+				output = pool(t, output, windows.get(windowIndex++), workspace);
+			}
+			else if(transform == Transform.RELU) {
+				output = output.relu();
 			}
-			else if(t == Transform.SOFTMAX) {
-				output = output.softMax();
+			else if(transform == Transform.SOFTMAX) {
+				output = output.softMax(workspace.getOutput(t, output.getRows(), output.getCols(), getPrecision()));
 			}
 			
 			batchResult.addIo(output);
@@ -81,7 +222,168 @@ public class Engine implements Serializable{
 		return batchResult;
 	}
 	
-	public void adjust(BatchResult batchResult, double learningRate) {
+	/*
+	 * Forward pass for inference only; nothing is recorded for backprop.
+	 * Reads the weights without modifying them, so any number of threads
+	 * can predict at once as long as each uses its own workspace.
+	 */
+	Matrix predict(Matrix input, Workspace workspace) {
+		return predict(input, workspace, transforms.size());
+	}
+	
+	/*
+	 * Runs only the first count transforms.
+	 */
+	Matrix predict(Matrix input, Workspace workspace, int count) {
+		Matrix output = input.toPrecision(getPrecision());
+		
+		int weightIndex = 0;
+		int windowIndex = 0;
+		
+		for(int t = 0; t < count; t++) {
+			Transform transform = transforms.get(t);
+			
+			if(transform == Transform.DENSE) {
+				Matrix weight = weights.get(weightIndex);
+				Matrix bias = biases.get(weightIndex);
+				
+				Matrix result = workspace.getOutput(t, weight.getRows(), output.getCols(), getPrecision());
+				boolean relu = isFollowedByRelu(t, count);
+				
+				output = weight.multiplyAddBias(output, bias, relu, result);
+				
+				++weightIndex;
+				
+				if(relu) {
+					++t;
+				}
+			}
+			else if(transform == Transform.CONV2D) {
+				Matrix columns = lower(t, output, windows.get(windowIndex++), workspace);
+				boolean relu = isFollowedByRelu(t, count);
+				
+				output = convolve(t, columns, weightIndex++, relu, output.getCols(), workspace);
+				
+				if(relu) {
+					++t;
+				}
+			}
+			else if(transform == Transform.MAXPOOL) {
+				output = pool(t, output, windows.get(windowIndex++), workspace);
+			}
+			else if(transform == Transform.RELU) {
+				output = output.relu();
+			}
+			else if(transform == Transform.SOFTMAX) {
+				output = output.softMax(workspace.getOutput(t, output.getRows(), output.getCols(), getPrecision()));
+			}
+		}
+		
+		return output;
+	}
+	
+	private boolean isFollowedByRelu(int t) {
+		return isFollowedByRelu(t, transforms.size());
+	}
+	
+	private boolean isFollowedByRelu(int t, int count) {
+		return t + 1 < count && transforms.get(t + 1) == Transform.RELU;
+	}
+	
+	/*
+	 * Copies the windows over the batch into the transform's reusable
+	 * column buffer.
+	 */
+	private Matrix lower(int t, Matrix input, Window window, Workspace workspace) {
+		Matrix columns = workspace.getColumns(t, window.getTaps(), window.getPositions() * input.getCols(), getPrecision());
+		
+		return input.im2col(window, columns);
+	}
+	
+	/*
+	 * One GEMM of the filters with the columns, with the bias and any ReLU
+	 * in its epilogue. The product has a row per filter and a column per
+	 * position and item, which read in row order is the output images.
+	 */
+	private Matrix convolve(int t, Matrix columns, int weightIndex, boolean relu, int items, Workspace workspace) {
+		Matrix weight = weights.get(weightIndex);
+		Matrix result = workspace.getOutput(t, weight.getRows() * columns.getCols() / items, items, getPrecision());
+		
+		weight.multiplyAddBias(columns, biases.get(weightIndex), relu, result.reshape(weight.getRows(), columns.getCols()));
+		
+		return result;
+	}
+	
+	private Matrix pool(int t, Matrix input, Window window, Workspace workspace) {
+		Matrix result = workspace.getOutput(t, window.getChannels() * window.getPositions(), input.getCols(), getPrecision());
+		
+		return input.maxPool(window, result);
+	}
+	
+	/*
+	 * Transforms run to produce an embedding: everything before the final
+	 * dense layer, whose input is the penultimate layer's output.
+	 */
+	int getEmbeddingTransforms() {
+		int last = transforms.lastIndexOf(Transform.DENSE);
+		
+		if (last < 1 || transforms.lastIndexOf(Transform.CONV2D) > last) {
+			throw new UnsupportedOperationException("Embeddings need a final dense layer with another layer before it");
+		}
+		
+		return last;
+	}
+	
+	int getEmbeddingSize() {
+		return weights.getLast().getCols();
+	}
+	
+	int getInputSize() {
+		return inputShape != null ? inputShape[0] * inputShape[1] * inputShape[2] : weights.getFirst().getCols();
+	}
+	
+	int getOutputSize() {
+		int[] shape = getOutputShape();
+		
+		return shape[0] * shape[1] * shape[2];
+	}
+	
+	/*
+	 * Channels, height and width of the last layer's output, with a dense
+	 * layer's output counting as one pixel deep in channels. Null before
+	 * the input size is known.
+	 */
+	private int[] getOutputShape() {
+		int[] shape = inputShape;
+		int weightIndex = 0;
+		int windowIndex = 0;
+		
+		for (var transform : transforms) {
+			switch(transform) {
+			case DENSE:
+				shape = new int[] {weights.get(weightIndex++).getRows(), 1, 1};
+				break;
+			case CONV2D:
+				Window window = windows.get(windowIndex++);
+				shape = new int[] {weights.get(weightIndex++).getRows(), window.getOutputHeight(), window.getOutputWidth()};
+				break;
+			case MAXPOOL:
+				window = windows.get(windowIndex++);
+				shape = new int[] {window.getChannels(), window.getOutputHeight(), window.getOutputWidth()};
+				break;
+			default:
+				break;
+			}
+		}
+		
+		return shape;
+	}
+	
+	public Gradients createGradients() {
+		return new Gradients(weights, biases);
+	}
+	
+	public void accumulateGradients(BatchResult batchResult, Gradients gradients) {
 		var weightInputs = batchResult.getWeightInputs();
 		var weightErrors = batchResult.getWeightErrors();
 		
@@ -89,53 +391,164 @@ public class Engine implements Serializable{
 		assert weightInputs.size() == weights.size();
 		
 		for(int i = 0; i < weights.size(); i++) {
-			var weight = weights.get(i);
-			var bias = biases.get(i);
 			var error = weightErrors.get(i);
 			var input = weightInputs.get(i);
 			
-			assert weight.getCols() == input.getRows();
+			assert weights.get(i).getCols() == input.getRows();
 			
-			var weightAdjust = error.multiply(input.transpose());
-			var biasAdjust = error.averageColumn();
+			gradients.getWeightGradient(i).addProductTransposeRight(error, input);
+			gradients.getBiasGradient(i).addRowSums(error);
+		}
+		
+		gradients.addSamples(batchResult.getIo().get(0).getCols());
+	}
+	
+	public void applyGradients(Gradients gradients, double learningRate) {
+		if(getOptimizer() == Optimizer.SGD) {
+			double rate = learningRate / gradients.getSamples();
+			
+			for(int i = 0; i < weights.size(); i++) {
+				weights.get(i).addScaled(-rate, gradients.getWeightGradient(i));
+				biases.get(i).addScaled(-rate, gradients.getBiasGradient(i));
+			}
+			return;
+		}
+		
+		OptimizerState state = getOptimizerState();
+		int step = state.nextStep();
+		double scale = 1.0 / gradients.getSamples();
+		
+		for(int i = 0; i < weights.size(); i++) {
+			update(weights.get(i), gradients.getWeightGradient(i), scale, state, 2 * i, learningRate, step);
+			update(biases.get(i), gradients.getBiasGradient(i), scale, state, 2 * i + 1, learningRate, step);
+		}
+	}
+	
+	/*
+	 * One fused pass over the parameter that reads its gradient, updates
+	 * the optimizer's buffers and moves the parameter.
+	 */
+	private void update(Matrix parameter, Matrix gradient, double scale, OptimizerState state, int index, double learningRate, int step) {
+		switch(getOptimizer()) {
+		case MOMENTUM:
+		case NESTEROV:
+			double momentum = getOptimizerParam(0, 0.9);
 			
-			double rate = learningRate / input.getCols();
+			parameter.momentumUpdate(gradient, scale, state.getFirstMoment(index), learningRate, momentum, getOptimizer() == Optimizer.NESTEROV);
+			break;
+		case RMSPROP:
+			double decay = getOptimizerParam(0, 0.9);
+			double epsilon = getOptimizerParam(1, 1e-8);
 			
-			weight.modify((index, value) -> value - rate * weightAdjust.get(index));
+			parameter.rmsPropUpdate(gradient, scale, state.getSecondMoment(index), learningRate, decay, epsilon);
+			break;
+		case ADAM:
+			double beta1 = getOptimizerParam(0, 0.9);
+			double beta2 = getOptimizerParam(1, 0.999);
+			double correction1 = 1 - Math.pow(beta1, step);
+			double correction2 = Math.sqrt(1 - Math.pow(beta2, step));
 			
-			bias.modify((row, col, value) -> value - biasAdjust.get(row) * learningRate);
+			parameter.adamUpdate(gradient, scale, state.getFirstMoment(index), state.getSecondMoment(index),
+					learningRate * correction2 / correction1, beta1, beta2, getOptimizerParam(2, 1e-8) * correction2);
+			break;
+		default:
+			parameter.addScaled(-learningRate * scale, gradient);
 		}
 	}
 	
+	public void adjust(BatchResult batchResult, double learningRate) {
+		adjust(batchResult, learningRate, new Workspace());
+	}
+	
+	public void adjust(BatchResult batchResult, double learningRate, Workspace workspace) {
+		Gradients gradients = workspace.getGradients(this);
+		
+		gradients.clear();
+		accumulateGradients(batchResult, gradients);
+		applyGradients(gradients, learningRate);
+	}
+	
 	public void runBackwards(BatchResult batchResult, Matrix expected) {
-		var transformsIt = transforms.descendingIterator();
+		runBackwards(batchResult, expected, new Workspace());
+	}
+	
+	public void runBackwards(BatchResult batchResult, Matrix expected, Workspace workspace) {
+		checkSoftMaxCrossEntropy();
 		
-		if(lossFunction != LossFunction.CROSSENTROPY || transforms.getLast() != Transform.SOFTMAX) {
-			throw new UnsupportedOperationException("Loss function must be cross entropy and last transform must be softmax");
-		}
+		var io = batchResult.getIo();
+		int last = transforms.size() - 1;
+		int weightIndex = weights.size();
+		int windowIndex = windows.size();
 		
-		var ioIt = batchResult.getIo().descendingIterator();
-		var weightIt = weights.descendingIterator();
+		/*
+		 * The error at the softmax input comes straight from the logits,
+		 * and the training loss falls out of the same sweep.
+		 */
+		Matrix logits = io.get(last);
+		Matrix error = workspace.getError(last, logits.getRows(), logits.getCols(), getPrecision());
 		
-		Matrix softmaxOutput = ioIt.next();
-		Matrix error = softmaxOutput.apply((index, value)->value - expected.get(index));
+		batchResult.setLoss(logits.softMaxCrossEntropy(expected, error, null) / logits.getCols());
 		
-		while(transformsIt.hasNext()) {
-			Transform transform = transformsIt.next();
-			Matrix input = ioIt.next();
+		// Nothing before the first dense layer needs an error unless the input error is stored.
+		for(int t = last; t >= 0 && (weightIndex > 0 || storeInputError); t--) {
+			Transform transform = transforms.get(t);
+			Matrix input = io.get(t);
 			
 			switch(transform) {
 			case DENSE:
-				Matrix weight = weightIt.next();
+				Matrix weight = weights.get(--weightIndex);
 				
 				batchResult.addWeightError(error);
 				
-				if(weightIt.hasNext() || storeInputError) {
-					error = weight.transpose().multiply(error);
+				if(weightIndex == 0 && !storeInputError) {
+					break;
 				}
+				
+				if(t > 0 && transforms.get(t - 1) == Transform.RELU) {
+					/*
+					 * Apply the preceding ReLU's mask while the error through
+					 * this layer is produced, and skip the ReLU itself.
+					 */
+					Matrix result = workspace.getError(t - 1, weight.getCols(), error.getCols(), getPrecision());
+					
+					error = weight.multiplyTransposeLeftMasked(error, io.get(t - 1), result);
+					--t;
+				}
+				else {
+					Matrix result = workspace.getError(t, weight.getCols(), error.getCols(), getPrecision());
+					error = weight.multiplyTransposeLeft(error, result);
+				}
+				break;
+			case CONV2D:
+				weight = weights.get(--weightIndex);
+				Window window = windows.get(--windowIndex);
+				
+				/*
+				 * Viewed with a row per filter, the error lines up with the
+				 * columns for the weight gradient and with the filters for
+				 * the error at each tap.
+				 */
+				Matrix product = error.reshape(weight.getRows(), window.getPositions() * error.getCols());
+				
+				batchResult.addWeightError(product);
+				
+				if(weightIndex == 0 && !storeInputError) {
+					break;
+				}
+				
+				Matrix columns = workspace.getColumnError(t, weight.getCols(), product.getCols(), getPrecision());
+				Matrix result = workspace.getError(t, window.getInputSize(), error.getCols(), getPrecision());
+				
+				error = weight.multiplyTransposeLeft(product, columns).col2im(window, result);
+				break;
+			case MAXPOOL:
+				window = windows.get(--windowIndex);
+				result = workspace.getError(t, window.getInputSize(), error.getCols(), getPrecision());
+				
+				error = error.maxPoolError(window, input, io.get(t + 1), result);
 				break;
 			case RELU:
-				error = error.apply((index, value)->input.get(index) > 0 ? value: 0);
+				error = error.reluMask(input, workspace.getError(t, error.getRows(), error.getCols(), getPrecision()));
 				break;
 			case SOFTMAX:
 				break;
@@ -150,47 +563,161 @@ public class Engine implements Serializable{
 	}
 
 	
+	List<Transform> getTransforms() {
+		return transforms;
+	}
+	
+	List<Matrix> getWeights() {
+		return weights;
+	}
+	
+	List<Matrix> getBiases() {
+		return biases;
+	}
+	
+	LossFunction getLossFunction() {
+		return lossFunction;
+	}
+	
+	void setLossFunction(LossFunction lossFunction) {
+		this.lossFunction = lossFunction;
+	}
+	
+	boolean isStoreInputError() {
+		return storeInputError;
+	}
+	
+	double getScaleInitialWeights() {
+		return scaleInitialWeights;
+	}
+	
+	int[] getInputShape() {
+		return inputShape;
+	}
+	
+	List<Window> getWindows() {
+		return windows;
+	}
+	
+	/*
+	 * Adds a layer with existing parameters, as read from a model file.
+	 */
+	void add(Transform transform, Matrix weight, Matrix bias, Window window) {
+		if(transform == Transform.DENSE || transform == Transform.CONV2D) {
+			weights.add(weight.toPrecision(getPrecision()));
+			biases.add(bias.toPrecision(getPrecision()));
+			optimizerState = null;
+		}
+		
+		if(transform == Transform.CONV2D || transform == Transform.MAXPOOL) {
+			windows.add(window);
+		}
+		transforms.add(transform);
+	}
+	
 	public void setStoreInputError(boolean storeInputError) {
 		this.storeInputError = storeInputError;
 	}
 
 	public void add(Transform transform, double... params) {
-		Random random = new Random();
+		if (random == null) {
+			random = new Random();
+		}
 		
 		if(transform == Transform.DENSE) {
 			int numberNeurons = (int)params[0];
-			int weightsPerNeuron = weights.size() == 0 ? (int)params[1]: weights.getLast().getRows();
+			int weightsPerNeuron = getOutputShape() == null ? (int)params[1]: getOutputSize();
 			
-			Matrix weight = new Matrix(numberNeurons, weightsPerNeuron, i->scaleInitialWeights * random.nextGaussian());
-			Matrix bias = new Matrix(numberNeurons, 1, i->0);
+			Matrix weight = new Matrix(numberNeurons, weightsPerNeuron, i->scaleInitialWeights * random.nextGaussian()).toPrecision(getPrecision());
+			Matrix bias = new Matrix(numberNeurons, 1, getPrecision());
 			
 			weights.add(weight);
 			biases.add(bias);
+			optimizerState = null;
+		}
+		else if(transform == Transform.CONV2D) {
+			int filters = (int)params[0];
+			int size = (int)params[1];
+			Window window = createWindow(size, params.length > 2 ? (int)params[2] : 1, params.length > 3 ? (int)params[3] : 0);
+			
+			Matrix weight = new Matrix(filters, window.getTaps(), i->scaleInitialWeights * random.nextGaussian()).toPrecision(getPrecision());
+			Matrix bias = new Matrix(filters, 1, getPrecision());
+			
+			weights.add(weight);
+			biases.add(bias);
+			windows.add(window);
+			optimizerState = null;
+		}
+		else if(transform == Transform.MAXPOOL) {
+			int size = (int)params[0];
+			
+			windows.add(createWindow(size, params.length > 1 ? (int)params[1] : size, 0));
 		}
 		transforms.add(transform);
 	}
 	
+	private Window createWindow(int size, int stride, int padding) {
+		int[] shape = getOutputShape();
+		
+		if (shape == null) {
+			throw new RuntimeException("Input shape must be set before adding a convolution or pooling layer!");
+		}
+		
+		Window window = new Window(shape[0], shape[1], shape[2], size, stride, padding);
+		
+		if (size < 1 || stride < 1 || padding < 0 || window.getOutputHeight() < 1 || window.getOutputWidth() < 1) {
+			throw new RuntimeException("Window does not fit its input: " + window);
+		}
+		
+		return window;
+	}
+	
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		
 		sb.append(String.format("Scale initial weights: %.3f\n", scaleInitialWeights));
+		sb.append(String.format("Precision: %s\n", getPrecision()));
+		sb.append(String.format("Optimizer: %s\n", getOptimizer()));
+		
+		if (inputShape != null) {
+			sb.append(String.format("Input shape: %dx%dx%d\n", inputShape[0], inputShape[1], inputShape[2]));
+		}
+		
 		sb.append("\nTransforms:\n");
 
 		int weightIndex = 0;
+		int windowIndex = 0;
 		for (var t : transforms) {
 			
 			sb.append(t);
 			
-			if(t == Transform.DENSE) {
+			if(t == Transform.DENSE || t == Transform.CONV2D) {
 				sb.append(" ").append(weights.get(weightIndex).toString(false));
 				
 				weightIndex++;
 			}
 			
+			if(t == Transform.CONV2D || t == Transform.MAXPOOL) {
+				sb.append(" ").append(windows.get(windowIndex));
+				
+				windowIndex++;
+			}
+			
 			sb.append("\n");
 		}
 
 		return sb.toString();
 	}
+	
+	/*
+	 * Engines serialized before convolution layers existed have no windows.
+	 */
+	public Object readResolve() {
+		if (windows == null) {
+			windows = new LinkedList<>();
+		}
+		
+		return this;
+	}
 }
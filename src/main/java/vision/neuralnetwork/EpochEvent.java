@@ -0,0 +1,59 @@
+package vision.neuralnetwork;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("vision.neuralnetwork.Epoch")
+@Label("Epoch")
+@Category("NeuralFaceID")
+@StackTrace(false)
+class EpochEvent extends Event {
+	@Label("Epoch")
+	int epoch;
+
+	@Label("Training")
+	boolean training;
+
+	@Label("Items")
+	long items;
+
+	@Label("Elapsed")
+	@Timespan
+	long elapsedNanos;
+
+	@Label("Samples Per Second")
+	double samplesPerSecond;
+
+	@Label("Lock Wait")
+	@Timespan
+	long lockWaitNanos;
+
+	@Label("Average Loss")
+	double averageLoss;
+
+	@Label("Average Percent Correct")
+	double averagePercentCorrect;
+
+	static void emit(EpochMetrics metrics) {
+		EpochEvent event = new EpochEvent();
+
+		if (!event.isEnabled()) {
+			return;
+		}
+
+		event.epoch = metrics.getEpoch();
+		event.training = metrics.isTraining();
+		event.items = metrics.getItems();
+		event.elapsedNanos = metrics.getElapsedNanos();
+		event.samplesPerSecond = metrics.getSamplesPerSecond();
+		event.lockWaitNanos = metrics.getLockWaitNanos();
+		event.averageLoss = metrics.getAverageLoss();
+		event.averagePercentCorrect = metrics.getAveragePercentCorrect();
+
+		event.commit();
+	}
+}
@@ -0,0 +1,122 @@
+package vision.neuralnetwork;
+
+/*
+ * Summary of one pass over a loader. Phase totals are summed over all
+ * batches, so with several threads they can exceed the elapsed time.
+ */
+public class EpochMetrics {
+	private int epoch;
+	private boolean training;
+	private int batches;
+	private long items;
+	private long elapsedNanos;
+
+	private long loadNanos;
+	private long decodeNanos;
+	private long forwardNanos;
+	private long backwardNanos;
+	private long lockWaitNanos;
+	private long adjustNanos;
+
+	private double totalLoss;
+	private double totalPercentCorrect;
+
+	private double averageQueueDepth = Double.NaN;
+	private long loaderStallNanos = -1;
+
+	EpochMetrics(int epoch, boolean training) {
+		this.epoch = epoch;
+		this.training = training;
+	}
+
+	void add(BatchMetrics metrics) {
+		batches++;
+		items += metrics.getItems();
+
+		loadNanos += metrics.getLoadNanos();
+		decodeNanos += metrics.getDecodeNanos();
+		forwardNanos += metrics.getForwardNanos();
+		backwardNanos += metrics.getBackwardNanos();
+		lockWaitNanos += metrics.getLockWaitNanos();
+		adjustNanos += metrics.getAdjustNanos();
+
+		totalLoss += metrics.getLoss();
+		totalPercentCorrect += metrics.getPercentCorrect();
+	}
+
+	public int getEpoch() {
+		return epoch;
+	}
+
+	public boolean isTraining() {
+		return training;
+	}
+
+	public int getBatches() {
+		return batches;
+	}
+
+	public long getItems() {
+		return items;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	void setElapsedNanos(long elapsedNanos) {
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public double getSamplesPerSecond() {
+		return elapsedNanos == 0 ? 0 : items * 1e9 / elapsedNanos;
+	}
+
+	public long getLoadNanos() {
+		return loadNanos;
+	}
+
+	public long getDecodeNanos() {
+		return decodeNanos;
+	}
+
+	public long getForwardNanos() {
+		return forwardNanos;
+	}
+
+	public long getBackwardNanos() {
+		return backwardNanos;
+	}
+
+	public long getLockWaitNanos() {
+		return lockWaitNanos;
+	}
+
+	public long getAdjustNanos() {
+		return adjustNanos;
+	}
+
+	public double getAverageLoss() {
+		return batches == 0 ? 0 : totalLoss / batches;
+	}
+
+	public double getAveragePercentCorrect() {
+		return batches == 0 ? 0 : totalPercentCorrect / batches;
+	}
+
+	/*
+	 * Queue statistics of the loader, if it keeps any; NaN and -1 otherwise.
+	 */
+	public double getAverageQueueDepth() {
+		return averageQueueDepth;
+	}
+
+	public long getLoaderStallNanos() {
+		return loaderStallNanos;
+	}
+
+	void setQueueStatistics(double averageQueueDepth, long loaderStallNanos) {
+		this.averageQueueDepth = averageQueueDepth;
+		this.loaderStallNanos = loaderStallNanos;
+	}
+}
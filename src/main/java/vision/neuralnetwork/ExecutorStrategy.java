@@ -0,0 +1,11 @@
+package vision.neuralnetwork;
+
+/*
+ * How NeuralNetwork schedules work. FIXED_POOL runs each batch, loading
+ * included, on one of a fixed number of platform threads. VIRTUAL_THREADS
+ * loads batches on virtual threads, so a loader blocked on I/O does not
+ * hold a worker, and runs the maths on one platform thread per processor.
+ */
+public enum ExecutorStrategy {
+	FIXED_POOL, VIRTUAL_THREADS
+}
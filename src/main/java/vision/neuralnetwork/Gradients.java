@@ -0,0 +1,82 @@
+package vision.neuralnetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import vision.matrix.Matrix;
+
+public class Gradients {
+	private ArrayList<Matrix> weightGradients = new ArrayList<>();
+	private ArrayList<Matrix> biasGradients = new ArrayList<>();
+	private int samples;
+	
+	Gradients(List<Matrix> weights, List<Matrix> biases) {
+		for (var weight : weights) {
+			weightGradients.add(new Matrix(weight.getRows(), weight.getCols(), weight.getPrecision()));
+		}
+		
+		for (var bias : biases) {
+			biasGradients.add(new Matrix(bias.getRows(), bias.getCols(), bias.getPrecision()));
+		}
+	}
+	
+	/*
+	 * Whether these gradients have a matrix of the same shape and precision
+	 * for each of the weights and biases.
+	 */
+	boolean matches(List<Matrix> weights, List<Matrix> biases) {
+		return haveShapes(weightGradients, weights) && haveShapes(biasGradients, biases);
+	}
+	
+	private static boolean haveShapes(List<Matrix> gradients, List<Matrix> parameters) {
+		if (gradients.size() != parameters.size()) {
+			return false;
+		}
+		
+		for (int i = 0; i < gradients.size(); i++) {
+			Matrix parameter = parameters.get(i);
+			
+			if (!gradients.get(i).hasShape(parameter.getRows(), parameter.getCols(), parameter.getPrecision())) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	public void clear() {
+		for (int i = 0; i < weightGradients.size(); i++) {
+			weightGradients.get(i).clear();
+			biasGradients.get(i).clear();
+		}
+		
+		samples = 0;
+	}
+	
+	public void add(Gradients other) {
+		assert weightGradients.size() == other.weightGradients.size();
+		
+		for (int i = 0; i < weightGradients.size(); i++) {
+			weightGradients.get(i).addScaled(1, other.weightGradients.get(i));
+			biasGradients.get(i).addScaled(1, other.biasGradients.get(i));
+		}
+		
+		samples += other.samples;
+	}
+	
+	public Matrix getWeightGradient(int layer) {
+		return weightGradients.get(layer);
+	}
+	
+	public Matrix getBiasGradient(int layer) {
+		return biasGradients.get(layer);
+	}
+	
+	public int getSamples() {
+		return samples;
+	}
+	
+	void addSamples(int samples) {
+		this.samples += samples;
+	}
+}
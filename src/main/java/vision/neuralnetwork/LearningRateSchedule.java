@@ -0,0 +1,9 @@
+package vision.neuralnetwork;
+
+/*
+ * How the learning rate moves from its initial to its final value over
+ * the epochs of a fit.
+ */
+public enum LearningRateSchedule {
+	LINEAR, COSINE, EXPONENTIAL, CONSTANT
+}
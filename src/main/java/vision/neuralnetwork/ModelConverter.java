@@ -0,0 +1,30 @@
+package vision.neuralnetwork;
+
+import java.io.FileInputStream;
+import java.io.ObjectInputStream;
+
+/*
+ * Converts a network saved with Java serialization, as older versions of
+ * NeuralNetwork.save wrote it, to the binary model format.
+ */
+public class ModelConverter {
+
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.out.println("Usage: [converter] <serialized network file> <model file>");
+			return;
+		}
+
+		NeuralNetwork neuralNetwork;
+
+		try (var ds = new ObjectInputStream(new FileInputStream(args[0]))) {
+			neuralNetwork = (NeuralNetwork) ds.readObject();
+		} catch (Exception e) {
+			throw new ModelFileException("Error reading serialized network: " + args[0], e);
+		}
+
+		neuralNetwork.save(args[1]);
+
+		System.out.println("Converted " + args[0] + " to " + args[1]);
+	}
+}
@@ -0,0 +1,344 @@
+package vision.neuralnetwork;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import vision.matrix.Matrix;
+import vision.matrix.Precision;
+import vision.matrix.Window;
+
+/*
+ * Binary model format, all values little-endian:
+ *
+ *   int     magic "NFID", int version
+ *   int     epochs, double initial and final learning rate, int threads,
+ *   byte    data parallel
+ *   byte    learning rate schedule, int completed epochs
+ *   double  best evaluation loss, int epochs without improvement
+ *   byte    loss function, byte store input error,
+ *   double  scale initial weights, byte precision
+ *   byte    optimizer, int number of optimizer parameters, then each as
+ *           a double, int optimizer step
+ *   int     number of transforms, then one byte per transform
+ *   int     input channels, height and width, all zero if not set
+ *   int     number of windows, then for each convolution and pooling
+ *           layer its channels, height, width, size, stride and padding
+ *   int     number of dense and convolution layers, then rows and cols
+ *           of each layer's weight
+ *
+ * The header is padded to a multiple of eight bytes and followed by the
+ * weight and bias of each of these layers as raw row-major blocks, four bytes
+ * per element for float models and eight for double models. If the
+ * optimizer step is not zero, the optimizer's first moments and then its
+ * second moments follow in the same layout, for the buffers the
+ * optimizer uses. Enums are stored by ordinal, so new constants must be
+ * appended.
+ *
+ * Version 1 files have no schedule, completed epochs or optimizer fields,
+ * versions before 3 have no input shape or windows, and versions before
+ * 4 no early stopping state. All are still read.
+ */
+public class ModelFile {
+	private static final int MAGIC_NUMBER = 0x4E464944;
+	private static final int VERSION = 4;
+
+	private ModelFile() {
+	}
+
+	public static void write(NeuralNetwork neuralNetwork, String file) {
+		write(encode(neuralNetwork), file);
+	}
+
+	/*
+	 * Copies the whole model, optimizer state included, into a buffer ready
+	 * to be written, so the network can carry on training while it is.
+	 */
+	static ByteBuffer encode(NeuralNetwork neuralNetwork) {
+		Engine engine = neuralNetwork.getEngine();
+
+		var transforms = engine.getTransforms();
+		var weights = engine.getWeights();
+		var biases = engine.getBiases();
+		var windows = engine.getWindows();
+		int[] inputShape = engine.getInputShape();
+		double[] optimizerParams = engine.getOptimizerParams();
+
+		List<Matrix> moments = new ArrayList<>();
+		int step = 0;
+
+		if (engine.hasOptimizerState()) {
+			OptimizerState state = engine.getOptimizerState();
+
+			moments.addAll(state.getFirstMoments());
+			moments.addAll(state.getSecondMoments());
+			step = state.getStep();
+		}
+
+		int headerSize = 4 + 4 + 4 + 8 + 8 + 4 + 1 + 1 + 4 + 8 + 4 + 1 + 1 + 8 + 1 + 1 + 4 + 8 * optimizerParams.length + 4
+				+ 4 + transforms.size() + 12 + 4 + 24 * windows.size() + 4 + 8 * weights.size();
+		headerSize = (headerSize + 7) & ~7;
+
+		long size = headerSize;
+
+		for (int i = 0; i < weights.size(); i++) {
+			size += (long) (weights.get(i).getRows() * weights.get(i).getCols() + biases.get(i).getRows())
+					* weights.get(i).getElementBytes();
+		}
+
+		for (var moment : moments) {
+			size += (long) moment.getRows() * moment.getCols() * moment.getElementBytes();
+		}
+
+		if (size > Integer.MAX_VALUE) {
+			throw new ModelFileException("Model is too large to save: " + size + " bytes");
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect((int) size).order(ByteOrder.LITTLE_ENDIAN);
+
+		buffer.putInt(MAGIC_NUMBER);
+		buffer.putInt(VERSION);
+
+		buffer.putInt(neuralNetwork.getEpochs());
+		buffer.putDouble(neuralNetwork.getInitialLearningRate());
+		buffer.putDouble(neuralNetwork.getFinalLearningRate());
+		buffer.putInt(neuralNetwork.getThreads());
+		buffer.put((byte) (neuralNetwork.isDataParallel() ? 1 : 0));
+		buffer.put((byte) neuralNetwork.getLearningRateSchedule().ordinal());
+		buffer.putInt(neuralNetwork.getCompletedEpochs());
+		buffer.putDouble(neuralNetwork.getBestLoss());
+		buffer.putInt(neuralNetwork.getEpochsWithoutImprovement());
+
+		buffer.put((byte) engine.getLossFunction().ordinal());
+		buffer.put((byte) (engine.isStoreInputError() ? 1 : 0));
+		buffer.putDouble(engine.getScaleInitialWeights());
+		buffer.put((byte) engine.getPrecision().ordinal());
+
+		buffer.put((byte) engine.getOptimizer().ordinal());
+		buffer.putInt(optimizerParams.length);
+
+		for (double param : optimizerParams) {
+			buffer.putDouble(param);
+		}
+
+		buffer.putInt(step);
+
+		buffer.putInt(transforms.size());
+
+		for (var transform : transforms) {
+			buffer.put((byte) transform.ordinal());
+		}
+
+		for (int i = 0; i < 3; i++) {
+			buffer.putInt(inputShape == null ? 0 : inputShape[i]);
+		}
+
+		buffer.putInt(windows.size());
+
+		for (var window : windows) {
+			buffer.putInt(window.getChannels());
+			buffer.putInt(window.getHeight());
+			buffer.putInt(window.getWidth());
+			buffer.putInt(window.getSize());
+			buffer.putInt(window.getStride());
+			buffer.putInt(window.getPadding());
+		}
+
+		buffer.putInt(weights.size());
+
+		for (var weight : weights) {
+			buffer.putInt(weight.getRows());
+			buffer.putInt(weight.getCols());
+		}
+
+		buffer.position(headerSize);
+
+		for (int i = 0; i < weights.size(); i++) {
+			weights.get(i).write(buffer);
+			biases.get(i).write(buffer);
+		}
+
+		for (var moment : moments) {
+			moment.write(buffer);
+		}
+
+		return buffer.flip();
+	}
+
+	/*
+	 * Writes to a temporary file that replaces the target once complete,
+	 * so a crash while writing leaves any previous file intact.
+	 */
+	static void write(ByteBuffer buffer, String file) {
+		Path path = Path.of(file).toAbsolutePath();
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+		try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (IOException e) {
+			throw new ModelFileException("Error writing model file: " + file, e);
+		}
+
+		try {
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new ModelFileException("Error writing model file: " + file, e);
+		}
+	}
+
+	public static NeuralNetwork read(String file) {
+		try (var channel = FileChannel.open(Path.of(file), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new ModelFileException("Model file: " + file + " is too large");
+			}
+
+			ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+
+			return read(buffer, file);
+		} catch (IOException e) {
+			throw new ModelFileException("Error reading model file: " + file, e);
+		} catch (ModelFileException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw new ModelFileException("Model file: " + file + " is corrupt", e);
+		}
+	}
+
+	private static NeuralNetwork read(ByteBuffer buffer, String file) {
+		if (buffer.remaining() < 8 || buffer.getInt() != MAGIC_NUMBER) {
+			throw new ModelFileException("File: " + file + " is not a model file");
+		}
+
+		int version = buffer.getInt();
+
+		if (version < 1 || version > VERSION) {
+			throw new ModelFileException("Model file: " + file + " has unsupported version " + version);
+		}
+
+		Engine engine = new Engine();
+		NeuralNetwork neuralNetwork = new NeuralNetwork(engine);
+
+		neuralNetwork.setEpochs(buffer.getInt());
+		double initialLearningRate = buffer.getDouble();
+		double finalLearningRate = buffer.getDouble();
+		neuralNetwork.setLearningRate(initialLearningRate, finalLearningRate);
+		neuralNetwork.setThreads(buffer.getInt());
+		neuralNetwork.setDataParallel(buffer.get() != 0);
+
+		if (version >= 2) {
+			neuralNetwork.setLearningRateSchedule(LearningRateSchedule.values()[buffer.get()]);
+			neuralNetwork.setCompletedEpochs(buffer.getInt());
+		}
+
+		if (version >= 4) {
+			neuralNetwork.setEarlyStoppingState(buffer.getDouble(), buffer.getInt());
+		}
+
+		engine.setLossFunction(LossFunction.values()[buffer.get()]);
+		engine.setStoreInputError(buffer.get() != 0);
+		engine.setScaleInitialWeights(buffer.getDouble());
+
+		Precision precision = Precision.values()[buffer.get()];
+		engine.setPrecision(precision);
+
+		int step = 0;
+
+		if (version >= 2) {
+			Optimizer optimizer = Optimizer.values()[buffer.get()];
+			double[] optimizerParams = new double[buffer.getInt()];
+
+			for (int i = 0; i < optimizerParams.length; i++) {
+				optimizerParams[i] = buffer.getDouble();
+			}
+
+			engine.setOptimizer(optimizer, optimizerParams);
+			step = buffer.getInt();
+		}
+
+		Transform[] transforms = new Transform[buffer.getInt()];
+
+		for (int i = 0; i < transforms.length; i++) {
+			transforms[i] = Transform.values()[buffer.get()];
+		}
+
+		Window[] windows = new Window[0];
+
+		if (version >= 3) {
+			int channels = buffer.getInt();
+			int height = buffer.getInt();
+			int width = buffer.getInt();
+
+			if (channels != 0) {
+				engine.setInputShape(channels, height, width);
+			}
+
+			windows = new Window[buffer.getInt()];
+
+			for (int i = 0; i < windows.length; i++) {
+				windows[i] = new Window(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+						buffer.getInt(), buffer.getInt());
+			}
+		}
+
+		int[][] shapes = new int[buffer.getInt()][];
+
+		for (int i = 0; i < shapes.length; i++) {
+			shapes[i] = new int[] { buffer.getInt(), buffer.getInt() };
+		}
+
+		buffer.position((buffer.position() + 7) & ~7);
+
+		int weightIndex = 0;
+		int windowIndex = 0;
+
+		for (var transform : transforms) {
+			Matrix weight = null;
+			Matrix bias = null;
+			Window window = null;
+
+			if (transform == Transform.DENSE || transform == Transform.CONV2D) {
+				int[] shape = shapes[weightIndex++];
+
+				weight = new Matrix(shape[0], shape[1], precision).read(buffer);
+				bias = new Matrix(shape[0], 1, precision).read(buffer);
+			}
+
+			if (transform == Transform.CONV2D || transform == Transform.MAXPOOL) {
+				window = windows[windowIndex++];
+			}
+
+			engine.add(transform, weight, bias, window);
+		}
+
+		if (weightIndex != shapes.length || windowIndex != windows.length) {
+			throw new ModelFileException("Model file: " + file + " has a layer table that does not match its transforms");
+		}
+
+		if (step != 0) {
+			OptimizerState state = engine.getOptimizerState();
+
+			for (var moment : state.getFirstMoments()) {
+				moment.read(buffer);
+			}
+
+			for (var moment : state.getSecondMoments()) {
+				moment.read(buffer);
+			}
+
+			state.setStep(step);
+		}
+
+		return neuralNetwork;
+	}
+}
@@ -0,0 +1,14 @@
+package vision.neuralnetwork;
+
+public class ModelFileException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public ModelFileException(String message) {
+		super(message);
+	}
+
+	public ModelFileException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
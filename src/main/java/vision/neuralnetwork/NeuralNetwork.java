@@ -1,22 +1,27 @@
 package vision.neuralnetwork;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import vision.matrix.Matrix;
+import vision.matrix.Precision;
 import vision.neuralnetwork.loader.BatchData;
 import vision.neuralnetwork.loader.Loader;
 import vision.neuralnetwork.loader.MetaData;
+import vision.neuralnetwork.loader.QueueStatistics;
 
 public class NeuralNetwork implements Serializable{
 	private static final long serialVersionUID = 1L;
+	private static final int PREDICT_BATCH_SIZE = 256;
 	
 	private Engine engine;
 
@@ -24,22 +29,270 @@ public class NeuralNetwork implements Serializable{
 	private double initialLearningRate = 0.01;
 	private double finalLearningRate = 0.001;
 	private int threads = 32;
+	private boolean dataParallel = false;
+	private int maxBatchesInFlight = 0;
+	private ExecutorStrategy executorStrategy = ExecutorStrategy.FIXED_POOL;
+	private LearningRateSchedule learningRateSchedule = LearningRateSchedule.LINEAR;
+	private int completedEpochs = 0;
+	private String checkpointFile;
+	private int checkpointInterval = 1;
+	private int earlyStoppingPatience = 0;
+	private double earlyStoppingMinDelta = 0;
+	private double bestLoss = Double.POSITIVE_INFINITY;
+	private int epochsWithoutImprovement = 0;
 
 	transient private double learningRate;
 	transient private Object lock = new Object();
+	transient private ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+	transient private List<TrainingListener> listeners = createListeners();
+	transient private ExecutorService executor;
+	transient private int executorThreads;
+	transient private ExecutorService ioExecutor;
+	transient private ExecutorService checkpointExecutor;
+	transient private Future<?> pendingCheckpoint;
 
 	public NeuralNetwork() {
 		engine = new Engine();
 	}
 
+	NeuralNetwork(Engine engine) {
+		this.engine = engine;
+	}
+
+	Engine getEngine() {
+		return engine;
+	}
+
+	public int getEpochs() {
+		return epochs;
+	}
+
+	public double getInitialLearningRate() {
+		return initialLearningRate;
+	}
+
+	public double getFinalLearningRate() {
+		return finalLearningRate;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public boolean isDataParallel() {
+		return dataParallel;
+	}
+
+	/*
+	 * Number of epochs of the current fit that have finished; a fit
+	 * stopped early counts as finished.
+	 */
+	public int getCompletedEpochs() {
+		return completedEpochs;
+	}
+
+	void setCompletedEpochs(int completedEpochs) {
+		this.completedEpochs = completedEpochs;
+	}
+
+	/*
+	 * Early stopping state of the current fit: the lowest evaluation loss
+	 * so far and how many epochs since have not improved on it. It is
+	 * checkpointed with the completed epochs, so a resumed fit stops
+	 * where the uninterrupted one would have.
+	 */
+	double getBestLoss() {
+		return bestLoss;
+	}
+
+	int getEpochsWithoutImprovement() {
+		return epochsWithoutImprovement;
+	}
+
+	void setEarlyStoppingState(double bestLoss, int epochsWithoutImprovement) {
+		this.bestLoss = bestLoss;
+		this.epochsWithoutImprovement = epochsWithoutImprovement;
+	}
+
+	/*
+	 * Saves the network to the file after every interval epochs and after
+	 * the last. The model is copied between epochs and written on a
+	 * background thread while training carries on; a network loaded from
+	 * the file resumes the fit where the checkpoint was taken.
+	 */
+	public void setCheckpoint(String file, int interval) {
+		this.checkpointFile = file;
+		this.checkpointInterval = Math.max(1, interval);
+	}
+
+	/*
+	 * Ends fit once the evaluation loss has not improved on its best by
+	 * more than minDelta for patience epochs in a row. Zero patience, the
+	 * default, always runs every epoch. Needs an evaluation loader.
+	 */
+	public void setEarlyStopping(int patience, double minDelta) {
+		this.earlyStoppingPatience = patience;
+		this.earlyStoppingMinDelta = minDelta;
+	}
+
+	private static List<TrainingListener> createListeners() {
+		List<TrainingListener> listeners = new CopyOnWriteArrayList<>();
+		listeners.add(new ConsoleTrainingListener());
+
+		return listeners;
+	}
+
+	/*
+	 * Listeners are told about the progress of fit. A console listener is
+	 * registered by default; clearListeners removes it.
+	 */
+	public void addListener(TrainingListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(TrainingListener listener) {
+		listeners.remove(listener);
+	}
+
+	public void clearListeners() {
+		listeners.clear();
+	}
+
 	public void setThreads(int threads) {
 		this.threads = threads;
 	}
 
+	/*
+	 * Limits how many batches are read and processed ahead of the one
+	 * being reported; zero means twice the number of threads. With virtual
+	 * threads this is also the number of loads that can wait at once.
+	 */
+	public void setMaxBatchesInFlight(int maxBatchesInFlight) {
+		this.maxBatchesInFlight = maxBatchesInFlight;
+	}
+
+	private int getMaxBatchesInFlight() {
+		return maxBatchesInFlight > 0 ? maxBatchesInFlight : 2 * threads;
+	}
+
+	public void setExecutorStrategy(ExecutorStrategy executorStrategy) {
+		this.executorStrategy = executorStrategy;
+	}
+
+	public ExecutorStrategy getExecutorStrategy() {
+		return executorStrategy == null ? ExecutorStrategy.FIXED_POOL : executorStrategy;
+	}
+
+	private int getComputeThreads() {
+		if (getExecutorStrategy() == ExecutorStrategy.VIRTUAL_THREADS) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+
+		return threads;
+	}
+
+	/*
+	 * The worker threads are kept between epochs and calls to fit, and are
+	 * replaced if the number of threads changes.
+	 */
+	private synchronized ExecutorService getExecutor() {
+		int computeThreads = getComputeThreads();
+
+		if (executor == null || executorThreads != computeThreads) {
+			if (executor != null) {
+				executor.shutdown();
+			}
+
+			executor = Executors.newFixedThreadPool(computeThreads, runnable -> {
+				Thread thread = new Thread(runnable, "neuralnetwork");
+				thread.setDaemon(true);
+				return thread;
+			});
+			executorThreads = computeThreads;
+		}
+
+		return executor;
+	}
+
+	private synchronized ExecutorService getCheckpointExecutor() {
+		if (checkpointExecutor == null) {
+			checkpointExecutor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "neuralnetwork-checkpoint");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		return checkpointExecutor;
+	}
+
+	private synchronized ExecutorService getIoExecutor() {
+		if (ioExecutor == null) {
+			ioExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("neuralnetwork-io").factory());
+		}
+
+		return ioExecutor;
+	}
+
+	/*
+	 * Stops the worker threads. They are daemon threads, so this is only
+	 * needed to release them before the network is discarded.
+	 */
+	public synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+
+		if (ioExecutor != null) {
+			ioExecutor.shutdown();
+			ioExecutor = null;
+		}
+
+		if (checkpointExecutor != null) {
+			checkpointExecutor.shutdown();
+			checkpointExecutor = null;
+		}
+	}
+
+	public void setDataParallel(boolean dataParallel) {
+		this.dataParallel = dataParallel;
+	}
+
+	public void setPrecision(Precision precision) {
+		engine.setPrecision(precision);
+	}
+
+	public void setSeed(long seed) {
+		engine.setSeed(seed);
+	}
+
 	public void setScaleInitialWeights(double scale) {
 		engine.setScaleInitialWeights(scale);
 	}
 
+	public void setInputShape(int channels, int height, int width) {
+		engine.setInputShape(channels, height, width);
+	}
+
+	/*
+	 * Channels, height and width of an input image, or null if the input
+	 * is a flat vector.
+	 */
+	public int[] getInputShape() {
+		int[] shape = engine.getInputShape();
+
+		return shape == null ? null : shape.clone();
+	}
+
+	public int getInputSize() {
+		return engine.getInputSize();
+	}
+
+	public int getOutputSize() {
+		return engine.getOutputSize();
+	}
+
 	public void add(Transform transform, double... params) {
 		engine.add(transform, params);
 	}
@@ -49,119 +302,589 @@ public class NeuralNetwork implements Serializable{
 		this.finalLearningRate = finalLearningRate;
 	}
 
+	public void setLearningRateSchedule(LearningRateSchedule learningRateSchedule) {
+		this.learningRateSchedule = learningRateSchedule;
+	}
+
+	public LearningRateSchedule getLearningRateSchedule() {
+		return learningRateSchedule == null ? LearningRateSchedule.LINEAR : learningRateSchedule;
+	}
+
+	/*
+	 * The learning rate used throughout the given epoch of a fit.
+	 */
+	public double getLearningRate(int epoch) {
+		double progress = (double) epoch / epochs;
+
+		switch (getLearningRateSchedule()) {
+		case COSINE:
+			return finalLearningRate + 0.5 * (initialLearningRate - finalLearningRate) * (1 + Math.cos(Math.PI * progress));
+		case EXPONENTIAL:
+			return initialLearningRate * Math.pow(finalLearningRate / initialLearningRate, progress);
+		case CONSTANT:
+			return initialLearningRate;
+		default:
+			return initialLearningRate - (initialLearningRate - finalLearningRate) * progress;
+		}
+	}
+
+	public void setOptimizer(Optimizer optimizer, double... params) {
+		engine.setOptimizer(optimizer, params);
+	}
+
 	public void setEpochs(int epochs) {
 		this.epochs = epochs;
 	}
 	
 	public double[] predict(double[] inputData) {
-		Matrix input = new Matrix(inputData.length, 1, (index) -> inputData[index]);
-		BatchResult batchResult = engine.runForwards(input);
-		
-		return batchResult.getOutput().get();
+		return predictBatch(inputData, 1);
+	}
+
+	/*
+	 * Batched inference. Inputs are packed into column batches and run
+	 * forwards on the calling thread's workspace without any backprop
+	 * bookkeeping. Safe to call from many threads at once, but not while
+	 * the network is being trained.
+	 */
+	public double[][] predictBatch(double[][] inputs) {
+		int outputSize = engine.getOutputSize();
+		double[][] outputs = new double[inputs.length][outputSize];
+
+		runPredictBatches(inputs.length, (input, first) -> {
+			for (int col = 0; col < input.getCols(); col++) {
+				input.setColumn(col, inputs[first + col], 0);
+			}
+		}, (output, first) -> {
+			for (int col = 0; col < output.getCols(); col++) {
+				for (int row = 0; row < outputSize; row++) {
+					outputs[first + col][row] = output.get(row, col);
+				}
+			}
+		});
+
+		return outputs;
+	}
+
+	/*
+	 * Inputs are count items of the network's input size, one after the
+	 * other; the result holds the output probabilities the same way.
+	 */
+	public double[] predictBatch(double[] inputs, int count) {
+		double[] outputs = new double[count * engine.getOutputSize()];
+
+		predictBatch(inputs, count, outputs);
+
+		return outputs;
+	}
+
+	/*
+	 * As predictBatch, but into an outputs array the caller reuses.
+	 */
+	public void predictBatch(double[] inputs, int count, double[] outputs) {
+		int outputSize = engine.getOutputSize();
+
+		runPredictBatches(count, flatInput(inputs), (output, first) -> {
+			for (int col = 0; col < output.getCols(); col++) {
+				for (int row = 0; row < outputSize; row++) {
+					outputs[(first + col) * outputSize + row] = output.get(row, col);
+				}
+			}
+		});
+	}
+
+	public int getEmbeddingSize() {
+		return engine.getEmbeddingSize();
+	}
+
+	public float[] embed(double[] input) {
+		return embedBatch(input, 1);
+	}
+
+	/*
+	 * The output of the layer before the final dense layer for each of
+	 * count inputs, one after the other. These embeddings are what the
+	 * classifier separates, so faces of the same person lie close
+	 * together in them.
+	 */
+	public float[] embedBatch(double[] inputs, int count) {
+		int embeddingSize = engine.getEmbeddingSize();
+		float[] embeddings = new float[count * embeddingSize];
+
+		runPredictBatches(count, engine.getEmbeddingTransforms(), flatInput(inputs), (output, first) -> {
+			for (int col = 0; col < output.getCols(); col++) {
+				for (int row = 0; row < embeddingSize; row++) {
+					embeddings[(first + col) * embeddingSize + row] = (float) output.get(row, col);
+				}
+			}
+		});
+
+		return embeddings;
+	}
+
+	public int[] classifyBatch(double[][] inputs) {
+		int[] labels = new int[inputs.length];
+
+		runPredictBatches(inputs.length, (input, first) -> {
+			for (int col = 0; col < input.getCols(); col++) {
+				input.setColumn(col, inputs[first + col], 0);
+			}
+		}, greatestRows(labels));
+
+		return labels;
+	}
+
+	public int[] classifyBatch(double[] inputs, int count) {
+		int[] labels = new int[count];
+
+		runPredictBatches(count, flatInput(inputs), greatestRows(labels));
+
+		return labels;
+	}
+
+	private interface BatchConsumer {
+		void accept(Matrix batch, int first);
+	}
+
+	private BatchConsumer flatInput(double[] inputs) {
+		int inputSize = engine.getInputSize();
+
+		return (input, first) -> {
+			for (int col = 0; col < input.getCols(); col++) {
+				input.setColumn(col, inputs, (first + col) * inputSize);
+			}
+		};
+	}
+
+	private BatchConsumer greatestRows(int[] labels) {
+		return (output, first) -> {
+			for (int col = 0; col < output.getCols(); col++) {
+				int greatest = 0;
+
+				for (int row = 1; row < output.getRows(); row++) {
+					if (output.get(row, col) > output.get(greatest, col)) {
+						greatest = row;
+					}
+				}
+
+				labels[first + col] = greatest;
+			}
+		};
+	}
+
+	/*
+	 * Small requests run on the calling thread; larger ones are split into
+	 * chunks that run in parallel on the compute threads.
+	 */
+	private void runPredictBatches(int count, BatchConsumer fillInput, BatchConsumer readOutput) {
+		runPredictBatches(count, engine.getTransforms().size(), fillInput, readOutput);
+	}
+
+	private void runPredictBatches(int count, int transforms, BatchConsumer fillInput, BatchConsumer readOutput) {
+		if (count <= PREDICT_BATCH_SIZE) {
+			predictChunk(0, count, transforms, fillInput, readOutput);
+			return;
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<>();
+
+		for (int first = 0; first < count; first += PREDICT_BATCH_SIZE) {
+			final int chunkFirst = first;
+			final int items = Math.min(PREDICT_BATCH_SIZE, count - first);
+
+			tasks.add(() -> {
+				predictChunk(chunkFirst, items, transforms, fillInput, readOutput);
+				return null;
+			});
+		}
+
+		invokeAll(getExecutor(), tasks);
+	}
+
+	private void predictChunk(int first, int items, int transforms, BatchConsumer fillInput, BatchConsumer readOutput) {
+		Workspace workspace = workspaces.get();
+
+		Matrix input = workspace.getInput(engine.getInputSize(), items, engine.getPrecision());
+		fillInput.accept(input, first);
+
+		readOutput.accept(engine.predict(input, workspace, transforms), first);
 	}
 
+	/*
+	 * Trains from the first epoch not yet completed, so a network loaded
+	 * from a checkpoint carries on with the same learning rate, optimizer
+	 * state and early stopping state. Once every epoch is done, the next
+	 * fit starts over.
+	 */
 	public void fit(Loader trainLoader, Loader evalLoader) {
-		learningRate = initialLearningRate;
+		if (completedEpochs >= epochs || completedEpochs == 0) {
+			completedEpochs = 0;
+			setEarlyStoppingState(Double.POSITIVE_INFINITY, 0);
+		}
+
+		try {
+			for (int epoch = completedEpochs; epoch < epochs; epoch++) {
+				learningRate = getLearningRate(epoch);
+
+				for (var listener : listeners) {
+					listener.epochStarted(epoch);
+				}
+
+				runEpoch(trainLoader, true, epoch);
 
-		for (int epoch = 0; epoch < epochs; epoch++) {
-			System.out.printf("Epoch %3d ", epoch + 1);
-			runEpoch(trainLoader, true);
+				boolean stop = false;
 
-			if (evalLoader != null) {
-				runEpoch(evalLoader, false);
+				if (evalLoader != null) {
+					double loss = runEpoch(evalLoader, false, epoch).getAverageLoss();
+
+					if (loss < bestLoss - earlyStoppingMinDelta) {
+						bestLoss = loss;
+						epochsWithoutImprovement = 0;
+					} else {
+						epochsWithoutImprovement++;
+					}
+
+					stop = earlyStoppingPatience > 0 && epochsWithoutImprovement >= earlyStoppingPatience;
+				}
+
+				completedEpochs = stop ? epochs : epoch + 1;
+
+				if (checkpointFile != null && (completedEpochs == epochs || completedEpochs % checkpointInterval == 0)) {
+					checkpoint();
+				}
+
+				for (var listener : listeners) {
+					listener.epochCompleted(epoch);
+				}
+
+				if (stop) {
+					for (var listener : listeners) {
+						listener.stoppedEarly(epoch);
+					}
+					break;
+				}
+			}
+		} catch (RuntimeException e) {
+			try {
+				awaitCheckpoint();
+			} catch (RuntimeException checkpointFailure) {
+				e.addSuppressed(checkpointFailure);
 			}
+			throw e;
+		}
+
+		awaitCheckpoint();
+	}
+
+	/*
+	 * Only one checkpoint is written at a time, so a new one first waits
+	 * for the previous write, which has normally long finished.
+	 */
+	private void checkpoint() {
+		awaitCheckpoint();
 
-			System.out.println();
+		ByteBuffer buffer = ModelFile.encode(this);
+		String file = checkpointFile;
 
-			learningRate -= (initialLearningRate - finalLearningRate) / epochs;
+		pendingCheckpoint = getCheckpointExecutor().submit(() -> ModelFile.write(buffer, file));
+	}
+
+	private void awaitCheckpoint() {
+		if (pendingCheckpoint == null) {
+			return;
+		}
+
+		try {
+			pendingCheckpoint.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while writing checkpoint", e);
+		} catch (ExecutionException e) {
+			throw new ModelFileException("Error writing checkpoint: " + checkpointFile, e.getCause());
+		} finally {
+			pendingCheckpoint = null;
 		}
 	}
 
-	private void runEpoch(Loader loader, boolean trainingMode) {
+	private EpochMetrics runEpoch(Loader loader, boolean trainingMode, int epoch) {
+		EpochMetrics epochMetrics = new EpochMetrics(epoch, trainingMode);
+		long start = System.nanoTime();
+
 		loader.open();
 
-		var queue = createBatchTasks(loader, trainingMode);
-		consumeBatchTasks(queue, trainingMode);
+		if (trainingMode && dataParallel) {
+			runDataParallelEpoch(loader, epochMetrics);
+		} else {
+			runBatches(loader, trainingMode, epochMetrics);
+		}
+
+		epochMetrics.setElapsedNanos(System.nanoTime() - start);
+
+		if (loader instanceof QueueStatistics statistics) {
+			epochMetrics.setQueueStatistics(statistics.getAverageQueueDepth(), statistics.getStallNanos());
+		}
 
 		loader.close();
+
+		EpochEvent.emit(epochMetrics);
+
+		for (var listener : listeners) {
+			listener.passCompleted(epochMetrics);
+		}
+
+		return epochMetrics;
 	}
 
-	private void consumeBatchTasks(LinkedList<Future<BatchResult>> batches, boolean trainingMode) {
+	/*
+	 * Each step reads up to one batch per thread in loader order, computes the
+	 * gradients of every batch into that slot's own buffers against the same
+	 * weights, sums the buffers with a pairwise tree reduction and applies a
+	 * single update. The order of every operation is fixed, so runs with the
+	 * same seed and data are reproducible.
+	 */
+	private void runDataParallelEpoch(Loader loader, EpochMetrics epochMetrics) {
+		MetaData metaData = loader.getMetaData();
+		int numberBatches = metaData.getNumberBatches();
 
-		var numberBatches = batches.size();
-		int index = 0;
+		Gradients[] gradients = new Gradients[threads];
+		BatchData[] batches = new BatchData[threads];
+		BatchMetrics[] metrics = new BatchMetrics[threads];
 
-		double averageLoss = 0;
-		double averagePercentCorrect = 0;
+		for (int i = 0; i < threads; i++) {
+			gradients[i] = engine.createGradients();
+		}
 
-		for (var batch : batches) {
-			try {
-				var batchResult = batch.get();
+		var executor = getExecutor();
 
-				if (!trainingMode) {
-					averageLoss += batchResult.getLoss();
-					averagePercentCorrect += batchResult.getPercentCorrect();
-				}
+		for (int first = 0; first < numberBatches; first += threads) {
+			int workers = Math.min(threads, numberBatches - first);
+
+			for (int i = 0; i < workers; i++) {
+				long start = System.nanoTime();
+				batches[i] = loader.readBatch();
+
+				metrics[i] = new BatchMetrics(true);
+				metrics[i].setLoadNanos(System.nanoTime() - start);
+				metrics[i].setItems(batches[i].getItemsRead());
+			}
+
+			List<Callable<Void>> tasks = new ArrayList<>();
+
+			for (int i = 0; i < workers; i++) {
+				final int slot = i;
 
-			} catch (Exception e) {
-				throw new RuntimeException("Execution exception", e);
+				tasks.add(() -> {
+					gradients[slot].clear();
+
+					BatchData batchData = batches[slot];
+					BatchMetrics batchMetrics = metrics[slot];
+					Workspace workspace = workspaces.get();
+
+					long start = System.nanoTime();
+					Matrix input = loadInput(workspace, metaData, batchData);
+					Matrix expected = loadExpected(workspace, metaData, batchData);
+
+					long decoded = System.nanoTime();
+					BatchResult batchResult = engine.runForwards(input, workspace);
+
+					long forwarded = System.nanoTime();
+					engine.runBackwards(batchResult, expected, workspace);
+					engine.accumulateGradients(batchResult, gradients[slot]);
+
+					batchMetrics.setDecodeNanos(decoded - start);
+					batchMetrics.setForwardNanos(forwarded - decoded);
+					batchMetrics.setBackwardNanos(System.nanoTime() - forwarded);
+
+					return null;
+				});
 			}
 
-			int printDot = numberBatches / 30;
+			invokeAll(executor, tasks);
+
+			long start = System.nanoTime();
+			reduceGradients(executor, gradients, workers);
+
+			engine.applyGradients(gradients[0], learningRate);
+			long adjustNanos = (System.nanoTime() - start) / workers;
 
-			if (trainingMode && (index++ % printDot == 0)) {
-				System.out.print(".");
+			for (int i = 0; i < workers; i++) {
+				metrics[i].setAdjustNanos(adjustNanos);
+				metrics[i].setBatch(first + i, numberBatches);
+
+				batchCompleted(metrics[i], epochMetrics);
 			}
 		}
+	}
+
+	private void reduceGradients(ExecutorService executor, Gradients[] gradients, int count) {
+		for (int stride = 1; stride < count; stride *= 2) {
+			List<Callable<Void>> tasks = new ArrayList<>();
+
+			for (int i = 0; i + stride < count; i += 2 * stride) {
+				final Gradients target = gradients[i];
+				final Gradients source = gradients[i + stride];
 
-		if (!trainingMode) {
-			averageLoss /= batches.size();
-			averagePercentCorrect /= batches.size();
+				tasks.add(() -> {
+					target.add(source);
+					return null;
+				});
+			}
 
-			System.out.printf("Loss: %.3f -- Percent Correct: %.2f", averageLoss, averagePercentCorrect);
+			invokeAll(executor, tasks);
 		}
 	}
 
-	private LinkedList<Future<BatchResult>> createBatchTasks(Loader loader, boolean trainingMode) {
-		LinkedList<Future<BatchResult>> batches = new LinkedList<>();
+	private void invokeAll(ExecutorService executor, List<Callable<Void>> tasks) {
+		try {
+			for (var future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (Exception e) {
+			throw new RuntimeException("Execution exception", e);
+		}
+	}
 
-		MetaData metaData = loader.getMetaData();
-		int numberBatches = metaData.getNumberBatches();
+	private void batchCompleted(BatchMetrics metrics, EpochMetrics epochMetrics) {
+		epochMetrics.add(metrics);
 
-		var executor = Executors.newFixedThreadPool(threads);
+		BatchEvent.emit(metrics);
 
-		for (int i = 0; i < numberBatches; i++) {
-			batches.add(executor.submit(() -> runBatch(loader, trainingMode)));
+		for (var listener : listeners) {
+			listener.batchCompleted(metrics);
 		}
+	}
+
+	/*
+	 * Streams the batches through the worker threads, keeping at most
+	 * maxBatchesInFlight submitted but not yet reported, and reports each
+	 * as soon as it completes. Memory use does not grow with the number
+	 * of batches.
+	 */
+	private void runBatches(Loader loader, boolean trainingMode, EpochMetrics epochMetrics) {
+		int numberBatches = loader.getMetaData().getNumberBatches();
+		int maxInFlight = getMaxBatchesInFlight();
+
+		boolean virtualThreads = getExecutorStrategy() == ExecutorStrategy.VIRTUAL_THREADS;
+		var completionService = new ExecutorCompletionService<BatchMetrics>(virtualThreads ? getIoExecutor() : getExecutor());
+
+		int submitted = 0;
+		int completed = 0;
+
+		try {
+			while (completed < numberBatches) {
+				while (submitted < numberBatches && submitted - completed < maxInFlight) {
+					if (virtualThreads) {
+						completionService.submit(() -> loadAndComputeBatch(loader, trainingMode));
+					} else {
+						completionService.submit(() -> runBatch(loader, trainingMode));
+					}
+					submitted++;
+				}
+
+				BatchMetrics metrics = completionService.take().get();
+
+				metrics.setBatch(completed++, numberBatches);
+				batchCompleted(metrics, epochMetrics);
+			}
+		} catch (ExecutionException e) {
+			awaitInFlight(completionService, submitted - completed - 1);
 
-		executor.shutdown();
+			throw new RuntimeException("Execution exception", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 
-		return batches;
+			throw new RuntimeException("Interrupted while running batches", e);
+		}
 	}
 
-	private BatchResult runBatch(Loader loader, boolean trainingMode) {
-		MetaData metaData = loader.getMetaData();
+	/*
+	 * Waits for batches still running after a failure, so none of them reads
+	 * from the loader once it has been closed.
+	 */
+	private void awaitInFlight(ExecutorCompletionService<BatchMetrics> completionService, int count) {
+		for (int i = 0; i < count; i++) {
+			try {
+				completionService.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private BatchMetrics runBatch(Loader loader, boolean trainingMode) {
+		BatchMetrics metrics = new BatchMetrics(trainingMode);
+		BatchData batchData = readBatch(loader, metrics);
+
+		return computeBatch(loader.getMetaData(), batchData, trainingMode, metrics);
+	}
+
+	/*
+	 * Runs on a virtual thread: waits for the loader there, then hands the
+	 * batch to a compute thread.
+	 */
+	private BatchMetrics loadAndComputeBatch(Loader loader, boolean trainingMode) throws Exception {
+		BatchMetrics metrics = new BatchMetrics(trainingMode);
+		BatchData batchData = readBatch(loader, metrics);
+
+		return getExecutor().submit(() -> computeBatch(loader.getMetaData(), batchData, trainingMode, metrics)).get();
+	}
+
+	private BatchData readBatch(Loader loader, BatchMetrics metrics) {
+		long start = System.nanoTime();
 		BatchData batchData = loader.readBatch();
 
-		int itemsRead = metaData.getItemsRead();
-		int inputSize = metaData.getInputSize();
-		int expectedSize = metaData.getExpectedSize();
+		metrics.setLoadNanos(System.nanoTime() - start);
+		metrics.setItems(batchData.getItemsRead());
+
+		return batchData;
+	}
+
+	private BatchMetrics computeBatch(MetaData metaData, BatchData batchData, boolean trainingMode, BatchMetrics metrics) {
+		Workspace workspace = workspaces.get();
 
-		Matrix input = new Matrix(inputSize, itemsRead, batchData.getInputBatch());
-		Matrix expected = new Matrix(expectedSize, itemsRead, batchData.getExpectedBatch());
+		long start = System.nanoTime();
+		Matrix input = loadInput(workspace, metaData, batchData);
+		Matrix expected = loadExpected(workspace, metaData, batchData);
 
-		BatchResult batchResult = engine.runForwards(input);
+		long decoded = System.nanoTime();
+		BatchResult batchResult = engine.runForwards(input, workspace);
+
+		long forwarded = System.nanoTime();
+
+		metrics.setDecodeNanos(decoded - start);
+		metrics.setForwardNanos(forwarded - decoded);
 
 		if (trainingMode) {
-			engine.runBackwards(batchResult, expected);
+			engine.runBackwards(batchResult, expected, workspace);
+
+			long backwarded = System.nanoTime();
+			metrics.setBackwardNanos(backwarded - forwarded);
+
 			synchronized (lock) {
-				engine.adjust(batchResult, learningRate);
+				long locked = System.nanoTime();
+				engine.adjust(batchResult, learningRate, workspace);
+
+				metrics.setLockWaitNanos(locked - backwarded);
+				metrics.setAdjustNanos(System.nanoTime() - locked);
 			}
 		} else {
-			engine.evaluate(batchResult, expected);
+			engine.evaluate(batchResult, expected, workspace);
+			metrics.setEvaluation(batchResult.getLoss(), batchResult.getPercentCorrect());
 		}
 
-		return batchResult;
+		return metrics;
+	}
+
+	private Matrix loadInput(Workspace workspace, MetaData metaData, BatchData batchData) {
+		Matrix input = workspace.getInput(metaData.getInputSize(), batchData.getItemsRead(), engine.getPrecision());
+
+		return input.setColumns(batchData.getInputBatch());
+	}
+
+	private Matrix loadExpected(Workspace workspace, MetaData metaData, BatchData batchData) {
+		Matrix expected = workspace.getExpected(metaData.getExpectedSize(), batchData.getItemsRead());
+
+		return expected.setColumns(batchData.getExpectedBatch());
 	}
 
 	@Override
@@ -171,7 +894,11 @@ public class NeuralNetwork implements Serializable{
 		sb.append(String.format("Epochs: %d\n", epochs));
 		sb.append(String.format("Initial learning rate: %.5f\n", initialLearningRate));
 		sb.append(String.format("Final learning rate: %.5f\n", finalLearningRate));
+		sb.append(String.format("Learning rate schedule: %s\n", getLearningRateSchedule()));
+		sb.append(String.format("Completed epochs: %d\n", completedEpochs));
 		sb.append(String.format("Threads: %d\n", threads));
+		sb.append(String.format("Data parallel: %b\n", dataParallel));
+		sb.append(String.format("Executor strategy: %s\n", getExecutorStrategy()));
 
 		sb.append("\nEngine Configuration");
 		sb.append("\n--------------------\n");
@@ -180,31 +907,18 @@ public class NeuralNetwork implements Serializable{
 		return sb.toString();
 	}
 
-	public boolean save(String file) {
-		try (var ds = new ObjectOutputStream(new FileOutputStream(file))) {
-			ds.writeObject(this);
-		}catch(IOException e) {
-			System.err.println("Error saving file: " + file);
-			return false;
-		}
-
-		return true;
+	public void save(String file) {
+		ModelFile.write(this, file);
 	}
 	
 	public static NeuralNetwork load(String file) {
-		NeuralNetwork neuralNetwork = null;
-		
-		try (var ds = new ObjectInputStream(new FileInputStream(file))) {
-			neuralNetwork = (NeuralNetwork)ds.readObject();
-		}catch(Exception e) {
-			System.err.println("Error loading file: " + file);
-		}
-
-		return neuralNetwork;
+		return ModelFile.read(file);
 	}
 	
 	public Object readResolve() {
 		lock = new Object();
+		workspaces = ThreadLocal.withInitial(Workspace::new);
+		listeners = createListeners();
 
 		return this;
 	}
@@ -0,0 +1,12 @@
+package vision.neuralnetwork;
+
+/*
+ * How gradients are turned into parameter updates. Optional parameters,
+ * in order, with their defaults:
+ *   MOMENTUM, NESTEROV: momentum (0.9)
+ *   RMSPROP: decay (0.9), epsilon (1e-8)
+ *   ADAM: beta1 (0.9), beta2 (0.999), epsilon (1e-8)
+ */
+public enum Optimizer {
+	SGD, MOMENTUM, NESTEROV, RMSPROP, ADAM
+}
@@ -0,0 +1,63 @@
+package vision.neuralnetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import vision.matrix.Matrix;
+
+/*
+ * Per-parameter buffers an optimizer keeps between steps: the first
+ * moment (momentum velocity, Adam mean) and the second moment (RMSProp
+ * and Adam mean square). Parameters are numbered layer by layer, weight
+ * then bias, and only the buffers the optimizer uses are created.
+ */
+public class OptimizerState {
+	private ArrayList<Matrix> firstMoments = new ArrayList<>();
+	private ArrayList<Matrix> secondMoments = new ArrayList<>();
+	private int step;
+	
+	OptimizerState(List<Matrix> weights, List<Matrix> biases, Optimizer optimizer) {
+		boolean first = optimizer == Optimizer.MOMENTUM || optimizer == Optimizer.NESTEROV || optimizer == Optimizer.ADAM;
+		boolean second = optimizer == Optimizer.RMSPROP || optimizer == Optimizer.ADAM;
+		
+		for (int i = 0; i < weights.size(); i++) {
+			for (Matrix parameter : List.of(weights.get(i), biases.get(i))) {
+				if (first) {
+					firstMoments.add(new Matrix(parameter.getRows(), parameter.getCols(), parameter.getPrecision()));
+				}
+				
+				if (second) {
+					secondMoments.add(new Matrix(parameter.getRows(), parameter.getCols(), parameter.getPrecision()));
+				}
+			}
+		}
+	}
+	
+	public Matrix getFirstMoment(int parameter) {
+		return firstMoments.get(parameter);
+	}
+	
+	public Matrix getSecondMoment(int parameter) {
+		return secondMoments.get(parameter);
+	}
+	
+	List<Matrix> getFirstMoments() {
+		return firstMoments;
+	}
+	
+	List<Matrix> getSecondMoments() {
+		return secondMoments;
+	}
+	
+	public int getStep() {
+		return step;
+	}
+	
+	void setStep(int step) {
+		this.step = step;
+	}
+	
+	int nextStep() {
+		return ++step;
+	}
+}
@@ -0,0 +1,30 @@
+package vision.neuralnetwork;
+
+/*
+ * Receives progress from NeuralNetwork.fit. All calls are made from the
+ * thread that called fit, in order.
+ */
+public interface TrainingListener {
+
+	default void epochStarted(int epoch) {
+	}
+
+	default void batchCompleted(BatchMetrics metrics) {
+	}
+
+	/*
+	 * Called after each pass over a loader: once for training and, when
+	 * there is an evaluation loader, once for evaluation.
+	 */
+	default void passCompleted(EpochMetrics metrics) {
+	}
+
+	default void epochCompleted(int epoch) {
+	}
+
+	/*
+	 * Called after epochCompleted when early stopping ends the fit.
+	 */
+	default void stoppedEarly(int epoch) {
+	}
+}
@@ -1,5 +1,13 @@
 package vision.neuralnetwork;
 
+/*
+ * The layers a network is built from. Parameters when adding them:
+ *   DENSE: neurons, then the input size if it is the first layer
+ *   CONV2D: filters, window size, stride (1), zero padding (0)
+ *   MAXPOOL: window size, stride (the window size)
+ * Convolution and pooling need the shape of their input images, which is
+ * set with setInputShape before the first layer is added.
+ */
 public enum Transform {
-	DENSE, RELU, SOFTMAX
+	DENSE, RELU, SOFTMAX, CONV2D, MAXPOOL
 }
@@ -0,0 +1,107 @@
+package vision.neuralnetwork;
+
+import java.util.ArrayList;
+
+import vision.matrix.Matrix;
+import vision.matrix.Precision;
+
+/*
+ * Buffers that one worker reuses for every batch it runs through an engine.
+ * Each slot keeps a matrix for every shape it has been asked for, so once
+ * a batch of each size has been seen a training step allocates nothing.
+ * A workspace belongs to a single thread, and the BatchResult it hands out
+ * is overwritten by the next batch.
+ */
+public class Workspace {
+	private ArrayList<Matrix> inputs = new ArrayList<>();
+	private ArrayList<Matrix> expected = new ArrayList<>();
+	private ArrayList<Matrix> predictions = new ArrayList<>();
+	private ArrayList<Matrix> lossGradients = new ArrayList<>();
+	private ArrayList<ArrayList<Matrix>> outputs = new ArrayList<>();
+	private ArrayList<ArrayList<Matrix>> errors = new ArrayList<>();
+	private ArrayList<ArrayList<Matrix>> columns = new ArrayList<>();
+	private ArrayList<ArrayList<Matrix>> columnErrors = new ArrayList<>();
+	
+	private BatchResult batchResult = new BatchResult();
+	private Gradients gradients;
+	
+	public Matrix getInput(int rows, int cols, Precision precision) {
+		return find(inputs, rows, cols, precision);
+	}
+	
+	public Matrix getExpected(int rows, int cols) {
+		return find(expected, rows, cols, Precision.DOUBLE);
+	}
+	
+	Matrix getOutput(int transform, int rows, int cols, Precision precision) {
+		return find(slot(outputs, transform), rows, cols, precision);
+	}
+	
+	Matrix getError(int transform, int rows, int cols, Precision precision) {
+		return find(slot(errors, transform), rows, cols, precision);
+	}
+	
+	/*
+	 * The im2col buffer of a convolution, kept until its weight gradient
+	 * has been accumulated, and the buffer its error is formed in.
+	 */
+	Matrix getColumns(int transform, int rows, int cols, Precision precision) {
+		return find(slot(columns, transform), rows, cols, precision);
+	}
+	
+	Matrix getColumnError(int transform, int rows, int cols, Precision precision) {
+		return find(slot(columnErrors, transform), rows, cols, precision);
+	}
+	
+	Matrix getPredictions(int cols) {
+		return find(predictions, 1, cols, Precision.DOUBLE);
+	}
+	
+	/*
+	 * Where evaluation writes the loss gradient it has no use for.
+	 */
+	Matrix getLossGradient(int rows, int cols, Precision precision) {
+		return find(lossGradients, rows, cols, precision);
+	}
+	
+	BatchResult getBatchResult() {
+		batchResult.clear();
+		
+		return batchResult;
+	}
+	
+	/*
+	 * Rebuilt whenever the engine's layers or precision have changed since
+	 * the last call, as they can between fits on the same threads.
+	 */
+	Gradients getGradients(Engine engine) {
+		if (gradients == null || !gradients.matches(engine.getWeights(), engine.getBiases())) {
+			gradients = engine.createGradients();
+		}
+		
+		return gradients;
+	}
+	
+	private static ArrayList<Matrix> slot(ArrayList<ArrayList<Matrix>> slots, int index) {
+		while (slots.size() <= index) {
+			slots.add(new ArrayList<>());
+		}
+		
+		return slots.get(index);
+	}
+	
+	private static Matrix find(ArrayList<Matrix> buffers, int rows, int cols, Precision precision) {
+		for (int i = 0; i < buffers.size(); i++) {
+			Matrix buffer = buffers.get(i);
+			
+			if (buffer.hasShape(rows, cols, precision)) {
+				return buffer;
+			}
+		}
+		
+		Matrix buffer = new Matrix(rows, cols, precision);
+		buffers.add(buffer);
+		
+		return buffer;
+	}
+}
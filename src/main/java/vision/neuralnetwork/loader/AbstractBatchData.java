@@ -4,6 +4,7 @@ public abstract class AbstractBatchData implements BatchData {
 	
 	private double[] inputBatch;
 	private double[] expectedBatch;
+	private int itemsRead;
 
 	@Override
 	public double[] getInputBatch() {
@@ -25,4 +26,14 @@ public abstract class AbstractBatchData implements BatchData {
 		this.expectedBatch = expectedBatch;
 	}
 
+	@Override
+	public int getItemsRead() {
+		return itemsRead;
+	}
+
+	@Override
+	public void setItemsRead(int itemsRead) {
+		this.itemsRead = itemsRead;
+	}
+
 }
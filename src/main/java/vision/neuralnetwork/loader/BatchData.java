@@ -8,4 +8,8 @@ public interface BatchData {
 	public double[] getExpectedBatch();
 
 	public void setExpectedBatch(double[] expectedBatch);
+
+	public int getItemsRead();
+
+	public void setItemsRead(int itemsRead);
 }
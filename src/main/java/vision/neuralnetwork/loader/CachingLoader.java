@@ -0,0 +1,306 @@
+package vision.neuralnetwork.loader;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Keeps the batches of a loader in memory, so that after the first epoch
+ * they are served without reading or decoding anything again. Inputs that
+ * are whole multiples of 1/256 between 0 and 255/256, as ImageLoader
+ * produces, and expected values that are whole numbers from 0 to 255 are
+ * stored as one byte each; anything else as floats. Values are turned
+ * back into doubles only as a batch is served.
+ *
+ * Batches stop being cached once the memory budget is reached. The rest
+ * are then read from the underlying loader every epoch: by index if it is
+ * a RandomAccessLoader, which must then return the same batch for an index
+ * every epoch. A sequential loader whose data does not fit is passed
+ * through uncached from the second epoch on.
+ *
+ * With shuffling on, each epoch serves the batches in a new order drawn
+ * from the seed. A sequential loader is read in order while the cache is
+ * being filled.
+ */
+public class CachingLoader implements Loader {
+	private static final double INPUT_SCALE = 1.0 / 256.0;
+	private static final double EXPECTED_SCALE = 1.0;
+
+	private Loader loader;
+	private long budgetBytes;
+
+	private MetaData metaData;
+	private AtomicReferenceArray<Batch> cache;
+	private AtomicInteger cachedBatches = new AtomicInteger();
+	private AtomicLong cachedBytes = new AtomicLong();
+	private volatile boolean overBudget = false;
+	private boolean passThrough = false;
+	private boolean underlyingOpen = false;
+
+	private boolean shuffle = false;
+	private long seed = new Random().nextLong();
+	private int epoch = 0;
+	private int[] order;
+
+	private AtomicInteger nextBatch = new AtomicInteger();
+	private Object lock = new Object();
+
+	public CachingLoader(Loader loader, long budgetBytes) {
+		this.loader = loader;
+		this.budgetBytes = budgetBytes;
+	}
+
+	public void setShuffle(boolean shuffle) {
+		this.shuffle = shuffle;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+		this.epoch = 0;
+	}
+
+	public int getCachedBatches() {
+		return cachedBatches.get();
+	}
+
+	public long getCachedBytes() {
+		return cachedBytes.get();
+	}
+
+	@Override
+	public MetaData open() {
+		if (passThrough) {
+			return loader.open();
+		}
+
+		if (cache == null) {
+			metaData = loader.open();
+			cache = new AtomicReferenceArray<>(metaData.getNumberBatches());
+			underlyingOpen = true;
+		} else {
+			underlyingOpen = !isComplete();
+
+			if (underlyingOpen) {
+				loader.open();
+			}
+		}
+
+		order = shuffle && !isFillingInOrder() ? permutation(cache.length(), epoch) : null;
+		nextBatch.set(0);
+		epoch++;
+
+		return metaData;
+	}
+
+	private boolean isComplete() {
+		return cachedBatches.get() == cache.length();
+	}
+
+	private boolean isFillingInOrder() {
+		return !(loader instanceof RandomAccessLoader) && !isComplete();
+	}
+
+	private int[] permutation(int numberBatches, int epoch) {
+		int[] batches = new int[numberBatches];
+
+		for (int i = 0; i < numberBatches; i++) {
+			batches[i] = i;
+		}
+
+		Random random = new Random(seed + epoch * 0x9E3779B97F4A7C15L);
+
+		for (int i = numberBatches - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int batch = batches[i];
+
+			batches[i] = batches[j];
+			batches[j] = batch;
+		}
+
+		return batches;
+	}
+
+	@Override
+	public void close() {
+		if (passThrough || underlyingOpen) {
+			loader.close();
+		}
+
+		underlyingOpen = false;
+
+		if (!passThrough && overBudget && !(loader instanceof RandomAccessLoader)) {
+			passThrough = true;
+			cache = null;
+			cachedBatches.set(0);
+			cachedBytes.set(0);
+		}
+	}
+
+	@Override
+	public MetaData getMetaData() {
+		return passThrough ? loader.getMetaData() : metaData;
+	}
+
+	@Override
+	public BatchData readBatch() {
+		if (passThrough) {
+			return loader.readBatch();
+		}
+
+		if (isFillingInOrder()) {
+			return readInOrder();
+		}
+
+		int position = nextBatch.getAndIncrement();
+
+		if (position >= cache.length()) {
+			return null;
+		}
+
+		int batch = order == null ? position : order[position];
+		Batch cached = cache.get(batch);
+
+		if (cached != null) {
+			return cached.decode();
+		}
+
+		BatchData batchData = ((RandomAccessLoader) loader).readBatch(batch);
+		store(batch, batchData);
+
+		return batchData;
+	}
+
+	/*
+	 * A sequential loader's batches are only known by the order they come
+	 * in, so claiming an index and reading its batch happen together.
+	 */
+	private BatchData readInOrder() {
+		synchronized (lock) {
+			int batch = nextBatch.getAndIncrement();
+
+			if (batch >= cache.length()) {
+				return null;
+			}
+
+			BatchData batchData = loader.readBatch();
+
+			if (batchData != null) {
+				store(batch, batchData);
+			}
+
+			return batchData;
+		}
+	}
+
+	private void store(int batch, BatchData batchData) {
+		if (overBudget || cache.get(batch) != null) {
+			return;
+		}
+
+		Batch cached = new Batch(batchData);
+
+		if (cachedBytes.addAndGet(cached.getBytes()) > budgetBytes) {
+			cachedBytes.addAndGet(-cached.getBytes());
+			overBudget = true;
+			return;
+		}
+
+		if (cache.compareAndSet(batch, null, cached)) {
+			cachedBatches.incrementAndGet();
+		} else {
+			cachedBytes.addAndGet(-cached.getBytes());
+		}
+	}
+
+	private static class Batch {
+		private Values input;
+		private Values expected;
+		private int itemsRead;
+
+		Batch(BatchData batchData) {
+			input = new Values(batchData.getInputBatch(), INPUT_SCALE);
+			expected = new Values(batchData.getExpectedBatch(), EXPECTED_SCALE);
+			itemsRead = batchData.getItemsRead();
+		}
+
+		long getBytes() {
+			return input.getBytes() + expected.getBytes();
+		}
+
+		BatchData decode() {
+			BatchData batchData = new AbstractBatchData() {
+			};
+
+			batchData.setInputBatch(input.decode());
+			batchData.setExpectedBatch(expected.decode());
+			batchData.setItemsRead(itemsRead);
+
+			return batchData;
+		}
+	}
+
+	/*
+	 * An array of values stored as bytes counting multiples of the scale
+	 * when every value is one, and as floats otherwise.
+	 */
+	private static class Values {
+		private byte[] bytes;
+		private float[] floats;
+		private double scale;
+
+		Values(double[] values, double scale) {
+			this.scale = scale;
+
+			if (isByteScaled(values, scale)) {
+				bytes = new byte[values.length];
+
+				for (int i = 0; i < values.length; i++) {
+					bytes[i] = (byte) (int) (values[i] / scale);
+				}
+			} else {
+				floats = new float[values.length];
+
+				for (int i = 0; i < values.length; i++) {
+					floats[i] = (float) values[i];
+				}
+			}
+		}
+
+		private static boolean isByteScaled(double[] values, double scale) {
+			for (double value : values) {
+				double level = value / scale;
+
+				if (level < 0 || level > 255 || level != (int) level || (int) level * scale != value) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		long getBytes() {
+			return bytes != null ? bytes.length : (long) Float.BYTES * floats.length;
+		}
+
+		double[] decode() {
+			if (bytes != null) {
+				double[] values = new double[bytes.length];
+
+				for (int i = 0; i < bytes.length; i++) {
+					values[i] = (bytes[i] & 0xFF) * scale;
+				}
+
+				return values;
+			}
+
+			double[] values = new double[floats.length];
+
+			for (int i = 0; i < floats.length; i++) {
+				values[i] = floats[i];
+			}
+
+			return values;
+		}
+	}
+}
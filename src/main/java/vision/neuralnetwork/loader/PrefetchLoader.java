@@ -0,0 +1,205 @@
+package vision.neuralnetwork.loader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import vision.neuralnetwork.loader.image.LoaderException;
+
+/*
+ * Wraps a loader with producer threads that read and decode batches ahead
+ * of the consumers into a bounded queue. Consumers calling readBatch take
+ * already decoded batches, so loading overlaps with the training maths.
+ * Batches are delivered in the order the producers finish them.
+ */
+public class PrefetchLoader implements Loader, QueueStatistics {
+	private static final BatchData END = new AbstractBatchData() {
+	};
+	private static final long FAILURE_POLL_MILLIS = 100;
+
+	private Loader loader;
+	private int producers;
+	private int capacity;
+
+	private Session session;
+	private ExecutorService executor;
+
+	private AtomicInteger delivered = new AtomicInteger();
+
+	private AtomicLong stallNanos = new AtomicLong();
+	private AtomicLong producerWaitNanos = new AtomicLong();
+	private AtomicLong queueDepthTotal = new AtomicLong();
+
+	/*
+	 * State of one open/close cycle. Producers only ever see their own
+	 * session, so a producer still finishing after close cannot claim or
+	 * drop batches of the next epoch.
+	 */
+	private static class Session {
+		private BlockingQueue<BatchData> queue;
+		private AtomicInteger claimed = new AtomicInteger();
+		private volatile RuntimeException failure;
+
+		Session(int capacity) {
+			queue = new ArrayBlockingQueue<>(capacity);
+		}
+	}
+
+	public PrefetchLoader(Loader loader, int producers, int capacity) {
+		this.loader = loader;
+		this.producers = producers;
+		this.capacity = capacity;
+	}
+
+	@Override
+	public MetaData open() {
+		MetaData metaData = loader.open();
+
+		Session session = new Session(capacity);
+		this.session = session;
+
+		delivered.set(0);
+		stallNanos.set(0);
+		producerWaitNanos.set(0);
+		queueDepthTotal.set(0);
+
+		executor = Executors.newFixedThreadPool(producers, runnable -> {
+			Thread thread = new Thread(runnable, "prefetch");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		for (int i = 0; i < producers; i++) {
+			executor.execute(() -> produce(session, metaData.getNumberBatches()));
+		}
+
+		return metaData;
+	}
+
+	private void produce(Session session, int numberBatches) {
+		try {
+			while (!Thread.currentThread().isInterrupted() && session.claimed.getAndIncrement() < numberBatches) {
+				BatchData batchData = loader.readBatch();
+
+				if (batchData == null) {
+					throw new LoaderException("Loader returned fewer batches than its metadata declares.");
+				}
+
+				long start = System.nanoTime();
+				session.queue.put(batchData);
+				producerWaitNanos.addAndGet(System.nanoTime() - start);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			session.failure = e;
+
+			/*
+			 * The batch this producer claimed will never arrive, so the
+			 * marker has to get into the queue even when it is full; close
+			 * interrupts the wait if nobody reads it.
+			 */
+			try {
+				session.queue.put(END);
+			} catch (InterruptedException interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/*
+	 * Waits for the producers to stop before closing the wrapped loader, so
+	 * none is still reading from it when it closes or is opened again.
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+
+		boolean interrupted = false;
+
+		while (true) {
+			try {
+				if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+					break;
+				}
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+
+		session.queue.clear();
+		loader.close();
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public MetaData getMetaData() {
+		return loader.getMetaData();
+	}
+
+	@Override
+	public BatchData readBatch() {
+		if (delivered.getAndIncrement() >= loader.getMetaData().getNumberBatches()) {
+			return null;
+		}
+
+		Session session = this.session;
+		BlockingQueue<BatchData> queue = session.queue;
+		queueDepthTotal.addAndGet(queue.size());
+
+		BatchData batchData;
+		long start = System.nanoTime();
+
+		/*
+		 * A failure can leave fewer batches than were counted on, so a
+		 * consumer waiting for one also watches for it.
+		 */
+		try {
+			while ((batchData = queue.poll(FAILURE_POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+				if (session.failure != null) {
+					batchData = END;
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LoaderException("Interrupted while waiting for batch.", e);
+		} finally {
+			stallNanos.addAndGet(System.nanoTime() - start);
+		}
+
+		if (batchData == END) {
+			queue.offer(END);
+			throw new LoaderException("Error prefetching batch.", session.failure);
+		}
+
+		return batchData;
+	}
+
+	public int getBatchesDelivered() {
+		return Math.min(delivered.get(), loader.getMetaData().getNumberBatches());
+	}
+
+	@Override
+	public double getAverageQueueDepth() {
+		int batches = getBatchesDelivered();
+
+		return batches == 0 ? 0 : (double) queueDepthTotal.get() / batches;
+	}
+
+	@Override
+	public long getStallNanos() {
+		return stallNanos.get();
+	}
+
+	public long getProducerWaitNanos() {
+		return producerWaitNanos.get();
+	}
+}
@@ -0,0 +1,11 @@
+package vision.neuralnetwork.loader;
+
+/*
+ * Implemented by loaders that queue batches ahead of their consumers.
+ * Values cover the period since the loader was last opened.
+ */
+public interface QueueStatistics {
+	double getAverageQueueDepth();
+
+	long getStallNanos();
+}
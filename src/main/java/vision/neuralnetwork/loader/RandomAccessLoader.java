@@ -0,0 +1,9 @@
+package vision.neuralnetwork.loader;
+
+/*
+ * A loader that can read any batch of the current epoch by index, from any
+ * number of threads at once.
+ */
+public interface RandomAccessLoader extends Loader {
+	BatchData readBatch(int batch);
+}
@@ -1,114 +1,135 @@
 package vision.neuralnetwork.loader.image;
 
-import java.io.DataInputStream;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import vision.neuralnetwork.loader.BatchData;
-import vision.neuralnetwork.loader.Loader;
+import vision.neuralnetwork.loader.RandomAccessLoader;
+
+/*
+ * Reads batches of images and labels from a pair of IDX files. Items are
+ * read in file order unless shuffling is enabled, in which case each open
+ * draws a new permutation of the items and batches are gathered from it.
+ * Any batch can be read by index, from any number of threads.
+ */
+public class ImageLoader implements RandomAccessLoader{
+	private static final int IMAGE_MAGIC_NUMBER = 2051;
+	private static final int LABEL_MAGIC_NUMBER = 2049;
+	private static final double PIXEL_SCALE = 1.0 / 256.0;
 
-public class ImageLoader implements Loader{
 	private String imageFileName;
 	private String labelFileName;
 	private int batchSize;
-	
-	private DataInputStream dsImages;
-	private DataInputStream dsLabels;
-	
+
+	private MappedIdxFile images;
+	private MappedIdxFile labels;
+
 	private ImageMetaData metaData;
-	
-	private Lock readLock = new ReentrantLock();
-	
+
+	private boolean shuffle = false;
+	private long seed = new Random().nextLong();
+	private int epoch = 0;
+	private int[] order;
+
+	private AtomicInteger nextBatch = new AtomicInteger();
+
 	public ImageLoader(String imageFileName, String labelFileName, int batchSize) {
 		this.imageFileName = imageFileName;
 		this.labelFileName = labelFileName;
 		this.batchSize = batchSize;
 	}
 
+	public void setShuffle(boolean shuffle) {
+		this.shuffle = shuffle;
+	}
+
+	/*
+	 * The permutation of each epoch depends only on the seed and on how many
+	 * times the loader has been opened before.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+		this.epoch = 0;
+	}
+
 	@Override
 	public ImageMetaData open() {
 		try {
-			dsImages = new DataInputStream(new FileInputStream(imageFileName));
+			labels = new MappedIdxFile(labelFileName, LABEL_MAGIC_NUMBER);
 		} catch (Exception e) {
-			throw new LoaderException("Error opening image file: " + imageFileName, e);
+			throw new LoaderException("Error opening label file: " + labelFileName, e);
 		}
-		
+
 		try {
-			dsLabels = new DataInputStream(new FileInputStream(labelFileName));
+			images = new MappedIdxFile(imageFileName, IMAGE_MAGIC_NUMBER);
 		} catch (Exception e) {
-			throw new LoaderException("Error opening label file: " + labelFileName, e);
+			throw new LoaderException("Error opening image file: " + imageFileName, e);
 		}
-		
+
 		metaData = readMetaData();
-		
+		order = shuffle ? permutation(metaData.getNumberItems(), epoch) : null;
+		nextBatch.set(0);
+		epoch++;
+
 		return metaData;
 	}
-	
+
+	private int[] permutation(int numberItems, int epoch) {
+		int[] items = new int[numberItems];
+
+		for (int i = 0; i < numberItems; i++) {
+			items[i] = i;
+		}
+
+		Random random = new Random(seed + epoch * 0x9E3779B97F4A7C15L);
+
+		for (int i = numberItems - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int item = items[i];
+
+			items[i] = items[j];
+			items[j] = item;
+		}
+
+		return items;
+	}
+
+	/*
+	 * The file index of the item at the given position in this epoch.
+	 */
+	private int item(int position) {
+		return order == null ? position : order[position];
+	}
+
 	private ImageMetaData readMetaData() {
-		
+
 		metaData = new ImageMetaData();
-		int numberItems = 0;
-		
-		try {
-			int magicLabelNumber = dsLabels.readInt();
-			
-			if(magicLabelNumber != 2049) {
-				throw new LoaderException("Label file: " + labelFileName + " has wrong format.");
-			}
-			
-			numberItems = dsLabels.readInt();
-			metaData.setNumberItems(numberItems);
-			
-		} catch (IOException e) {
-			throw new LoaderException("Error reading label file: " + labelFileName, e);
-		}
-		
-		try {
-			int magicImageNumber = dsImages.readInt();
-			
-			if(magicImageNumber != 2051) {
-				throw new LoaderException("Image file: " + imageFileName + " has wrong format.");
-			}
-			
-			if (dsImages.readInt() != numberItems) {
-				throw new LoaderException("Image file: " + imageFileName + " has different number of items than label file: " + labelFileName);
-			}
-			
-			int height = dsImages.readInt();
-			int width = dsImages.readInt();
-			
-			metaData.setHeight(height);
-			metaData.setWidth(width);
-			
-			metaData.setInputSize(width * height);			
-		} catch (IOException e) {
-			throw new LoaderException("Error reading image file: " + imageFileName, e);
+		int numberItems = labels.getNumberItems();
+
+		if (images.getNumberItems() != numberItems) {
+			throw new LoaderException("Image file: " + imageFileName + " has different number of items than label file: " + labelFileName);
 		}
-		
+
+		int height = images.getDimension(1);
+		int width = images.getDimension(2);
+
+		metaData.setNumberItems(numberItems);
+		metaData.setHeight(height);
+		metaData.setWidth(width);
+		metaData.setInputSize(width * height);
+
 		metaData.setExpectedSize(10);
-		metaData.setNumberBatches((int)Math.ceil((double)numberItems) / batchSize);
-		
+		metaData.setNumberBatches((numberItems + batchSize - 1) / batchSize);
+
 		return metaData;
 	}
 
 	@Override
 	public void close() {
-		
 		metaData = null;
-		
-		try {
-			dsImages.close();
-		} catch (Exception e) {
-			throw new LoaderException("Error closing image file: " + imageFileName, e);
-		}
-		
-		try {
-			dsLabels.close();
-		} catch (Exception e) {
-			throw new LoaderException("Error closing label file: " + labelFileName, e);
-		}
+		images = null;
+		labels = null;
+		order = null;
 	}
 
 	@Override
@@ -118,89 +139,64 @@ public class ImageLoader implements Loader{
 
 	@Override
 	public BatchData readBatch() {
-		readLock.lock();
-		try {
-			ImageBatchData batchData = new ImageBatchData();
-			
-			int inputItemsRead = readInputBatch(batchData);
-			int expectedItemsRead = readExpectedBatch(batchData);
-			
-			if (inputItemsRead != expectedItemsRead) {
-				throw new LoaderException("Error reading batch. Input items read: " + inputItemsRead
-						+ " Expected items read: " + expectedItemsRead);
-			}
-			
-			metaData.setItemsRead(inputItemsRead);
-			
-			return batchData;
-		} finally {
-			readLock.unlock();
+		int batch = nextBatch.getAndIncrement();
+
+		if (batch >= metaData.getNumberBatches()) {
+			return null;
 		}
+
+		return readBatch(batch);
 	}
 
-	private int readExpectedBatch(ImageBatchData batchData) {
-		try {
-			var totalItemsRead = metaData.getTotalItemsRead();
-			var numberItems = metaData.getNumberItems();
-			var numberToRead = Math.min(batchSize, numberItems - totalItemsRead);
-			
-			var labelData = new byte[numberToRead];
-			var expectedSize = metaData.getExpectedSize();
-			
-			var numberRead = dsLabels.read(labelData, 0, numberToRead);
-			
-			if (numberRead != numberToRead) {
-				throw new LoaderException(
-						"Error reading expected batch. Read: " + numberRead + " Expected: " + numberToRead);
-			}
-			
-			double[] data = new double[numberToRead * expectedSize];
-			
-			for (int i = 0; i < numberToRead; i++) {
-				byte label = labelData[i];
-				
-				data[i * expectedSize + label] = 1;
-			}
-			
-			batchData.setExpectedBatch(data);
-			
-			return numberToRead;
-		}catch (IOException e) {
-            throw new LoaderException("Error reading input batch.", e);
-        }
+	@Override
+	public ImageBatchData readBatch(int batch) {
+		int numberItems = metaData.getNumberItems();
+		int firstItem = batch * batchSize;
+
+		if (batch < 0 || firstItem >= numberItems) {
+			throw new LoaderException("Batch index out of range: " + batch);
+		}
+
+		int numberToRead = Math.min(batchSize, numberItems - firstItem);
+
+		ImageBatchData batchData = new ImageBatchData();
+
+		batchData.setInputBatch(readInputBatch(firstItem, numberToRead));
+		batchData.setExpectedBatch(readExpectedBatch(firstItem, numberToRead));
+		batchData.setItemsRead(numberToRead);
+
+		return batchData;
 	}
 
-	private int readInputBatch(ImageBatchData batchData) {
-		try {
-			var totalItemsRead = metaData.getTotalItemsRead();
-			var numberItems = metaData.getNumberItems();
-			var numberToRead = Math.min(batchSize, numberItems - totalItemsRead);
-			
-			var inputSize = metaData.getInputSize();
-			var numberBytesToRead = numberToRead * inputSize;
-			
-			byte[] imageData = new byte[numberBytesToRead];
-			
-			var numberRead = dsImages.read(imageData, 0, numberBytesToRead);
-			
-			if (numberRead != numberBytesToRead) {
-				throw new LoaderException(
-						"Error reading input batch. Read: " + numberRead + " Expected: " + numberBytesToRead);
-			}
-			
-			double[] data = new double[numberBytesToRead];
-			
-			for (int i = 0; i < numberBytesToRead; i++) {
-				data[i] = (imageData[i] & 0xFF) / 256.0;				
+	private double[] readExpectedBatch(int firstItem, int numberToRead) {
+		var expectedSize = metaData.getExpectedSize();
+
+		double[] data = new double[numberToRead * expectedSize];
+
+		for (int i = 0; i < numberToRead; i++) {
+			int label = labels.get(item(firstItem + i), 0);
+
+			if (label >= expectedSize) {
+				throw new LoaderException("Label file: " + labelFileName + " has label out of range: " + label);
 			}
-			
-			batchData.setInputBatch(data);
-			
-			return numberToRead;
-		}catch (IOException e) {
-            throw new LoaderException("Error reading input batch.", e);
-        }
+
+			data[i * expectedSize + label] = 1;
+		}
+
+		return data;
 	}
-	
-	
+
+	private double[] readInputBatch(int firstItem, int numberToRead) {
+		var inputSize = metaData.getInputSize();
+
+		double[] data = new double[numberToRead * inputSize];
+
+		for (int i = 0; i < numberToRead; i++) {
+			images.read(item(firstItem + i), data, i * inputSize, PIXEL_SCALE);
+		}
+
+		return data;
+	}
+
+
 }
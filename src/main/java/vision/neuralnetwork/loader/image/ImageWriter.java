@@ -4,7 +4,6 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Arrays;
 
 import javax.imageio.ImageIO;
 
@@ -73,7 +72,7 @@ public class ImageWriter {
 		for(int i = 0; i < metaData.getNumberBatches(); i++) {
             BatchData batchData = testLoader.readBatch();
             
-            var numberImages = metaData.getItemsRead();
+            var numberImages = batchData.getItemsRead();
             
             int horizontalImages = (int)Math.sqrt(numberImages);
             
@@ -95,17 +94,12 @@ public class ImageWriter {
             int imageSize = imageWidth * imageHeight;
             
             boolean[] correct = new boolean[numberImages];
+            int[] predicted = neuralNetwork.classifyBatch(pixelData, numberImages);
             
 			for (int j = 0; j < numberImages; j++) {
-				double[] singleImage = Arrays.copyOfRange(pixelData, j * imageSize, (j + 1) * imageSize);
-				double[] singleLabel = Arrays.copyOfRange(labelData, j * labelSize, (j + 1) * labelSize);
-				
-				double[] predictedLabel = neuralNetwork.predict(singleImage);
-				
-				int predicted = convertOneHotToInt(predictedLabel, 0, labelSize);
-				int actual = convertOneHotToInt(singleLabel, 0, labelSize);
+				int actual = convertOneHotToInt(labelData, j * labelSize, labelSize);
 
-				correct[j] = actual == predicted;
+				correct[j] = actual == predicted[j];
 			}
             
             for(int pixelIndex = 0; pixelIndex < pixelData.length; pixelIndex++) {
@@ -0,0 +1,126 @@
+package vision.neuralnetwork.loader.image;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Read-only memory mapping of an IDX file of unsigned bytes. The header is
+ * parsed once; items are then addressed by index through absolute reads,
+ * so any number of threads can read different items at the same time.
+ * Files larger than 2 GB are mapped as several chunks, each holding a whole
+ * number of items.
+ */
+class MappedIdxFile {
+	private static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE;
+
+	private final String fileName;
+	private final int numberItems;
+	private final int[] dimensions;
+	private final int itemSize;
+	private final int itemsPerChunk;
+	private final MappedByteBuffer[] chunks;
+
+	MappedIdxFile(String fileName, int magicNumber) {
+		this(fileName, magicNumber, MAX_CHUNK_BYTES);
+	}
+
+	MappedIdxFile(String fileName, int magicNumber, long maxChunkBytes) {
+		this.fileName = fileName;
+
+		try (var channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+			int magic = readInt(channel, 0);
+
+			if (magic != magicNumber) {
+				throw new LoaderException("File: " + fileName + " has wrong format.");
+			}
+
+			int numberDimensions = magic & 0xFF;
+			dimensions = new int[numberDimensions];
+
+			for (int i = 0; i < numberDimensions; i++) {
+				dimensions[i] = readInt(channel, 4 + 4L * i);
+			}
+
+			numberItems = dimensions[0];
+
+			int size = 1;
+
+			for (int i = 1; i < numberDimensions; i++) {
+				size *= dimensions[i];
+			}
+
+			itemSize = size;
+
+			long headerSize = 4 + 4L * numberDimensions;
+			long dataSize = (long) numberItems * itemSize;
+
+			if (channel.size() < headerSize + dataSize) {
+				throw new LoaderException("File: " + fileName + " is shorter than its header declares.");
+			}
+
+			itemsPerChunk = (int) Math.max(1, Math.min(numberItems, maxChunkBytes / itemSize));
+			chunks = new MappedByteBuffer[Math.max(1, (numberItems + itemsPerChunk - 1) / itemsPerChunk)];
+
+			for (int i = 0; i < chunks.length; i++) {
+				long firstItem = (long) i * itemsPerChunk;
+				long chunkItems = Math.min(itemsPerChunk, numberItems - firstItem);
+
+				chunks[i] = channel.map(MapMode.READ_ONLY, headerSize + firstItem * itemSize, chunkItems * itemSize);
+			}
+		} catch (IOException e) {
+			throw new LoaderException("Error mapping file: " + fileName, e);
+		}
+	}
+
+	private static int readInt(FileChannel channel, long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4);
+
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file");
+			}
+		}
+
+		return buffer.flip().getInt();
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public int getNumberItems() {
+		return numberItems;
+	}
+
+	public int getDimension(int index) {
+		return dimensions[index];
+	}
+
+	public int getItemSize() {
+		return itemSize;
+	}
+
+	int getNumberChunks() {
+		return chunks.length;
+	}
+
+	public int get(int item, int offset) {
+		MappedByteBuffer chunk = chunks[item / itemsPerChunk];
+
+		return chunk.get((item % itemsPerChunk) * itemSize + offset) & 0xFF;
+	}
+
+	public void read(int item, double[] data, int dataOffset, double scale) {
+		MappedByteBuffer chunk = chunks[item / itemsPerChunk];
+		int position = (item % itemsPerChunk) * itemSize;
+
+		for (int i = 0; i < itemSize; i++) {
+			data[dataOffset + i] = (chunk.get(position + i) & 0xFF) * scale;
+		}
+	}
+}
@@ -72,6 +72,7 @@ public class TestLoader implements vision.neuralnetwork.loader.Loader {
 		var batchData = new TestBatchData();
 		batchData.setInputBatch(io.getInput());
 		batchData.setExpectedBatch(io.getOutput());
+		batchData.setItemsRead(itemsRead);
 		
 		metaData.setTotalItemsRead(totalItemsRead);
 		metaData.setItemsRead(itemsRead);
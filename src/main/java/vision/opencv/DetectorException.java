@@ -0,0 +1,14 @@
+package vision.opencv;
+
+public class DetectorException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public DetectorException(String message) {
+		super(message);
+	}
+
+	public DetectorException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
@@ -0,0 +1,127 @@
+package vision.opencv;
+
+import java.io.File;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfRect;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.objdetect.CascadeClassifier;
+import org.opencv.objdetect.Objdetect;
+
+/*
+ * A Haar cascade face detector that parses its cascade file once and keeps
+ * its grey-scale image and result Mats from frame to frame. OpenCV
+ * classifiers are not thread-safe, so a detector belongs to one thread at
+ * a time; FaceDetectorService hands one to each thread.
+ *
+ * Faces smaller than a tenth of the image height are ignored.
+ */
+public class FaceDetector implements RegionDetector {
+	public static final String DEFAULT_CASCADE = "./src/main/resources/haarcascades/haarcascade_frontalface_alt.xml";
+
+	private static final double SCALE_FACTOR = 1.1;
+	private static final int MIN_NEIGHBORS = 3;
+	private static final float MIN_FACE_FRACTION = 0.1f;
+
+	private final CascadeClassifier cascadeClassifier;
+	private final LatencyStatistics statistics;
+
+	private final Mat grey = new Mat();
+	private final MatOfRect faces = new MatOfRect();
+	private final Size minFaceSize = new Size();
+	private final Size maxFaceSize = new Size();
+
+	public FaceDetector() {
+		this(DEFAULT_CASCADE);
+	}
+
+	public FaceDetector(String cascadeFile) {
+		this(cascadeFile, new LatencyStatistics());
+	}
+
+	/*
+	 * Records detection latencies into the given statistics, which may be
+	 * shared with other detectors.
+	 */
+	public FaceDetector(String cascadeFile, LatencyStatistics statistics) {
+		if (!new File(cascadeFile).isFile()) {
+			throw new DetectorException("Cascade file not found: " + cascadeFile);
+		}
+
+		cascadeClassifier = new CascadeClassifier();
+
+		if (!cascadeClassifier.load(cascadeFile) || cascadeClassifier.empty()) {
+			throw new DetectorException("Could not load cascade " + cascadeFile);
+		}
+
+		this.statistics = statistics;
+	}
+
+	/*
+	 * The faces in a BGR, BGRA or grey-scale image.
+	 */
+	@Override
+	public Rect[] detect(Mat image) {
+		long start = System.nanoTime();
+
+		Mat input = toGrey(image);
+		int minimum = Math.round(image.rows() * MIN_FACE_FRACTION);
+
+		minFaceSize.width = minimum;
+		minFaceSize.height = minimum;
+
+		cascadeClassifier.detectMultiScale(input, faces, SCALE_FACTOR, MIN_NEIGHBORS, Objdetect.CASCADE_SCALE_IMAGE,
+				minFaceSize, maxFaceSize);
+
+		Rect[] result = faces.toArray();
+
+		statistics.record(System.nanoTime() - start);
+
+		return result;
+	}
+
+	/*
+	 * The faces in an image file, for running the detector on stills.
+	 */
+	public Rect[] detect(String imageFile) {
+		Mat image = Imgcodecs.imread(imageFile);
+
+		if (image.empty()) {
+			throw new DetectorException("Could not read image " + imageFile);
+		}
+
+		try {
+			return detect(image);
+		} finally {
+			image.release();
+		}
+	}
+
+	private Mat toGrey(Mat image) {
+		switch (image.channels()) {
+		case 1:
+			return image;
+		case 3:
+			Imgproc.cvtColor(image, grey, Imgproc.COLOR_BGR2GRAY);
+			return grey;
+		case 4:
+			Imgproc.cvtColor(image, grey, Imgproc.COLOR_BGRA2GRAY);
+			return grey;
+		default:
+			throw new DetectorException("Unsupported image with " + image.channels() + " channels");
+		}
+	}
+
+	public LatencyStatistics getStatistics() {
+		return statistics;
+	}
+
+	@Override
+	public void close() {
+		grey.release();
+		faces.release();
+	}
+}
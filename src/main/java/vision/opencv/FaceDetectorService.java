@@ -0,0 +1,99 @@
+package vision.opencv;
+
+import java.util.ArrayList;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+/*
+ * Face detection for any number of threads. Each thread gets its own
+ * FaceDetector the first time it calls detect, and keeps it, so the
+ * cascade is parsed once per thread rather than once per frame. Latencies
+ * from every thread go into one LatencyStatistics.
+ *
+ * A detector holds a parsed cascade and native scratch images, so call
+ * this from a fixed set of threads, such as a capture thread or a thread
+ * pool, rather than from a new thread per frame.
+ */
+public class FaceDetectorService implements AutoCloseable {
+	private static FaceDetectorService defaultService;
+
+	private final String cascadeFile;
+	private final LatencyStatistics statistics = new LatencyStatistics();
+	private final ArrayList<FaceDetector> detectors = new ArrayList<>();
+	private final ThreadLocal<FaceDetector> detector = ThreadLocal.withInitial(this::createDetector);
+
+	public FaceDetectorService() {
+		this(FaceDetector.DEFAULT_CASCADE);
+	}
+
+	public FaceDetectorService(String cascadeFile) {
+		this.cascadeFile = cascadeFile;
+	}
+
+	/*
+	 * A service over the default cascade, shared by the whole application.
+	 */
+	public static synchronized FaceDetectorService getDefault() {
+		if (defaultService == null) {
+			defaultService = new FaceDetectorService();
+		}
+
+		return defaultService;
+	}
+
+	private FaceDetector createDetector() {
+		FaceDetector result = new FaceDetector(cascadeFile, statistics);
+
+		synchronized (detectors) {
+			detectors.add(result);
+		}
+
+		return result;
+	}
+
+	/*
+	 * The calling thread's detector.
+	 */
+	public FaceDetector getDetector() {
+		return detector.get();
+	}
+
+	public Rect[] detect(Mat image) {
+		return detector.get().detect(image);
+	}
+
+	public Rect[] detect(String imageFile) {
+		return detector.get().detect(imageFile);
+	}
+
+	public LatencyStatistics getStatistics() {
+		return statistics;
+	}
+
+	/*
+	 * The number of threads that have been given a detector.
+	 */
+	public int getDetectorCount() {
+		synchronized (detectors) {
+			return detectors.size();
+		}
+	}
+
+	/*
+	 * Releases every thread's scratch images. The detectors must no longer
+	 * be in use.
+	 */
+	@Override
+	public void close() {
+		synchronized (detectors) {
+			for (FaceDetector faceDetector : detectors) {
+				faceDetector.close();
+			}
+
+			detectors.clear();
+		}
+
+		detector.remove();
+	}
+}
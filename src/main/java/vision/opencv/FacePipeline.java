@@ -0,0 +1,566 @@
+package vision.opencv;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import vision.neuralnetwork.NeuralNetwork;
+
+/*
+ * Identifies the faces in a stream of frames. Each stage runs on its own
+ * threads with a bounded queue in front of it, so a slow stage holds back
+ * the stages before it rather than letting frames pile up:
+ *
+ *   files -> DECODE -> frames -> DETECT -> frames with faces -> CROP
+ *         -> faces -> INFERENCE -> results
+ *
+ * The crop stage cuts each face out of its frame and, with a MatConverter,
+ * scales it to the network's input shape, converts it to grey (or BGR for
+ * a three channel network) and scales the pixels as ImageLoader does. The
+ * inference stage gathers faces into batches of up to the batch size,
+ * waiting no longer than the batch deadline after the first face of a
+ * batch, and runs each batch through NeuralNetwork.predictBatch. A face's
+ * input buffer goes back to a pool once it is copied into a batch, and
+ * each inference thread hands every result the same outputs array, so
+ * after warming up the two stages allocate no arrays per face.
+ *
+ * Faces are found by a Haar cascade FaceDetector on each detect thread
+ * unless setDetectors supplies another RegionDetector.
+ *
+ * Frames are submitted as image files or as decoded 8-bit Mats such as
+ * camera frames, and drain waits for everything submitted so far. Results
+ * are handed to the consumer given to start, on the inference threads,
+ * and their outputs are only valid until the consumer returns. An
+ * exception from a stage or from the consumer fails the pipeline, and the
+ * next submit or drain throws it; a consumer exception still lets the
+ * rest of the results through.
+ */
+public class FacePipeline implements AutoCloseable {
+	/*
+	 * How often a submit waiting on a full queue checks whether the
+	 * pipeline has failed.
+	 */
+	private static final long SUBMIT_POLL_MILLIS = 10;
+
+	private final NeuralNetwork neuralNetwork;
+	private final String cascadeFile;
+	private Supplier<? extends RegionDetector> detectors;
+
+	private final EnumMap<PipelineStage, Integer> threads = new EnumMap<>(PipelineStage.class);
+	private int queueCapacity = 16;
+	private int batchSize = 32;
+	private long batchDeadlineNanos = TimeUnit.MILLISECONDS.toNanos(5);
+
+	private int channels;
+	private int height;
+	private int width;
+	private int inputSize;
+
+	private BlockingQueue<Frame> files;
+	private BlockingQueue<Frame> frames;
+	private BlockingQueue<Frame> detected;
+	private BlockingQueue<Face> faces;
+	private final Queue<double[]> inputBuffers = new ConcurrentLinkedQueue<>();
+
+	private ExecutorService executor;
+	private Consumer<FaceResult> consumer;
+
+	private final AtomicInteger pending = new AtomicInteger();
+	private volatile RuntimeException failure;
+
+	private final EnumMap<PipelineStage, LatencyStatistics> statistics = new EnumMap<>(PipelineStage.class);
+	private final LatencyStatistics latencyStatistics = new LatencyStatistics();
+	private final AtomicLong framesCompleted = new AtomicLong();
+	private final AtomicLong unreadableFrames = new AtomicLong();
+	private final AtomicLong facesCompleted = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+
+	/*
+	 * A frame on its way through the pipeline. Only the stage holding it
+	 * touches its image, and whichever stage finishes with it releases it.
+	 */
+	private static class Frame {
+		private final String source;
+		private final long submitted = System.nanoTime();
+		private Mat image;
+		private Rect[] regions;
+		private final AtomicInteger remaining = new AtomicInteger();
+
+		Frame(String source, Mat image) {
+			this.source = source;
+			this.image = image;
+		}
+	}
+
+	private static class Face {
+		private final Frame frame;
+		private final Rect region;
+		private final double[] input;
+
+		Face(Frame frame, Rect region, double[] input) {
+			this.frame = frame;
+			this.region = region;
+			this.input = input;
+		}
+	}
+
+	private interface Worker {
+		void run() throws InterruptedException;
+	}
+
+	public FacePipeline(NeuralNetwork neuralNetwork) {
+		this(neuralNetwork, FaceDetector.DEFAULT_CASCADE);
+	}
+
+	public FacePipeline(NeuralNetwork neuralNetwork, String cascadeFile) {
+		this.neuralNetwork = neuralNetwork;
+		this.cascadeFile = cascadeFile;
+
+		for (PipelineStage stage : PipelineStage.values()) {
+			threads.put(stage, 1);
+			statistics.put(stage, new LatencyStatistics());
+		}
+	}
+
+	public void setThreads(PipelineStage stage, int count) {
+		checkNotStarted();
+		threads.put(stage, Math.max(1, count));
+	}
+
+	public int getThreads(PipelineStage stage) {
+		return threads.get(stage);
+	}
+
+	/*
+	 * The number of frames or faces each queue holds before the stage
+	 * feeding it waits.
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		checkNotStarted();
+		this.queueCapacity = Math.max(1, queueCapacity);
+	}
+
+	public void setBatchSize(int batchSize) {
+		checkNotStarted();
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/*
+	 * How long a batch waits to fill after its first face arrives. Zero
+	 * runs whatever faces are already queued.
+	 */
+	public void setBatchDeadline(long time, TimeUnit unit) {
+		checkNotStarted();
+		this.batchDeadlineNanos = Math.max(0, unit.toNanos(time));
+	}
+
+	/*
+	 * Detects regions with detectors from the supplier, one per detect
+	 * thread, instead of the cascade. The pipeline closes them when it
+	 * stops.
+	 */
+	public void setDetectors(Supplier<? extends RegionDetector> detectors) {
+		checkNotStarted();
+		this.detectors = detectors;
+	}
+
+	private void checkNotStarted() {
+		if (executor != null) {
+			throw new IllegalStateException("Pipeline already started");
+		}
+	}
+
+	public void start(Consumer<FaceResult> consumer) {
+		checkNotStarted();
+
+		int[] shape = neuralNetwork.getInputShape();
+
+		if (shape == null || (shape[0] != 1 && shape[0] != 3)) {
+			throw new IllegalArgumentException("Network needs a one or three channel input shape");
+		}
+
+		if (detectors == null && !new File(cascadeFile).isFile()) {
+			throw new DetectorException("Cascade file not found: " + cascadeFile);
+		}
+
+		channels = shape[0];
+		height = shape[1];
+		width = shape[2];
+		inputSize = channels * height * width;
+
+		this.consumer = consumer;
+
+		files = new ArrayBlockingQueue<>(queueCapacity);
+		frames = new ArrayBlockingQueue<>(queueCapacity);
+		detected = new ArrayBlockingQueue<>(queueCapacity);
+		faces = new ArrayBlockingQueue<>(Math.max(queueCapacity, batchSize));
+
+		int total = 0;
+
+		for (int count : threads.values()) {
+			total += count;
+		}
+
+		executor = Executors.newFixedThreadPool(total, runnable -> {
+			Thread thread = new Thread(runnable, "face-pipeline");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		launch(PipelineStage.DECODE, this::decode);
+		launch(PipelineStage.DETECT, this::detect);
+		launch(PipelineStage.CROP, this::crop);
+		launch(PipelineStage.INFERENCE, this::infer);
+	}
+
+	private void launch(PipelineStage stage, Worker worker) {
+		for (int i = 0; i < threads.get(stage); i++) {
+			executor.execute(() -> {
+				try {
+					worker.run();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (RuntimeException e) {
+					fail(e);
+				}
+			});
+		}
+	}
+
+	/*
+	 * Queues an image file, waiting while the decode queue is full.
+	 */
+	public void submit(String imageFile) {
+		enqueue(files, new Frame(imageFile, null));
+	}
+
+	/*
+	 * Queues a decoded frame, waiting while the detection queue is full.
+	 * The pipeline releases the Mat when it has finished with it.
+	 */
+	public void submit(Mat image, String source) {
+		enqueue(frames, new Frame(source, image));
+	}
+
+	/*
+	 * A failed stage stops taking frames, so the queues before it fill up;
+	 * waiting in short steps lets the failure through instead of blocking
+	 * for good.
+	 */
+	private void enqueue(BlockingQueue<Frame> queue, Frame frame) {
+		if (executor == null) {
+			throw new IllegalStateException("Pipeline not started");
+		}
+
+		pending.incrementAndGet();
+
+		try {
+			do {
+				checkFailure();
+			} while (!queue.offer(frame, SUBMIT_POLL_MILLIS, TimeUnit.MILLISECONDS));
+		} catch (InterruptedException e) {
+			pending.decrementAndGet();
+			Thread.currentThread().interrupt();
+			throw new DetectorException("Interrupted while submitting frame.", e);
+		} catch (DetectorException e) {
+			pending.decrementAndGet();
+			throw e;
+		}
+	}
+
+	/*
+	 * Waits until every submitted frame has been through the pipeline.
+	 */
+	public synchronized void drain() {
+		try {
+			while (pending.get() > 0 && failure == null) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DetectorException("Interrupted while draining pipeline.", e);
+		}
+
+		checkFailure();
+	}
+
+	private void decode() throws InterruptedException {
+		LatencyStatistics decodeStatistics = statistics.get(PipelineStage.DECODE);
+
+		while (true) {
+			Frame frame = files.take();
+
+			long start = System.nanoTime();
+			frame.image = Imgcodecs.imread(frame.source);
+			decodeStatistics.record(System.nanoTime() - start);
+
+			if (frame.image.empty()) {
+				unreadableFrames.incrementAndGet();
+				frame.image.release();
+				completeFrame();
+				continue;
+			}
+
+			frames.put(frame);
+		}
+	}
+
+	private void detect() throws InterruptedException {
+		LatencyStatistics detectStatistics = statistics.get(PipelineStage.DETECT);
+
+		try (RegionDetector detector = detectors != null ? detectors.get() : new FaceDetector(cascadeFile)) {
+			while (true) {
+				Frame frame = frames.take();
+
+				long start = System.nanoTime();
+				frame.regions = detector.detect(frame.image);
+				detectStatistics.record(System.nanoTime() - start);
+
+				if (frame.regions.length == 0) {
+					frame.image.release();
+					completeFrame();
+					continue;
+				}
+
+				frame.remaining.set(frame.regions.length);
+				detected.put(frame);
+			}
+		}
+	}
+
+	private void crop() throws InterruptedException {
+		LatencyStatistics cropStatistics = statistics.get(PipelineStage.CROP);
+
+		Face[] cropped = new Face[0];
+
+		try (MatConverter converter = new MatConverter(channels, height, width, 0)) {
+			while (true) {
+				Frame frame = detected.take();
+
+				long start = System.nanoTime();
+				int count = frame.regions.length;
+
+				if (cropped.length < count) {
+					cropped = new Face[count];
+				}
+
+				for (int i = 0; i < count; i++) {
+					Mat region = frame.image.submat(frame.regions[i]);
+					double[] input = inputBuffers.poll();
+
+					if (input == null) {
+						input = new double[inputSize];
+					}
+
+					converter.convert(region, input, 0);
+					region.release();
+
+					cropped[i] = new Face(frame, frame.regions[i], input);
+				}
+
+				frame.image.release();
+				cropStatistics.record(System.nanoTime() - start);
+
+				for (int i = 0; i < count; i++) {
+					faces.put(cropped[i]);
+					cropped[i] = null;
+				}
+			}
+		}
+	}
+
+	private void infer() throws InterruptedException {
+		LatencyStatistics inferenceStatistics = statistics.get(PipelineStage.INFERENCE);
+
+		int outputSize = neuralNetwork.getOutputSize();
+		Face[] batch = new Face[batchSize];
+		double[] inputs = new double[batchSize * inputSize];
+		double[] outputs = new double[batchSize * outputSize];
+		double[] faceOutputs = new double[outputSize];
+
+		while (true) {
+			int count = fill(batch);
+
+			long start = System.nanoTime();
+
+			for (int i = 0; i < count; i++) {
+				System.arraycopy(batch[i].input, 0, inputs, i * inputSize, inputSize);
+				inputBuffers.offer(batch[i].input);
+			}
+
+			neuralNetwork.predictBatch(inputs, count, outputs);
+			long finished = System.nanoTime();
+
+			inferenceStatistics.record(finished - start);
+			batches.incrementAndGet();
+
+			for (int i = 0; i < count; i++) {
+				Face face = batch[i];
+
+				System.arraycopy(outputs, i * outputSize, faceOutputs, 0, outputSize);
+
+				latencyStatistics.record(finished - face.frame.submitted);
+
+				try {
+					consumer.accept(new FaceResult(face.frame.source, face.region, faceOutputs, finished - face.frame.submitted));
+				} catch (RuntimeException e) {
+					fail(e);
+				}
+
+				batch[i] = null;
+				facesCompleted.incrementAndGet();
+
+				if (face.frame.remaining.decrementAndGet() == 0) {
+					completeFrame();
+				}
+			}
+		}
+	}
+
+	/*
+	 * Waits for a first face, then takes more until the batch is full or
+	 * the deadline has passed.
+	 */
+	private int fill(Face[] batch) throws InterruptedException {
+		batch[0] = faces.take();
+
+		long deadline = System.nanoTime() + batchDeadlineNanos;
+		int count = 1;
+
+		while (count < batch.length) {
+			long remaining = deadline - System.nanoTime();
+			Face face = remaining > 0 ? faces.poll(remaining, TimeUnit.NANOSECONDS) : faces.poll();
+
+			if (face == null) {
+				break;
+			}
+
+			batch[count++] = face;
+		}
+
+		return count;
+	}
+
+	private void completeFrame() {
+		framesCompleted.incrementAndGet();
+
+		if (pending.decrementAndGet() == 0) {
+			synchronized (this) {
+				notifyAll();
+			}
+		}
+	}
+
+	private void fail(RuntimeException e) {
+		synchronized (this) {
+			if (failure == null) {
+				failure = e;
+			}
+
+			notifyAll();
+		}
+	}
+
+	private void checkFailure() {
+		if (failure != null) {
+			throw new DetectorException("Face pipeline failed.", failure);
+		}
+	}
+
+	/*
+	 * Stops every stage and releases the frames still queued.
+	 */
+	@Override
+	public void close() {
+		if (executor == null) {
+			return;
+		}
+
+		executor.shutdownNow();
+
+		try {
+			executor.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		for (BlockingQueue<Frame> queue : List.of(frames, detected)) {
+			for (Frame frame : queue) {
+				frame.image.release();
+			}
+
+			queue.clear();
+		}
+
+		files.clear();
+		faces.clear();
+	}
+
+	/*
+	 * Per stage timings: per file for DECODE, per frame for DETECT and
+	 * CROP, and per batch for INFERENCE.
+	 */
+	public LatencyStatistics getStatistics(PipelineStage stage) {
+		return statistics.get(stage);
+	}
+
+	/*
+	 * The time from submitting a frame to the result for each of its faces.
+	 */
+	public LatencyStatistics getLatencyStatistics() {
+		return latencyStatistics;
+	}
+
+	public long getFrames() {
+		return framesCompleted.get();
+	}
+
+	public long getUnreadableFrames() {
+		return unreadableFrames.get();
+	}
+
+	public long getFaces() {
+		return facesCompleted.get();
+	}
+
+	public long getBatches() {
+		return batches.get();
+	}
+
+	public double getAverageBatchSize() {
+		long count = batches.get();
+
+		return count == 0 ? 0 : (double) facesCompleted.get() / count;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+
+		builder.append(String.format("%d frames, %d faces, %d batches (%.1f faces per batch)%n", getFrames(), getFaces(),
+				getBatches(), getAverageBatchSize()));
+
+		for (PipelineStage stage : PipelineStage.values()) {
+			builder.append(String.format("%-9s x%d: %s%n", stage, threads.get(stage), statistics.get(stage)));
+		}
+
+		builder.append(String.format("%-12s: %s", "Latency", latencyStatistics));
+
+		return builder.toString();
+	}
+}
@@ -0,0 +1,62 @@
+package vision.opencv;
+
+import org.opencv.core.Rect;
+
+/*
+ * A face found by a FacePipeline: the frame it came from, where it is in
+ * the frame, and the network's outputs for it. The pipeline reuses the
+ * outputs array for later faces, so a consumer that keeps them past its
+ * callback copies them.
+ */
+public class FaceResult {
+	private final String source;
+	private final Rect region;
+	private final double[] outputs;
+	private final long latencyNanos;
+
+	FaceResult(String source, Rect region, double[] outputs, long latencyNanos) {
+		this.source = source;
+		this.region = region;
+		this.outputs = outputs;
+		this.latencyNanos = latencyNanos;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public Rect getRegion() {
+		return region;
+	}
+
+	public double[] getOutputs() {
+		return outputs;
+	}
+
+	/*
+	 * The index of the greatest output.
+	 */
+	public int getLabel() {
+		int label = 0;
+
+		for (int i = 1; i < outputs.length; i++) {
+			if (outputs[i] > outputs[label]) {
+				label = i;
+			}
+		}
+
+		return label;
+	}
+
+	/*
+	 * The time from submitting the frame to this result.
+	 */
+	public long getLatencyNanos() {
+		return latencyNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s %dx%d at (%d, %d): %d", source, region.width, region.height, region.x, region.y, getLabel());
+	}
+}
@@ -5,14 +5,10 @@ import java.io.ByteArrayInputStream;
 
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfByte;
-import org.opencv.core.MatOfRect;
 import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
-import org.opencv.core.Size;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
-import org.opencv.objdetect.CascadeClassifier;
-import org.opencv.objdetect.Objdetect;
 
 public class ImageProcessor {
 	public static Mat loadImage(String imagePath) {
@@ -27,19 +23,7 @@ public class ImageProcessor {
 
     public static void detectFace(String sourceImagePath, String targetImagePath) {
         Mat loadedImage = loadImage(sourceImagePath);
-        MatOfRect facesDetected = new MatOfRect();
-        CascadeClassifier cascadeClassifier = new CascadeClassifier();
-        int minFaceSize = Math.round(loadedImage.rows() * 0.1f);
-        cascadeClassifier.load("./src/main/resources/haarcascades/haarcascade_frontalface_alt.xml");
-        cascadeClassifier.detectMultiScale(loadedImage,
-                facesDetected,
-                1.1,
-                3,
-                Objdetect.CASCADE_SCALE_IMAGE,
-                new Size(minFaceSize, minFaceSize),
-                new Size()
-        );
-        Rect[] facesArray =  facesDetected.toArray();
+        Rect[] facesArray = FaceDetectorService.getDefault().detect(loadedImage);
         for(Rect face : facesArray) {
             Imgproc.rectangle(loadedImage, face.tl(), face.br(), new Scalar(0, 0, 255), 3 );
         }
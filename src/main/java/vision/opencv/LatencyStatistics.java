@@ -0,0 +1,108 @@
+package vision.opencv;
+
+import java.util.Arrays;
+
+/*
+ * Running latency figures: count, mean, minimum, maximum and percentiles.
+ * Percentiles come from a histogram with four buckets per power of two of
+ * nanoseconds, so they are the upper edge of a bucket and at most a quarter
+ * above the true value. Safe to record into from several threads.
+ */
+public class LatencyStatistics {
+	private static final int SUB_BUCKETS = 4;
+
+	private final long[] histogram = new long[64 * SUB_BUCKETS];
+	private long count;
+	private long totalNanos;
+	private long minNanos = Long.MAX_VALUE;
+	private long maxNanos;
+
+	public synchronized void record(long nanos) {
+		nanos = Math.max(0, nanos);
+
+		histogram[bucket(nanos)]++;
+		count++;
+		totalNanos += nanos;
+		minNanos = Math.min(minNanos, nanos);
+		maxNanos = Math.max(maxNanos, nanos);
+	}
+
+	/*
+	 * Values below SUB_BUCKETS have a bucket each; above that, the bucket is
+	 * the position of the highest bit and the two bits below it.
+	 */
+	private static int bucket(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int fraction = (int) (nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+
+		return (exponent - 1) * SUB_BUCKETS + fraction;
+	}
+
+	private static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int exponent = bucket / SUB_BUCKETS + 1;
+		long fraction = bucket % SUB_BUCKETS;
+
+		return ((SUB_BUCKETS + fraction + 1) << (exponent - 2)) - 1;
+	}
+
+	public synchronized long getCount() {
+		return count;
+	}
+
+	public synchronized double getAverageNanos() {
+		return count == 0 ? 0 : (double) totalNanos / count;
+	}
+
+	public synchronized long getMinNanos() {
+		return count == 0 ? 0 : minNanos;
+	}
+
+	public synchronized long getMaxNanos() {
+		return maxNanos;
+	}
+
+	/*
+	 * The latency below which the given fraction of the recordings fall,
+	 * for a fraction between 0 and 1.
+	 */
+	public synchronized long getPercentileNanos(double fraction) {
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(fraction * count));
+		long seen = 0;
+
+		for (int bucket = 0; bucket < histogram.length; bucket++) {
+			seen += histogram[bucket];
+
+			if (seen >= rank) {
+				return Math.min(maxNanos, Math.max(minNanos, upperBound(bucket)));
+			}
+		}
+
+		return maxNanos;
+	}
+
+	public synchronized void reset() {
+		Arrays.fill(histogram, 0);
+		count = 0;
+		totalNanos = 0;
+		minNanos = Long.MAX_VALUE;
+		maxNanos = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d calls, mean %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms", count, getAverageNanos() / 1e6,
+				getPercentileNanos(0.5) / 1e6, getPercentileNanos(0.99) / 1e6, maxNanos / 1e6);
+	}
+}
@@ -0,0 +1,194 @@
+package vision.opencv;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import vision.neuralnetwork.NeuralNetwork;
+
+/*
+ * Turns 8-bit Mats into network input without encoding them to an image
+ * format and back. Each image is resized and colour converted into
+ * scratch Mats only when it differs from the network's input shape, its
+ * pixels are copied out of the native buffer in one call, and they are
+ * scaled as ImageLoader scales them into a batch array. Everything is
+ * allocated up front, so converting and predicting allocate nothing per
+ * frame.
+ *
+ * Holds native scratch images and reuses its arrays, so a converter
+ * belongs to one thread.
+ */
+public class MatConverter implements AutoCloseable {
+	private static final double PIXEL_SCALE = 1.0 / 256.0;
+
+	private final int channels;
+	private final int height;
+	private final int width;
+	private final int inputSize;
+
+	private final Size size;
+	private final Mat resized = new Mat();
+	private final Mat converted = new Mat();
+	private final byte[] pixels;
+
+	private final double[] batch;
+	private final int batchSize;
+	private int count;
+
+	/*
+	 * A converter for a network with a one or three channel input shape,
+	 * holding up to batchSize images.
+	 */
+	public MatConverter(NeuralNetwork neuralNetwork, int batchSize) {
+		this(shape(neuralNetwork), batchSize);
+	}
+
+	private MatConverter(int[] shape, int batchSize) {
+		this(shape[0], shape[1], shape[2], batchSize);
+	}
+
+	public MatConverter(int channels, int height, int width, int batchSize) {
+		if (channels != 1 && channels != 3) {
+			throw new IllegalArgumentException("Input needs one or three channels, not " + channels);
+		}
+
+		this.channels = channels;
+		this.height = height;
+		this.width = width;
+		this.inputSize = channels * height * width;
+		this.batchSize = batchSize;
+
+		size = new Size(width, height);
+		pixels = new byte[inputSize];
+		batch = new double[batchSize * inputSize];
+	}
+
+	private static int[] shape(NeuralNetwork neuralNetwork) {
+		int[] shape = neuralNetwork.getInputShape();
+
+		if (shape == null) {
+			throw new IllegalArgumentException("Network has no input shape");
+		}
+
+		return shape;
+	}
+
+	/*
+	 * Writes the image as one input, channel by channel (CHW), into target
+	 * from offset.
+	 */
+	public void convert(Mat image, double[] target, int offset) {
+		if (image.depth() != CvType.CV_8U) {
+			throw new DetectorException("Only 8-bit images can be converted");
+		}
+
+		Mat source = image;
+
+		if (source.rows() != height || source.cols() != width) {
+			Imgproc.resize(source, resized, size, 0, 0, Imgproc.INTER_AREA);
+			source = resized;
+		}
+
+		int code = conversion(source.channels());
+
+		if (code >= 0) {
+			Imgproc.cvtColor(source, converted, code);
+			source = converted;
+		}
+
+		source.get(0, 0, pixels);
+
+		if (channels == 1) {
+			for (int i = 0; i < inputSize; i++) {
+				target[offset + i] = (pixels[i] & 0xFF) * PIXEL_SCALE;
+			}
+
+			return;
+		}
+
+		int area = height * width;
+
+		for (int i = 0; i < area; i++) {
+			for (int c = 0; c < channels; c++) {
+				target[offset + c * area + i] = (pixels[i * channels + c] & 0xFF) * PIXEL_SCALE;
+			}
+		}
+	}
+
+	/*
+	 * The colour conversion from an image with the given channels to the
+	 * input's, or -1 if they already agree.
+	 */
+	private int conversion(int imageChannels) {
+		if (imageChannels == channels) {
+			return -1;
+		}
+
+		switch (imageChannels) {
+		case 1:
+			return Imgproc.COLOR_GRAY2BGR;
+		case 3:
+			return Imgproc.COLOR_BGR2GRAY;
+		case 4:
+			return channels == 1 ? Imgproc.COLOR_BGRA2GRAY : Imgproc.COLOR_BGRA2BGR;
+		default:
+			throw new DetectorException("Unsupported image with " + imageChannels + " channels");
+		}
+	}
+
+	/*
+	 * Converts the image into the next free place in the batch. A region
+	 * of a frame (Mat.submat) is read in place, without copying the frame.
+	 */
+	public void add(Mat image) {
+		if (count == batchSize) {
+			throw new IllegalStateException("Batch is full");
+		}
+
+		convert(image, batch, count * inputSize);
+		count++;
+	}
+
+	/*
+	 * Runs the images added so far through the network into outputs,
+	 * which must hold getCount() outputs, and empties the batch.
+	 */
+	public void predict(NeuralNetwork neuralNetwork, double[] outputs) {
+		neuralNetwork.predictBatch(batch, count, outputs);
+		count = 0;
+	}
+
+	/*
+	 * The converted inputs, getCount() of them one after the other.
+	 */
+	public double[] getBatch() {
+		return batch;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public int getInputSize() {
+		return inputSize;
+	}
+
+	public boolean isFull() {
+		return count == batchSize;
+	}
+
+	public void clear() {
+		count = 0;
+	}
+
+	@Override
+	public void close() {
+		resized.release();
+		converted.release();
+	}
+}
@@ -0,0 +1,11 @@
+package vision.opencv;
+
+/*
+ * The stages of a FacePipeline, in the order a frame passes through them.
+ * DECODE reads image files, DETECT finds faces with a Haar cascade, CROP
+ * cuts each face out and scales it to the network's input, and INFERENCE
+ * runs the network on batches of faces.
+ */
+public enum PipelineStage {
+	DECODE, DETECT, CROP, INFERENCE
+}
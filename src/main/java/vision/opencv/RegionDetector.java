@@ -0,0 +1,22 @@
+package vision.opencv;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+/*
+ * Finds the regions of a frame a FacePipeline identifies. FaceDetector is
+ * the usual one; any other, such as a different model or fixed regions
+ * for tests, can take its place. A detector is used by one thread at a
+ * time.
+ */
+public interface RegionDetector extends AutoCloseable {
+
+	Rect[] detect(Mat image);
+
+	/*
+	 * Releases what the detector holds; by default nothing.
+	 */
+	@Override
+	default void close() {
+	}
+}
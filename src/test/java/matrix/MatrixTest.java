@@ -7,6 +7,8 @@ import java.util.Random;
 import org.junit.Test;
 
 import vision.matrix.Matrix;
+import vision.matrix.Precision;
+import vision.matrix.Window;
 
 public class MatrixTest {
 	private Random random = new Random();
@@ -86,6 +88,48 @@ public class MatrixTest {
 		}
 	}
 	
+	@Test
+	public void testSoftmaxLargeValues() {
+		Matrix m = new Matrix(3, 2, i -> 1000 + i);
+		Matrix result = m.softMax();
+
+		Matrix expected = new Matrix(3, 2, i -> i).softMax();
+
+		assertTrue(result.equals(expected));
+	}
+
+	@Test
+	public void testSoftMaxCrossEntropy() {
+		Matrix logits = new Matrix(5, 8, i -> 10 * random.nextGaussian());
+		Matrix expected = new Matrix(5, 8);
+
+		for (int col = 0; col < 8; col++) {
+			expected.set(random.nextInt(5), col, 1);
+		}
+
+		Matrix softMax = logits.softMax();
+		Matrix gradient = new Matrix(5, 8);
+		Matrix predictions = new Matrix(1, 8);
+
+		double loss = logits.softMaxCrossEntropy(expected, gradient, predictions);
+		double expectedLoss = softMax.apply((index, value) -> -expected.get(index) * Math.log(value)).sum();
+
+		assertTrue(Math.abs(loss - expectedLoss) < 0.000001 * Math.max(1, expectedLoss));
+		assertTrue(gradient.equals(softMax.apply((index, value) -> value - expected.get(index))));
+
+		for (int col = 0; col < 8; col++) {
+			int row = (int) predictions.get(col);
+
+			for (int other = 0; other < 5; other++) {
+				assertTrue(logits.get(row, col) >= logits.get(other, col));
+			}
+		}
+
+		double overflowLoss = logits.modify(value -> value * 1000).softMaxCrossEntropy(expected, null, null);
+
+		assertTrue(Double.isFinite(overflowLoss));
+	}
+
 	@Test
 	public void testSumColumns() {
 		Matrix m = new Matrix(4, 5, i -> i);
@@ -111,6 +155,197 @@ public class MatrixTest {
 		assertTrue(result.equals(expected));
 	}
 	
+	@Test
+	public void testMultiplyBlocked() {
+		int rows = 203;
+		int mid = 785;
+		int cols = 37;
+
+		Matrix m1 = new Matrix(rows, mid, i -> random.nextGaussian());
+		Matrix m2 = new Matrix(mid, cols, i -> random.nextGaussian());
+
+		Matrix expected = new Matrix(rows, cols);
+
+		expected.modify((row, col, value) -> {
+			double sum = 0;
+
+			for (int n = 0; n < mid; n++) {
+				sum += m1.get(row, n) * m2.get(n, col);
+			}
+
+			return sum;
+		});
+
+		Matrix result = m1.multiply(m2);
+
+		assertTrue(result.equals(expected));
+	}
+	
+	@Test
+	public void testMultiplyTransposeLeft() {
+		Matrix m1 = new Matrix(37, 203, i -> random.nextGaussian());
+		Matrix m2 = new Matrix(37, 11, i -> random.nextGaussian());
+		
+		Matrix expected = m1.transpose().multiply(m2);
+		Matrix result = m1.multiplyTransposeLeft(m2);
+		
+		assertTrue(result.getRows() == 203 && result.getCols() == 11);
+		assertTrue(result.equals(expected));
+	}
+	
+	@Test
+	public void testMultiplyTransposeRight() {
+		Matrix m1 = new Matrix(29, 33, i -> random.nextGaussian());
+		Matrix m2 = new Matrix(785, 33, i -> random.nextGaussian());
+		
+		Matrix expected = m1.multiply(m2.transpose());
+		Matrix result = m1.multiplyTransposeRight(m2);
+		
+		assertTrue(result.getRows() == 29 && result.getCols() == 785);
+		assertTrue(result.equals(expected));
+	}
+	
+	@Test
+	public void testFusedDenseRelu() {
+		Matrix weight = new Matrix(37, 203, i -> random.nextGaussian());
+		Matrix input = new Matrix(203, 11, i -> random.nextGaussian());
+		Matrix bias = new Matrix(37, 1, i -> random.nextGaussian());
+
+		Matrix expected = weight.multiply(input).modify((row, col, value) -> value + bias.get(row)).relu();
+		Matrix result = weight.multiplyAddBias(input, bias, true, new Matrix(37, 11));
+
+		assertTrue(result.equals(expected));
+
+		Matrix error = new Matrix(37, 11, i -> random.nextGaussian());
+
+		expected = weight.multiplyTransposeLeft(error).reluMask(input);
+		result = weight.multiplyTransposeLeftMasked(error, input, new Matrix(203, 11));
+
+		assertTrue(result.equals(expected));
+	}
+
+	@Test
+	public void testConvolution() {
+		int channels = 2;
+		int height = 7;
+		int width = 6;
+		int items = 3;
+		int filters = 4;
+
+		Window window = new Window(channels, height, width, 3, 2, 1);
+		Matrix images = new Matrix(channels * height * width, items, i -> random.nextGaussian());
+		Matrix weight = new Matrix(filters, window.getTaps(), i -> random.nextGaussian());
+
+		Matrix columns = images.im2col(window, new Matrix(window.getTaps(), window.getPositions() * items));
+		Matrix result = weight.multiply(columns).reshape(filters * window.getPositions(), items);
+
+		Matrix expected = new Matrix(filters * window.getPositions(), items);
+
+		expected.modify((row, col, value) -> {
+			int filter = row / window.getPositions();
+			int oy = row % window.getPositions() / window.getOutputWidth();
+			int ox = row % window.getOutputWidth();
+			double sum = 0;
+
+			for (int channel = 0; channel < channels; channel++) {
+				for (int ky = 0; ky < 3; ky++) {
+					for (int kx = 0; kx < 3; kx++) {
+						int y = oy * 2 + ky - 1;
+						int x = ox * 2 + kx - 1;
+
+						if (y >= 0 && y < height && x >= 0 && x < width) {
+							sum += weight.get(filter, (channel * 3 + ky) * 3 + kx) * images.get((channel * height + y) * width + x, col);
+						}
+					}
+				}
+			}
+
+			return sum;
+		});
+
+		assertTrue(result.equals(expected));
+
+		/*
+		 * col2im is the transpose of im2col: <im2col(x), c> == <x, col2im(c)>.
+		 */
+		Matrix other = new Matrix(columns.getRows(), columns.getCols(), i -> random.nextGaussian());
+		Matrix folded = other.col2im(window, new Matrix(images.getRows(), items));
+
+		double left = columns.apply((index, value) -> value * other.get(index)).sum();
+		double right = images.apply((index, value) -> value * folded.get(index)).sum();
+
+		assertEquals(left, right, 0.000001);
+	}
+
+	@Test
+	public void testMaxPool() {
+		Window window = new Window(2, 4, 6, 2, 2, 0);
+		Matrix images = new Matrix(2 * 4 * 6, 3, i -> random.nextGaussian());
+
+		Matrix result = images.maxPool(window, new Matrix(2 * 2 * 3, 3));
+
+		Matrix expected = new Matrix(2 * 2 * 3, 3);
+
+		expected.modify((row, col, value) -> {
+			int channel = row / 6;
+			int y = row % 6 / 3 * 2;
+			int x = row % 3 * 2;
+			double max = Double.NEGATIVE_INFINITY;
+
+			for (int ky = 0; ky < 2; ky++) {
+				for (int kx = 0; kx < 2; kx++) {
+					max = Math.max(max, images.get((channel * 4 + y + ky) * 6 + x + kx, col));
+				}
+			}
+
+			return max;
+		});
+
+		assertTrue(result.equals(expected));
+
+		Matrix error = new Matrix(2 * 2 * 3, 3, i -> random.nextGaussian());
+		Matrix inputError = error.maxPoolError(window, images, result, new Matrix(2 * 4 * 6, 3));
+
+		inputError.forEach((row, col, value) -> {
+			int pooled = row / 24 * 6 + row % 24 / 6 / 2 * 3 + row % 6 / 2;
+			boolean isMax = images.get(row, col) == result.get(pooled, col);
+
+			assertEquals(isMax ? error.get(pooled, col) : 0, value, 0);
+		});
+
+		assertEquals(error.sum(), inputError.sum(), 0.000001);
+	}
+
+	@Test
+	public void testFloatPrecision() {
+		Matrix m1 = new Matrix(31, 67, i -> random.nextGaussian());
+		Matrix m2 = new Matrix(67, 19, i -> random.nextGaussian());
+		Matrix bias = new Matrix(31, 1, i -> random.nextGaussian());
+		
+		Matrix expected = m1.multiply(m2).modify((row, col, value) -> value + bias.get(row)).relu().softMax();
+		Matrix result = m1.toPrecision(Precision.FLOAT).multiply(m2.toPrecision(Precision.FLOAT))
+				.modify((row, col, value) -> value + bias.get(row)).relu().softMax();
+		
+		assertTrue(result.getPrecision() == Precision.FLOAT);
+		
+		expected.setTolerance(0.0001);
+		assertTrue(expected.equals(result));
+	}
+
+	@Test
+	public void testArrayAccess() {
+		Matrix doubles = new Matrix(2, 3);
+		Matrix floats = new Matrix(2, 3, Precision.FLOAT);
+
+		doubles.get()[4] = 7;
+		floats.getFloats()[4] = 7;
+		floats.get()[5] = 9;
+
+		assertEquals(7, doubles.get(1, 1), 0);
+		assertEquals(7, floats.get(1, 1), 0);
+		assertEquals(0, floats.get(1, 2), 0);
+	}
+	
 	@Test
 	public void testMultipleSpeed() {
 		int rows = 500;
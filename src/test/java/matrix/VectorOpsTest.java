@@ -0,0 +1,148 @@
+package matrix;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import vision.matrix.ScalarOps;
+import vision.matrix.SimdOps;
+import vision.matrix.VectorOps;
+
+public class VectorOpsTest {
+	private static final double TOLERANCE = 0.0000000001;
+	private static final int LENGTH = 1003;
+
+	private Random random = new Random();
+
+	private VectorOps scalar = new ScalarOps();
+
+	private VectorOps simd() {
+		VectorOps ops = VectorOps.create();
+
+		assumeTrue("SIMD backend not available", ops instanceof SimdOps);
+
+		return ops;
+	}
+
+	private double[] randomArray(int length) {
+		double[] values = new double[length];
+
+		for (int i = 0; i < length; i++) {
+			values[i] = random.nextGaussian();
+		}
+
+		return values;
+	}
+
+	private void assertClose(double[] expected, double[] actual) {
+		assertTrue(expected.length == actual.length);
+
+		for (int i = 0; i < expected.length; i++) {
+			double scale = Math.max(1, Math.abs(expected[i]));
+
+			assertTrue(Math.abs(expected[i] - actual[i]) < TOLERANCE * scale);
+		}
+	}
+
+	@Test
+	public void testRelu() {
+		VectorOps simd = simd();
+		double[] src = randomArray(LENGTH);
+
+		double[] expected = new double[LENGTH];
+		double[] actual = new double[LENGTH];
+
+		scalar.relu(src, expected, LENGTH);
+		simd.relu(src, actual, LENGTH);
+
+		assertClose(expected, actual);
+	}
+
+	@Test
+	public void testReluMask() {
+		VectorOps simd = simd();
+		double[] error = randomArray(LENGTH);
+		double[] input = randomArray(LENGTH);
+
+		double[] expected = new double[LENGTH];
+		double[] actual = new double[LENGTH];
+
+		scalar.reluMask(error, input, expected, LENGTH);
+		simd.reluMask(error, input, actual, LENGTH);
+
+		assertClose(expected, actual);
+	}
+
+	@Test
+	public void testExp() {
+		VectorOps simd = simd();
+		double[] src = randomArray(LENGTH);
+
+		double[] expected = new double[LENGTH];
+		double[] actual = new double[LENGTH];
+
+		scalar.exp(src, expected, LENGTH);
+		simd.exp(src, actual, LENGTH);
+
+		assertClose(expected, actual);
+	}
+
+	@Test
+	public void testAxpy() {
+		VectorOps simd = simd();
+		double[] x = randomArray(LENGTH + 5);
+		double[] expected = randomArray(LENGTH + 3);
+		double[] actual = expected.clone();
+
+		scalar.axpy(-0.37, x, 5, expected, 3, LENGTH);
+		simd.axpy(-0.37, x, 5, actual, 3, LENGTH);
+
+		assertClose(expected, actual);
+	}
+
+	@Test
+	public void testSum() {
+		VectorOps simd = simd();
+		double[] values = randomArray(LENGTH);
+
+		double expected = scalar.sum(values, LENGTH);
+		double actual = simd.sum(values, LENGTH);
+
+		assertTrue(Math.abs(expected - actual) < TOLERANCE * LENGTH);
+	}
+
+	@Test
+	public void testFloatKernels() {
+		VectorOps simd = simd();
+		float[] x = new float[LENGTH];
+		float[] y = new float[LENGTH];
+
+		for (int i = 0; i < LENGTH; i++) {
+			x[i] = (float) random.nextGaussian();
+			y[i] = (float) random.nextGaussian();
+		}
+
+		float[] expected = new float[LENGTH];
+		float[] actual = new float[LENGTH];
+
+		scalar.relu(x, expected, LENGTH);
+		simd.relu(x, actual, LENGTH);
+		assertArrayEquals(expected, actual, 0);
+
+		scalar.exp(x, expected, LENGTH);
+		simd.exp(x, actual, LENGTH);
+		assertArrayEquals(expected, actual, 0.00001f);
+
+		System.arraycopy(y, 0, expected, 0, LENGTH);
+		System.arraycopy(y, 0, actual, 0, LENGTH);
+		scalar.axpy(0.5f, x, 0, expected, 0, LENGTH);
+		simd.axpy(0.5f, x, 0, actual, 0, LENGTH);
+		assertArrayEquals(expected, actual, 0.00001f);
+
+		assertTrue(Math.abs(scalar.sum(x, LENGTH) - simd.sum(x, LENGTH)) < 0.001);
+		assertTrue(Math.abs(scalar.dot(x, 3, y, 5, LENGTH - 5) - simd.dot(x, 3, y, 5, LENGTH - 5)) < 0.001);
+	}
+}
@@ -0,0 +1,113 @@
+package vision.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vision.matrix.Matrix;
+import vision.matrix.Precision;
+import vision.neuralnetwork.BatchResult;
+import vision.neuralnetwork.Engine;
+import vision.neuralnetwork.Transform;
+import vision.neuralnetwork.Workspace;
+
+/*
+ * One training step of a dense network, split into its passes. Layer sizes
+ * are given input first, so "784x200x10" is a 200 neuron hidden layer on
+ * MNIST digits, the network vision.App trained before it was convolutional.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+	@Param({ "784x200x10", "784x512x256x10" })
+	private String layers;
+
+	@Param({ "32", "256" })
+	private int batchSize;
+
+	@Param({ "DOUBLE", "FLOAT" })
+	private Precision precision;
+
+	private Engine engine;
+	private Workspace workspace;
+
+	private Matrix input;
+	private Matrix expected;
+	private BatchResult batchResult;
+
+	@Setup
+	public void setup() {
+		String[] dims = layers.split("x");
+		int inputSize = Integer.parseInt(dims[0]);
+		int outputSize = Integer.parseInt(dims[dims.length - 1]);
+
+		engine = new Engine();
+		engine.setSeed(0);
+		engine.setPrecision(precision);
+		engine.setScaleInitialWeights(0.2);
+
+		for (int i = 1; i < dims.length; i++) {
+			engine.add(Transform.DENSE, Integer.parseInt(dims[i]), inputSize);
+
+			if (i < dims.length - 1) {
+				engine.add(Transform.RELU);
+			}
+		}
+
+		engine.add(Transform.SOFTMAX);
+
+		Random random = new Random(0);
+
+		input = new Matrix(inputSize, batchSize, i -> random.nextDouble());
+		expected = new Matrix(outputSize, batchSize).modify((row, col, value) -> row == col % outputSize ? 1 : 0);
+
+		workspace = new Workspace();
+		batchResult = engine.runForwards(input, workspace);
+		engine.runBackwards(batchResult, expected, workspace);
+	}
+
+	@Benchmark
+	public BatchResult runForwards() {
+		return engine.runForwards(input, workspace);
+	}
+
+	@Benchmark
+	public BatchResult runBackwards() {
+		batchResult.getWeightErrors().clear();
+		engine.runBackwards(batchResult, expected, workspace);
+
+		return batchResult;
+	}
+
+	@Benchmark
+	public BatchResult adjust() {
+		engine.adjust(batchResult, 0.000001, workspace);
+
+		return batchResult;
+	}
+
+	@Benchmark
+	public BatchResult trainStep() {
+		BatchResult result = engine.runForwards(input, workspace);
+		engine.runBackwards(result, expected, workspace);
+		engine.adjust(result, 0.000001, workspace);
+
+		return result;
+	}
+}
@@ -0,0 +1,139 @@
+package vision.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vision.neuralnetwork.ExecutorStrategy;
+import vision.neuralnetwork.NeuralNetwork;
+import vision.neuralnetwork.TrainingArrays;
+import vision.neuralnetwork.Transform;
+import vision.neuralnetwork.Util;
+import vision.neuralnetwork.loader.BatchData;
+import vision.neuralnetwork.loader.Loader;
+import vision.neuralnetwork.loader.MetaData;
+import vision.neuralnetwork.loader.test.TestBatchData;
+import vision.neuralnetwork.loader.test.TestMetaData;
+
+/*
+ * One training epoch with a loader that blocks for a fixed time per batch,
+ * standing in for disk or network reads, under each executor strategy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutorStrategyBenchmark {
+	private static final int INPUT_SIZE = 784;
+	private static final int EXPECTED_SIZE = 10;
+	private static final int BATCH_SIZE = 32;
+	private static final int NUMBER_BATCHES = 128;
+
+	@Param({ "FIXED_POOL", "VIRTUAL_THREADS" })
+	private ExecutorStrategy strategy;
+
+	@Param({ "0", "2", "10" })
+	private int latencyMillis;
+
+	@Param({ "8", "32" })
+	private int threads;
+
+	private NeuralNetwork neuralNetwork;
+	private Loader loader;
+
+	@Setup
+	public void setup() {
+		neuralNetwork = new NeuralNetwork();
+		neuralNetwork.setSeed(0);
+		neuralNetwork.setScaleInitialWeights(0.2);
+		neuralNetwork.setEpochs(1);
+		neuralNetwork.setThreads(threads);
+		neuralNetwork.setExecutorStrategy(strategy);
+		neuralNetwork.clearListeners();
+
+		neuralNetwork.add(Transform.DENSE, 200, INPUT_SIZE);
+		neuralNetwork.add(Transform.RELU);
+		neuralNetwork.add(Transform.DENSE, EXPECTED_SIZE);
+		neuralNetwork.add(Transform.SOFTMAX);
+
+		loader = new LatencyLoader(latencyMillis);
+	}
+
+	@TearDown
+	public void tearDown() {
+		neuralNetwork.shutdown();
+	}
+
+	@Benchmark
+	public NeuralNetwork epoch() {
+		neuralNetwork.fit(loader, null);
+
+		return neuralNetwork;
+	}
+
+	private static class LatencyLoader implements Loader {
+		private TrainingArrays[] data = new TrainingArrays[NUMBER_BATCHES];
+		private MetaData metaData = new TestMetaData();
+		private AtomicInteger batch = new AtomicInteger();
+		private long latencyNanos;
+
+		LatencyLoader(int latencyMillis) {
+			latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+
+			for (int i = 0; i < NUMBER_BATCHES; i++) {
+				data[i] = Util.generateTrainingArrays(INPUT_SIZE, EXPECTED_SIZE, BATCH_SIZE);
+			}
+
+			metaData.setNumberItems(NUMBER_BATCHES * BATCH_SIZE);
+			metaData.setNumberBatches(NUMBER_BATCHES);
+			metaData.setInputSize(INPUT_SIZE);
+			metaData.setExpectedSize(EXPECTED_SIZE);
+		}
+
+		@Override
+		public MetaData open() {
+			batch.set(0);
+			return metaData;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public MetaData getMetaData() {
+			return metaData;
+		}
+
+		@Override
+		public BatchData readBatch() {
+			if (latencyNanos > 0) {
+				LockSupport.parkNanos(latencyNanos);
+			}
+
+			TrainingArrays arrays = data[batch.getAndIncrement() % NUMBER_BATCHES];
+
+			BatchData batchData = new TestBatchData();
+			batchData.setInputBatch(arrays.getInput());
+			batchData.setExpectedBatch(arrays.getOutput());
+			batchData.setItemsRead(BATCH_SIZE);
+
+			return batchData;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package vision.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nu.pattern.OpenCV;
+import vision.neuralnetwork.NeuralNetwork;
+import vision.neuralnetwork.Transform;
+import vision.opencv.FacePipeline;
+import vision.opencv.PipelineStage;
+
+/*
+ * One pass of every image in a directory through a FacePipeline with the
+ * application's 32x32 grey network. Point it at a directory of photos
+ * with -p directory=...; the stage timings are printed at the end.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FacePipelineBenchmark {
+	@Param({ "faces" })
+	private String directory;
+
+	@Param({ "1", "32" })
+	private int batchSize;
+
+	@Param({ "1", "2" })
+	private int detectThreads;
+
+	private ArrayList<String> files = new ArrayList<>();
+	private FacePipeline pipeline;
+	private LongAdder faces = new LongAdder();
+
+	@Setup
+	public void setup() {
+		OpenCV.loadLocally();
+
+		File[] entries = new File(directory).listFiles();
+
+		if (entries != null) {
+			for (File entry : entries) {
+				if (entry.getName().toLowerCase().matches(".*\\.(jpe?g|png|bmp|pgm|ppm)")) {
+					files.add(entry.getPath());
+				}
+			}
+		}
+
+		if (files.isEmpty()) {
+			throw new IllegalStateException("No images in " + new File(directory).getAbsolutePath());
+		}
+
+		NeuralNetwork neuralNetwork = new NeuralNetwork();
+		neuralNetwork.setInputShape(1, 32, 32);
+		neuralNetwork.add(Transform.CONV2D, 8, 5, 1, 2);
+		neuralNetwork.add(Transform.RELU);
+		neuralNetwork.add(Transform.MAXPOOL, 2);
+		neuralNetwork.add(Transform.CONV2D, 16, 3, 1, 1);
+		neuralNetwork.add(Transform.RELU);
+		neuralNetwork.add(Transform.MAXPOOL, 2);
+		neuralNetwork.add(Transform.DENSE, 10);
+		neuralNetwork.add(Transform.SOFTMAX);
+
+		pipeline = new FacePipeline(neuralNetwork);
+		pipeline.setThreads(PipelineStage.DECODE, 2);
+		pipeline.setThreads(PipelineStage.DETECT, detectThreads);
+		pipeline.setBatchSize(batchSize);
+		pipeline.setBatchDeadline(2, TimeUnit.MILLISECONDS);
+		pipeline.start(result -> faces.increment());
+	}
+
+	@TearDown
+	public void tearDown() {
+		System.out.println();
+		System.out.println(pipeline);
+
+		pipeline.close();
+	}
+
+	@Benchmark
+	public long directory() {
+		for (String file : files) {
+			pipeline.submit(file);
+		}
+
+		pipeline.drain();
+
+		return faces.sum();
+	}
+}
@@ -0,0 +1,87 @@
+package vision.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vision.identity.Gallery;
+import vision.identity.IvfIndex;
+import vision.identity.Match;
+
+/*
+ * Top-5 identity queries against a gallery of 128-value embeddings, ten
+ * per person: the exact packed scan against an IvfIndex with the square
+ * root of the gallery size as its list count and 8 probes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GalleryBenchmark {
+	private static final int DIMENSION = 128;
+
+	@Param({ "1000", "10000", "100000" })
+	private int size;
+
+	private Gallery gallery;
+	private IvfIndex index;
+	private float[] query;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(0);
+
+		gallery = new Gallery(DIMENSION);
+
+		for (int person = 0; person < size / 10; person++) {
+			float[] centre = randomEmbedding(random, 1);
+
+			for (int face = 0; face < 10; face++) {
+				float[] embedding = randomEmbedding(random, 0.3);
+
+				for (int i = 0; i < DIMENSION; i++) {
+					embedding[i] += centre[i];
+				}
+
+				gallery.enroll("person" + person, embedding);
+			}
+		}
+
+		index = gallery.buildIndex((int) Math.sqrt(size), 8, 0);
+		query = randomEmbedding(random, 1);
+	}
+
+	private static float[] randomEmbedding(Random random, double spread) {
+		float[] embedding = new float[DIMENSION];
+
+		for (int i = 0; i < DIMENSION; i++) {
+			embedding[i] = (float) (spread * random.nextGaussian());
+		}
+
+		return embedding;
+	}
+
+	@Benchmark
+	public List<Match> exact() {
+		return gallery.search(query, 5);
+	}
+
+	@Benchmark
+	public List<Match> approximate() {
+		return gallery.search(query, 5, index);
+	}
+}
@@ -0,0 +1,72 @@
+package vision.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vision.neuralnetwork.loader.BatchData;
+import vision.neuralnetwork.loader.image.IdxFiles;
+import vision.neuralnetwork.loader.image.ImageLoader;
+
+/*
+ * Decoding batches of 28x28 images from synthetic IDX files, cycling
+ * through the whole file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoaderBenchmark {
+	private static final int NUMBER_ITEMS = 10_000;
+
+	@Param({ "32", "256" })
+	private int batchSize;
+
+	private File imageFile;
+	private File labelFile;
+
+	private ImageLoader loader;
+	private int numberBatches;
+	private int batch;
+
+	@Setup
+	public void setup() throws IOException {
+		imageFile = File.createTempFile("images", ".idx3-ubyte");
+		labelFile = File.createTempFile("labels", ".idx1-ubyte");
+
+		IdxFiles.write(imageFile, labelFile, NUMBER_ITEMS, 28, 28);
+
+		loader = new ImageLoader(imageFile.getPath(), labelFile.getPath(), batchSize);
+		numberBatches = loader.open().getNumberBatches();
+	}
+
+	@TearDown
+	public void tearDown() {
+		loader.close();
+
+		imageFile.delete();
+		labelFile.delete();
+	}
+
+	@Benchmark
+	public BatchData readBatch() {
+		batch = (batch + 1) % numberBatches;
+
+		return loader.readBatch(batch);
+	}
+}
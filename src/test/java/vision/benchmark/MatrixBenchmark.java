@@ -0,0 +1,82 @@
+package vision.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vision.matrix.Matrix;
+import vision.matrix.Precision;
+
+/*
+ * Matrix operations at the shapes of a dense MNIST network, as vision.App
+ * trained before it was convolutional: a hidden layer of 200 neurons on
+ * 784 pixel inputs and a 10 class output layer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixBenchmark {
+
+	@Param({ "200x784", "10x200" })
+	private String layer;
+
+	@Param({ "32", "256" })
+	private int batchSize;
+
+	@Param({ "DOUBLE", "FLOAT" })
+	private Precision precision;
+
+	private Matrix weights;
+	private Matrix input;
+	private Matrix output;
+	private Matrix result;
+
+	@Setup
+	public void setup() {
+		String[] dims = layer.split("x");
+
+		int neurons = Integer.parseInt(dims[0]);
+		int inputSize = Integer.parseInt(dims[1]);
+
+		Random random = new Random(0);
+
+		weights = new Matrix(neurons, inputSize, i -> random.nextGaussian()).toPrecision(precision);
+		input = new Matrix(inputSize, batchSize, i -> random.nextDouble()).toPrecision(precision);
+		output = new Matrix(neurons, batchSize, i -> random.nextGaussian()).toPrecision(precision);
+		result = new Matrix(neurons, batchSize, precision);
+	}
+
+	@Benchmark
+	public Matrix multiply() {
+		return weights.multiply(input, result);
+	}
+
+	@Benchmark
+	public Matrix transpose() {
+		return weights.transpose();
+	}
+
+	@Benchmark
+	public Matrix softMax() {
+		return output.softMax(result);
+	}
+
+	@Benchmark
+	public Matrix sumColumns() {
+		return output.sumColumns();
+	}
+}
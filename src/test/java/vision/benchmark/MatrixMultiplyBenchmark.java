@@ -0,0 +1,89 @@
+package vision.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vision.matrix.Gemm;
+
+/*
+ * Compares the blocked GEMM kernel with the original triple loop from
+ * Matrix.multiply. Shapes are (rows x depth x cols) of the products that
+ * a 784x200x10 dense network performs with a batch size of 32, as
+ * vision.App did before it was convolutional.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixMultiplyBenchmark {
+
+	@Param({ "200x784x32", "10x200x32", "200x10x32", "200x32x784", "10x32x200" })
+	private String shape;
+
+	private int m;
+	private int n;
+	private int k;
+
+	private double[] a;
+	private double[] b;
+
+	@Setup
+	public void setup() {
+		String[] dims = shape.split("x");
+
+		m = Integer.parseInt(dims[0]);
+		k = Integer.parseInt(dims[1]);
+		n = Integer.parseInt(dims[2]);
+
+		Random random = new Random(0);
+
+		a = new double[m * k];
+		b = new double[k * n];
+
+		for (int i = 0; i < a.length; i++) {
+			a[i] = random.nextGaussian();
+		}
+
+		for (int i = 0; i < b.length; i++) {
+			b[i] = random.nextGaussian();
+		}
+	}
+
+	@Benchmark
+	public double[] naive() {
+		double[] result = new double[m * n];
+
+		for (int row = 0; row < m; row++) {
+			for (int p = 0; p < k; p++) {
+				for (int col = 0; col < n; col++) {
+					result[row * n + col] += a[row * k + p] * b[col + p * n];
+				}
+			}
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	public double[] blocked() {
+		double[] result = new double[m * n];
+
+		Gemm.multiply(a, b, result, m, n, k);
+
+		return result;
+	}
+}
@@ -0,0 +1,116 @@
+package vision.benchmark;
+
+import java.io.File;
+
+import vision.matrix.Precision;
+import vision.neuralnetwork.NeuralNetwork;
+import vision.neuralnetwork.Transform;
+import vision.neuralnetwork.loader.BatchData;
+import vision.neuralnetwork.loader.MetaData;
+import vision.neuralnetwork.loader.image.ImageLoader;
+
+/*
+ * Trains a dense MNIST network with a 200 neuron hidden layer once in
+ * double and once in float precision from the same seed, and reports
+ * training throughput and test accuracy.
+ */
+public class PrecisionBenchmark {
+
+	public static void main(String[] args) {
+		if (args.length == 0 || !new File(args[0]).isDirectory()) {
+			System.out.println("Usage: [app] <UNKNOWN DATA DIRECTORY> [epochs]");
+			return;
+		}
+
+		String directory = args[0];
+		int epochs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+		final String trainImages = String.format("%s%s%s", directory, File.separator, "train-images.idx3-ubyte");
+		final String trainLabels = String.format("%s%s%s", directory, File.separator, "train-labels.idx1-ubyte");
+		final String testImages = String.format("%s%s%s", directory, File.separator, "t10k-images.idx3-ubyte");
+		final String testLabels = String.format("%s%s%s", directory, File.separator, "t10k-labels.idx1-ubyte");
+
+		ImageLoader trainLoader = new ImageLoader(trainImages, trainLabels, 32);
+		ImageLoader testLoader = new ImageLoader(testImages, testLabels, 32);
+
+		double[] throughput = new double[Precision.values().length];
+		double[] accuracy = new double[Precision.values().length];
+
+		for (Precision precision : Precision.values()) {
+			MetaData metaData = trainLoader.open();
+			int inputSize = metaData.getInputSize();
+			int outputSize = metaData.getExpectedSize();
+			int numberItems = metaData.getNumberItems();
+			trainLoader.close();
+
+			NeuralNetwork neuralNetwork = new NeuralNetwork();
+
+			neuralNetwork.setSeed(1);
+			neuralNetwork.setPrecision(precision);
+			neuralNetwork.setScaleInitialWeights(0.2);
+			neuralNetwork.setThreads(Runtime.getRuntime().availableProcessors());
+			neuralNetwork.setEpochs(epochs);
+			neuralNetwork.setLearningRate(0.02, 0.001);
+
+			neuralNetwork.add(Transform.DENSE, 200, inputSize);
+			neuralNetwork.add(Transform.RELU);
+			neuralNetwork.add(Transform.DENSE, outputSize);
+			neuralNetwork.add(Transform.SOFTMAX);
+
+			System.out.println("Training with " + precision + " precision");
+
+			long start = System.nanoTime();
+			neuralNetwork.fit(trainLoader, null);
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			throughput[precision.ordinal()] = epochs * numberItems / seconds;
+			accuracy[precision.ordinal()] = measureAccuracy(neuralNetwork, testLoader);
+		}
+
+		System.out.println();
+
+		for (Precision precision : Precision.values()) {
+			System.out.printf("%-6s %10.0f samples/s  %6.2f%% correct\n", precision,
+					throughput[precision.ordinal()], accuracy[precision.ordinal()]);
+		}
+
+		System.out.printf("Float speedup: %.2fx, accuracy difference: %+.2f%%\n",
+				throughput[Precision.FLOAT.ordinal()] / throughput[Precision.DOUBLE.ordinal()],
+				accuracy[Precision.FLOAT.ordinal()] - accuracy[Precision.DOUBLE.ordinal()]);
+	}
+
+	private static double measureAccuracy(NeuralNetwork neuralNetwork, ImageLoader loader) {
+		MetaData metaData = loader.open();
+
+		int expectedSize = metaData.getExpectedSize();
+		int correct = 0;
+
+		for (int i = 0; i < metaData.getNumberBatches(); i++) {
+			BatchData batchData = loader.readBatch();
+			int[] predicted = neuralNetwork.classifyBatch(batchData.getInputBatch(), batchData.getItemsRead());
+
+			for (int item = 0; item < batchData.getItemsRead(); item++) {
+				if (predicted[item] == argmax(batchData.getExpectedBatch(), item * expectedSize, expectedSize)) {
+					correct++;
+				}
+			}
+		}
+
+		int numberItems = metaData.getNumberItems();
+		loader.close();
+
+		return 100.0 * correct / numberItems;
+	}
+
+	private static int argmax(double[] values, int offset, int length) {
+		int maxIndex = 0;
+
+		for (int i = 1; i < length; i++) {
+			if (values[offset + i] > values[offset + maxIndex]) {
+				maxIndex = i;
+			}
+		}
+
+		return maxIndex;
+	}
+}
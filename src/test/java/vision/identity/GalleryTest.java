@@ -0,0 +1,207 @@
+package vision.identity;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import vision.neuralnetwork.NeuralNetwork;
+import vision.neuralnetwork.Transform;
+
+public class GalleryTest {
+	private Random random = new Random();
+
+	private float[] randomEmbedding(int dimension) {
+		float[] embedding = new float[dimension];
+
+		for (int i = 0; i < dimension; i++) {
+			embedding[i] = (float) random.nextGaussian();
+		}
+
+		return embedding;
+	}
+
+	/*
+	 * A point near the centre, as faces of the same person would be.
+	 */
+	private float[] near(float[] centre, double spread) {
+		float[] embedding = centre.clone();
+
+		for (int i = 0; i < embedding.length; i++) {
+			embedding[i] += (float) (spread * random.nextGaussian());
+		}
+
+		return embedding;
+	}
+
+	private static double cosine(float[] a, float[] b) {
+		double dot = 0;
+		double aa = 0;
+		double bb = 0;
+
+		for (int i = 0; i < a.length; i++) {
+			dot += a[i] * b[i];
+			aa += a[i] * a[i];
+			bb += b[i] * b[i];
+		}
+
+		return dot / Math.sqrt(aa * bb);
+	}
+
+	@Test
+	public void testSearchMatchesBruteForce() {
+		int dimension = 67;
+		int persons = 30;
+
+		Gallery gallery = new Gallery(dimension);
+		float[][] embeddings = new float[persons * 3][];
+
+		for (int i = 0; i < embeddings.length; i++) {
+			embeddings[i] = randomEmbedding(dimension);
+			gallery.enroll("person" + i % persons, embeddings[i]);
+		}
+
+		assertEquals(embeddings.length, gallery.getSize());
+		assertEquals(persons, gallery.getPersonCount());
+
+		float[] query = randomEmbedding(dimension);
+		double[] best = new double[persons];
+
+		for (int i = 0; i < embeddings.length; i++) {
+			best[i % persons] = Math.max(i < persons ? -1 : best[i % persons], cosine(query, embeddings[i]));
+		}
+
+		List<Match> matches = gallery.search(query, 5);
+
+		assertEquals(5, matches.size());
+
+		for (int rank = 0; rank < matches.size(); rank++) {
+			Match match = matches.get(rank);
+			int person = Integer.parseInt(match.getPerson().substring("person".length()));
+			int better = 0;
+
+			for (double other : best) {
+				if (other > best[person] + 0.00001) {
+					better++;
+				}
+			}
+
+			assertEquals(rank, better);
+			assertEquals(best[person], match.getSimilarity(), 0.00001);
+		}
+	}
+
+	@Test
+	public void testRemove() {
+		Gallery gallery = new Gallery(8);
+		float[] alice = randomEmbedding(8);
+		float[] bob = randomEmbedding(8);
+
+		gallery.enroll("alice", alice);
+		gallery.enroll("bob", bob);
+		gallery.enroll("alice", near(alice, 0.1));
+
+		assertEquals("alice", gallery.search(alice, 1).get(0).getPerson());
+		assertTrue(gallery.remove("alice"));
+		assertFalse(gallery.remove("alice"));
+
+		List<Match> matches = gallery.search(alice, 5);
+
+		assertEquals(1, gallery.getSize());
+		assertEquals(1, matches.size());
+		assertEquals("bob", matches.get(0).getPerson());
+	}
+
+	@Test
+	public void testIndexRecall() {
+		int dimension = 32;
+		int persons = 400;
+
+		Gallery gallery = new Gallery(dimension);
+		float[][] centres = new float[persons][];
+
+		for (int person = 0; person < persons; person++) {
+			centres[person] = randomEmbedding(dimension);
+
+			for (int face = 0; face < 5; face++) {
+				gallery.enroll("person" + person, near(centres[person], 0.3));
+			}
+		}
+
+		IvfIndex index = gallery.buildIndex(40, 6, 17);
+
+		assertTrue(gallery.isIndexed(index));
+		assertEquals(40, index.getLists());
+
+		int agreed = 0;
+
+		for (int person = 0; person < persons; person++) {
+			float[] query = near(centres[person], 0.3);
+
+			String exact = gallery.search(query, 1).get(0).getPerson();
+			String approximate = gallery.search(query, 1, index).get(0).getPerson();
+
+			if (exact.equals(approximate)) {
+				agreed++;
+			}
+		}
+
+		assertTrue("Only " + agreed + " of " + persons + " approximate searches agreed", agreed >= persons * 0.95);
+
+		/*
+		 * Faces enrolled after the index was built are still found, and a
+		 * removal retires the index.
+		 */
+		float[] newcomer = randomEmbedding(dimension);
+		gallery.enroll("newcomer", newcomer);
+
+		assertEquals("newcomer", gallery.search(newcomer, 1, index).get(0).getPerson());
+
+		gallery.remove("person0");
+
+		assertFalse(gallery.isIndexed(index));
+		assertEquals("person1", gallery.search(centres[1], 1, index).get(0).getPerson());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIndexNeedsLists() {
+		Gallery gallery = new Gallery(8);
+		gallery.enroll("alice", randomEmbedding(8));
+
+		gallery.buildIndex(0, 1, 0);
+	}
+
+	@Test
+	public void testFaceRecognizer() {
+		NeuralNetwork neuralNetwork = new NeuralNetwork();
+		neuralNetwork.setSeed(5);
+		neuralNetwork.add(Transform.DENSE, 16, 12);
+		neuralNetwork.add(Transform.DENSE, 4);
+		neuralNetwork.add(Transform.SOFTMAX);
+
+		FaceRecognizer recognizer = new FaceRecognizer(neuralNetwork);
+		recognizer.setApproximateSearch(10, 0, 2);
+
+		double[][] faces = new double[12][12];
+
+		for (int person = 0; person < faces.length; person++) {
+			for (int i = 0; i < 12; i++) {
+				faces[person][i] = random.nextGaussian();
+			}
+
+			recognizer.enroll("person" + person, faces[person]);
+		}
+
+		assertEquals(16, recognizer.getGallery().getDimension());
+
+		for (int person = 0; person < faces.length; person++) {
+			List<Match> matches = recognizer.identify(faces[person], 3);
+
+			assertEquals(3, matches.size());
+			assertEquals("person" + person, matches.get(0).getPerson());
+			assertEquals(1, matches.get(0).getSimilarity(), 0.0001);
+		}
+	}
+}
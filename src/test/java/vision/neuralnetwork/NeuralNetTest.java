@@ -1,12 +1,27 @@
 package vision.neuralnetwork;
 
 import static org.junit.Assert.*;
-
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
 import vision.matrix.Matrix;
+import vision.matrix.Precision;
 import vision.neuralnetwork.Approximator;
 import vision.neuralnetwork.BatchResult;
 import vision.neuralnetwork.Engine;
@@ -14,6 +29,11 @@ import vision.neuralnetwork.LossFunctions;
 import vision.neuralnetwork.RunningAverages;
 import vision.neuralnetwork.Transform;
 import vision.neuralnetwork.Util;
+import vision.neuralnetwork.loader.BatchData;
+import vision.neuralnetwork.loader.Loader;
+import vision.neuralnetwork.loader.MetaData;
+import vision.neuralnetwork.loader.test.TestBatchData;
+import vision.neuralnetwork.loader.test.TestMetaData;
 
 public class NeuralNetTest {
 	private Random random = new Random();
@@ -55,6 +75,668 @@ public class NeuralNetTest {
 		}
 	}
 
+	private Loader createFixedLoader(int inputSize, int expectedSize, int numberBatches, int batchSize) {
+		TrainingArrays[] data = new TrainingArrays[numberBatches];
+		
+		for (int i = 0; i < numberBatches; i++) {
+			data[i] = Util.generateTrainingArrays(inputSize, expectedSize, batchSize);
+		}
+		
+		MetaData metaData = new TestMetaData();
+		metaData.setNumberItems(numberBatches * batchSize);
+		metaData.setNumberBatches(numberBatches);
+		metaData.setInputSize(inputSize);
+		metaData.setExpectedSize(expectedSize);
+		
+		return new Loader() {
+			private int batch = 0;
+			
+			public MetaData open() {
+				batch = 0;
+				return metaData;
+			}
+			
+			public void close() {
+			}
+			
+			public MetaData getMetaData() {
+				return metaData;
+			}
+			
+			public synchronized BatchData readBatch() {
+				BatchData batchData = new TestBatchData();
+				batchData.setInputBatch(data[batch].getInput());
+				batchData.setExpectedBatch(data[batch].getOutput());
+				
+				batchData.setItemsRead(batchSize);
+				batch++;
+				
+				return batchData;
+			}
+		};
+	}
+	
+	/*
+	 * Delegates to the loader, running the hook on the reading thread
+	 * before each batch is read.
+	 */
+	private Loader withReadHook(Loader loader, Runnable hook) {
+		return new Loader() {
+			public MetaData open() {
+				return loader.open();
+			}
+
+			public void close() {
+				loader.close();
+			}
+
+			public MetaData getMetaData() {
+				return loader.getMetaData();
+			}
+
+			public BatchData readBatch() {
+				hook.run();
+
+				return loader.readBatch();
+			}
+		};
+	}
+
+	private NeuralNetwork createDataParallelNetwork(int inputSize, int expectedSize) {
+		NeuralNetwork neuralNetwork = new NeuralNetwork();
+		
+		neuralNetwork.setSeed(42);
+		neuralNetwork.setDataParallel(true);
+		neuralNetwork.setThreads(5);
+		neuralNetwork.setEpochs(2);
+		neuralNetwork.add(Transform.DENSE, 20, inputSize);
+		neuralNetwork.add(Transform.RELU);
+		neuralNetwork.add(Transform.DENSE, expectedSize);
+		neuralNetwork.add(Transform.SOFTMAX);
+		
+		return neuralNetwork;
+	}
+	
+	@Test
+	public void testDataParallelReproducible() {
+		int inputSize = 10;
+		int expectedSize = 3;
+		
+		Loader loader = createFixedLoader(inputSize, expectedSize, 23, 8);
+		
+		NeuralNetwork network1 = createDataParallelNetwork(inputSize, expectedSize);
+		NeuralNetwork network2 = createDataParallelNetwork(inputSize, expectedSize);
+		
+		network1.fit(loader, null);
+		network2.fit(loader, null);
+		
+		double[] input = new double[inputSize];
+		
+		for (int i = 0; i < inputSize; i++) {
+			input[i] = random.nextGaussian();
+		}
+		
+		double[] output1 = network1.predict(input);
+		double[] output2 = network2.predict(input);
+		
+		for (int i = 0; i < expectedSize; i++) {
+			assertTrue(output1[i] == output2[i]);
+		}
+	}
+	
+	@Test
+	public void testFloatEngine() {
+		Engine engine = new Engine();
+		engine.add(Transform.DENSE, 30, 50);
+		engine.add(Transform.RELU);
+		engine.add(Transform.DENSE, 4);
+		engine.add(Transform.SOFTMAX);
+		
+		var tm = Util.generateTrainingMatrixes(50, 4, 16);
+		
+		Matrix doubleOutput = engine.runForwards(tm.getInput()).getOutput();
+		
+		engine.setPrecision(Precision.FLOAT);
+		
+		BatchResult batchResult = engine.runForwards(tm.getInput());
+		Matrix floatOutput = batchResult.getOutput();
+		
+		assertTrue(floatOutput.getPrecision() == Precision.FLOAT);
+		
+		doubleOutput.setTolerance(0.0001);
+		assertTrue(doubleOutput.equals(floatOutput));
+		
+		engine.runBackwards(batchResult, tm.getOutput());
+		engine.adjust(batchResult, 0.01);
+		engine.evaluate(batchResult, tm.getOutput());
+		
+		assertTrue(Double.isFinite(batchResult.getLoss()));
+	}
+
+	@Test
+	public void testFitAfterPrecisionChange() {
+		Loader loader = createFixedLoader(10, 3, 6, 8);
+
+		NeuralNetwork neuralNetwork = new NeuralNetwork();
+		neuralNetwork.setThreads(2);
+		neuralNetwork.setEpochs(2);
+		neuralNetwork.add(Transform.DENSE, 20, 10);
+		neuralNetwork.add(Transform.RELU);
+		neuralNetwork.add(Transform.DENSE, 3);
+		neuralNetwork.add(Transform.SOFTMAX);
+		neuralNetwork.clearListeners();
+
+		neuralNetwork.fit(loader, null);
+
+		// The compute threads and their workspaces carry over to the next fit.
+		neuralNetwork.setPrecision(Precision.FLOAT);
+		neuralNetwork.fit(loader, null);
+
+		assertEquals(Precision.FLOAT, neuralNetwork.getEngine().getWeights().get(0).getPrecision());
+
+		for (double output : neuralNetwork.predict(new double[10])) {
+			assertTrue(Double.isFinite(output));
+		}
+	}
+
+	@Test
+	public void testOptimizers() {
+		var tm = Util.generateTrainingMatrixes(50, 4, 32);
+		double[] learningRates = {0.1, 0.05, 0.05, 0.005, 0.01};
+
+		for (Optimizer optimizer : Optimizer.values()) {
+			for (Precision precision : Precision.values()) {
+				Engine engine = new Engine();
+				engine.setSeed(7);
+				engine.setScaleInitialWeights(0.2);
+				engine.setPrecision(precision);
+				engine.setOptimizer(optimizer);
+				engine.add(Transform.DENSE, 30, 50);
+				engine.add(Transform.RELU);
+				engine.add(Transform.DENSE, 4);
+				engine.add(Transform.SOFTMAX);
+
+				Workspace workspace = new Workspace();
+				double initialLoss = 0;
+
+				for (int i = 0; i < 100; i++) {
+					BatchResult batchResult = engine.runForwards(tm.getInput(), workspace);
+					engine.runBackwards(batchResult, tm.getOutput(), workspace);
+					engine.adjust(batchResult, learningRates[optimizer.ordinal()], workspace);
+
+					if (i == 0) {
+						initialLoss = batchResult.getLoss();
+					}
+				}
+
+				BatchResult batchResult = engine.runForwards(tm.getInput(), workspace);
+				engine.evaluate(batchResult, tm.getOutput(), workspace);
+
+				assertTrue(optimizer + " " + precision, batchResult.getLoss() < 0.5 * initialLoss);
+			}
+		}
+	}
+
+	@Test
+	public void testLearningRateSchedules() {
+		NeuralNetwork neuralNetwork = new NeuralNetwork();
+		neuralNetwork.setEpochs(10);
+		neuralNetwork.setLearningRate(0.1, 0.001);
+
+		for (LearningRateSchedule schedule : LearningRateSchedule.values()) {
+			neuralNetwork.setLearningRateSchedule(schedule);
+
+			assertEquals(0.1, neuralNetwork.getLearningRate(0), 1e-12);
+
+			for (int epoch = 1; epoch < 10; epoch++) {
+				assertTrue(neuralNetwork.getLearningRate(epoch) <= neuralNetwork.getLearningRate(epoch - 1));
+				assertTrue(neuralNetwork.getLearningRate(epoch) > 0.001);
+			}
+		}
+	}
+
+	@Test
+	public void testWorkspaceTraining() {
+		Engine engine = new Engine();
+		engine.add(Transform.DENSE, 30, 50);
+		engine.add(Transform.RELU);
+		engine.add(Transform.DENSE, 4);
+		engine.add(Transform.SOFTMAX);
+
+		var tm = Util.generateTrainingMatrixes(50, 4, 16);
+		Workspace workspace = new Workspace();
+
+		BatchResult expectedResult = engine.runForwards(tm.getInput());
+		BatchResult batchResult = engine.runForwards(tm.getInput(), workspace);
+
+		assertTrue(expectedResult.getOutput().equals(batchResult.getOutput()));
+
+		engine.runBackwards(expectedResult, tm.getOutput());
+		engine.runBackwards(batchResult, tm.getOutput(), workspace);
+
+		for (int i = 0; i < 2; i++) {
+			assertTrue(expectedResult.getWeightErrors().get(i).equals(batchResult.getWeightErrors().get(i)));
+		}
+	}
+
+	@Test
+	public void testWorkspaceAllocationFree() {
+		var threadBean = ManagementFactory.getThreadMXBean();
+		assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+
+		var allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+		assumeTrue(allocationBean.isThreadAllocatedMemoryEnabled());
+
+		Engine engine = new Engine();
+		engine.add(Transform.DENSE, 20, 10);
+		engine.add(Transform.RELU);
+		engine.add(Transform.DENSE, 4);
+		engine.add(Transform.SOFTMAX);
+
+		var tm = Util.generateTrainingMatrixes(10, 4, 8);
+		Workspace workspace = new Workspace();
+
+		int warmupSteps = 20000;
+		int steps = 2000;
+		int windows = 5;
+
+		for (int i = 0; i < warmupSteps; i++) {
+			trainStep(engine, workspace, tm.getInput(), tm.getOutput());
+		}
+
+		/*
+		 * Vector kernels allocate until the JIT has compiled their callers,
+		 * which a busy compiler queue can put off past the warmup, so the
+		 * quietest of a few windows is measured. Allocation by the step
+		 * itself shows up in every one of them.
+		 */
+		long bytesPerStep = Long.MAX_VALUE;
+
+		for (int window = 0; window < windows; window++) {
+			long before = allocationBean.getCurrentThreadAllocatedBytes();
+
+			for (int i = 0; i < steps; i++) {
+				trainStep(engine, workspace, tm.getInput(), tm.getOutput());
+			}
+
+			bytesPerStep = Math.min(bytesPerStep, (allocationBean.getCurrentThreadAllocatedBytes() - before) / steps);
+		}
+
+		assertTrue("Training step allocated " + bytesPerStep + " bytes", bytesPerStep < 16);
+	}
+
+	@Test
+	public void testSaveLoad() throws IOException {
+		for (Precision precision : Precision.values()) {
+			NeuralNetwork neuralNetwork = new NeuralNetwork();
+			neuralNetwork.setPrecision(precision);
+			neuralNetwork.setEpochs(7);
+			neuralNetwork.setLearningRate(0.05, 0.002);
+			neuralNetwork.add(Transform.DENSE, 20, 10);
+			neuralNetwork.add(Transform.RELU);
+			neuralNetwork.add(Transform.DENSE, 3);
+			neuralNetwork.add(Transform.SOFTMAX);
+
+			File file = File.createTempFile("model", ".net");
+			file.deleteOnExit();
+
+			neuralNetwork.save(file.getPath());
+			NeuralNetwork loaded = NeuralNetwork.load(file.getPath());
+
+			assertEquals(neuralNetwork.toString(), loaded.toString());
+
+			double[] input = new double[10];
+
+			for (int i = 0; i < input.length; i++) {
+				input[i] = random.nextGaussian();
+			}
+
+			assertArrayEquals(neuralNetwork.predict(input), loaded.predict(input), 0);
+		}
+	}
+
+	private NeuralNetwork createCheckpointedNetwork(int inputSize, int expectedSize) {
+		NeuralNetwork neuralNetwork = new NeuralNetwork();
+
+		neuralNetwork.setSeed(11);
+		neuralNetwork.setThreads(1);
+		neuralNetwork.setEpochs(4);
+		neuralNetwork.setLearningRate(0.01, 0.001);
+		neuralNetwork.setLearningRateSchedule(LearningRateSchedule.COSINE);
+		neuralNetwork.setOptimizer(Optimizer.ADAM);
+		neuralNetwork.add(Transform.DENSE, 20, inputSize);
+		neuralNetwork.add(Transform.RELU);
+		neuralNetwork.add(Transform.DENSE, expectedSize);
+		neuralNetwork.add(Transform.SOFTMAX);
+		neuralNetwork.clearListeners();
+
+		return neuralNetwork;
+	}
+
+	@Test
+	public void testCheckpointResume() throws IOException {
+		Loader loader = createFixedLoader(30, 4, 10, 16);
+
+		NeuralNetwork uninterrupted = createCheckpointedNetwork(30, 4);
+		uninterrupted.fit(loader, null);
+
+		File file = File.createTempFile("checkpoint", ".net");
+		file.deleteOnExit();
+
+		NeuralNetwork interrupted = createCheckpointedNetwork(30, 4);
+		interrupted.setCheckpoint(file.getPath(), 1);
+		interrupted.addListener(new TrainingListener() {
+			@Override
+			public void epochCompleted(int epoch) {
+				if (epoch == 1) {
+					throw new IllegalStateException("Crash");
+				}
+			}
+		});
+
+		try {
+			interrupted.fit(loader, null);
+			fail("Training should have crashed");
+		} catch (IllegalStateException e) {
+		}
+
+		NeuralNetwork resumed = NeuralNetwork.load(file.getPath());
+		assertEquals(2, resumed.getCompletedEpochs());
+
+		resumed.clearListeners();
+		resumed.fit(loader, null);
+
+		assertEquals(4, resumed.getCompletedEpochs());
+
+		for (int i = 0; i < 2; i++) {
+			assertTrue(uninterrupted.getEngine().getWeights().get(i).equals(resumed.getEngine().getWeights().get(i)));
+		}
+	}
+
+	@Test
+	public void testEarlyStopping() {
+		NeuralNetwork neuralNetwork = createCheckpointedNetwork(30, 4);
+		neuralNetwork.setEpochs(10);
+		neuralNetwork.setEarlyStopping(2, 1000);
+
+		List<Integer> epochs = new ArrayList<>();
+
+		neuralNetwork.addListener(new TrainingListener() {
+			@Override
+			public void epochCompleted(int epoch) {
+				epochs.add(epoch);
+			}
+		});
+
+		neuralNetwork.fit(createFixedLoader(30, 4, 4, 16), createFixedLoader(30, 4, 2, 16));
+
+		assertEquals(List.of(0, 1, 2), epochs);
+		assertEquals(10, neuralNetwork.getCompletedEpochs());
+	}
+
+	@Test
+	public void testEarlyStoppingResume() throws IOException {
+		File file = File.createTempFile("checkpoint", ".net");
+		file.deleteOnExit();
+
+		NeuralNetwork interrupted = createCheckpointedNetwork(30, 4);
+		interrupted.setEpochs(10);
+		interrupted.setEarlyStopping(2, 1000);
+		interrupted.setCheckpoint(file.getPath(), 1);
+		interrupted.addListener(new TrainingListener() {
+			@Override
+			public void epochCompleted(int epoch) {
+				if (epoch == 1) {
+					throw new IllegalStateException("Crash");
+				}
+			}
+		});
+
+		try {
+			interrupted.fit(createFixedLoader(30, 4, 4, 16), createFixedLoader(30, 4, 2, 16));
+			fail("Training should have crashed");
+		} catch (IllegalStateException e) {
+		}
+
+		NeuralNetwork resumed = NeuralNetwork.load(file.getPath());
+		resumed.clearListeners();
+		resumed.setEarlyStopping(2, 1000);
+
+		List<Integer> epochs = new ArrayList<>();
+
+		resumed.addListener(new TrainingListener() {
+			@Override
+			public void epochCompleted(int epoch) {
+				epochs.add(epoch);
+			}
+		});
+
+		resumed.fit(createFixedLoader(30, 4, 4, 16), createFixedLoader(30, 4, 2, 16));
+
+		// The epoch without improvement before the crash still counts.
+		assertEquals(List.of(2), epochs);
+		assertEquals(10, resumed.getCompletedEpochs());
+	}
+
+	@Test(expected = ModelFileException.class)
+	public void testLoadRejectsOtherFiles() throws IOException {
+		File file = File.createTempFile("model", ".net");
+		file.deleteOnExit();
+
+		Files.write(file.toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+
+		NeuralNetwork.load(file.getPath());
+	}
+
+	@Test
+	public void testConvertSerializedNetwork() throws Exception {
+		NeuralNetwork neuralNetwork = new NeuralNetwork();
+		neuralNetwork.add(Transform.DENSE, 20, 10);
+		neuralNetwork.add(Transform.RELU);
+		neuralNetwork.add(Transform.DENSE, 3);
+		neuralNetwork.add(Transform.SOFTMAX);
+
+		/*
+		 * The fields that baseline networks did not have come back null from
+		 * their streams.
+		 */
+		clearFields(neuralNetwork.getEngine(), "windows", "precision", "optimizer", "optimizerParams");
+		clearFields(neuralNetwork, "executorStrategy", "learningRateSchedule");
+
+		File serialized = File.createTempFile("network", ".ser");
+		serialized.deleteOnExit();
+		File model = File.createTempFile("model", ".net");
+		model.deleteOnExit();
+
+		try (var os = new ObjectOutputStream(new FileOutputStream(serialized))) {
+			os.writeObject(neuralNetwork);
+		}
+
+		ModelConverter.main(new String[] { serialized.getPath(), model.getPath() });
+
+		NeuralNetwork converted = NeuralNetwork.load(model.getPath());
+		double[] input = new Random(5).doubles(10).toArray();
+
+		assertEquals(Precision.DOUBLE, converted.getEngine().getPrecision());
+		assertArrayEquals(neuralNetwork.predict(input), converted.predict(input), 0);
+	}
+
+	private static void clearFields(Object object, String... names) throws ReflectiveOperationException {
+		for (String name : names) {
+			var field = object.getClass().getDeclaredField(name);
+			field.setAccessible(true);
+			field.set(object, null);
+		}
+	}
+
+	@Test
+	public void testPredictBatch() throws Exception {
+		int inputSize = 12;
+		int outputSize = 5;
+		int count = 300;
+
+		NeuralNetwork neuralNetwork = new NeuralNetwork();
+		neuralNetwork.add(Transform.DENSE, 20, inputSize);
+		neuralNetwork.add(Transform.RELU);
+		neuralNetwork.add(Transform.DENSE, outputSize);
+		neuralNetwork.add(Transform.SOFTMAX);
+
+		double[] flat = new double[count * inputSize];
+		double[][] inputs = new double[count][inputSize];
+
+		for (int i = 0; i < flat.length; i++) {
+			flat[i] = random.nextGaussian();
+			inputs[i / inputSize][i % inputSize] = flat[i];
+		}
+
+		Matrix expected = neuralNetwork.getEngine().runForwards(new Matrix(inputSize, count, flat)).getOutput();
+		Matrix expectedLabels = expected.getGreatestRowNumbers();
+
+		double[][] outputs = neuralNetwork.predictBatch(inputs);
+		double[] flatOutputs = neuralNetwork.predictBatch(flat, count);
+		int[] labels = neuralNetwork.classifyBatch(inputs);
+
+		for (int item = 0; item < count; item++) {
+			for (int row = 0; row < outputSize; row++) {
+				assertEquals(expected.get(row, item), outputs[item][row], 0.000000001);
+				assertEquals(expected.get(row, item), flatOutputs[item * outputSize + row], 0.000000001);
+			}
+
+			assertEquals((int) expectedLabels.get(item), labels[item]);
+		}
+
+		var executor = Executors.newFixedThreadPool(4);
+		var futures = new ArrayList<Future<int[]>>();
+
+		for (int i = 0; i < 8; i++) {
+			futures.add(executor.submit(() -> neuralNetwork.classifyBatch(flat, count)));
+		}
+
+		for (var future : futures) {
+			assertArrayEquals(labels, future.get());
+		}
+
+		executor.shutdown();
+	}
+
+	@Test
+	public void testTrainingListener() {
+		int inputSize = 10;
+		int expectedSize = 3;
+
+		for (boolean dataParallel : new boolean[] { false, true }) {
+			NeuralNetwork neuralNetwork = createDataParallelNetwork(inputSize, expectedSize);
+			neuralNetwork.setDataParallel(dataParallel);
+			neuralNetwork.clearListeners();
+
+			List<BatchMetrics> batches = new ArrayList<>();
+			List<EpochMetrics> passes = new ArrayList<>();
+
+			neuralNetwork.addListener(new TrainingListener() {
+				public void batchCompleted(BatchMetrics metrics) {
+					batches.add(metrics);
+				}
+
+				public void passCompleted(EpochMetrics metrics) {
+					passes.add(metrics);
+				}
+			});
+
+			neuralNetwork.fit(createFixedLoader(inputSize, expectedSize, 11, 8), createFixedLoader(inputSize, expectedSize, 4, 8));
+
+			assertEquals(2 * (11 + 4), batches.size());
+			assertEquals(4, passes.size());
+
+			for (var metrics : batches) {
+				assertEquals(8, metrics.getItems());
+				assertTrue(metrics.getForwardNanos() > 0);
+				assertTrue(metrics.isTraining() == metrics.getBackwardNanos() > 0);
+			}
+
+			EpochMetrics training = passes.get(0);
+			EpochMetrics evaluation = passes.get(1);
+
+			assertTrue(training.isTraining() && !evaluation.isTraining());
+			assertEquals(88, training.getItems());
+			assertTrue(training.getSamplesPerSecond() > 0);
+			assertTrue(evaluation.getAveragePercentCorrect() >= 0 && evaluation.getAveragePercentCorrect() <= 100);
+			assertTrue(Double.isFinite(evaluation.getAverageLoss()));
+		}
+	}
+
+	@Test
+	public void testBatchesInFlightBounded() {
+		int inputSize = 10;
+		int expectedSize = 3;
+		int maxInFlight = 3;
+
+		Loader fixedLoader = createFixedLoader(inputSize, expectedSize, 50, 4);
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxObserved = new AtomicInteger();
+		Set<Thread> workers = ConcurrentHashMap.newKeySet();
+
+		Loader loader = withReadHook(fixedLoader, () -> {
+			maxObserved.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			workers.add(Thread.currentThread());
+		});
+
+		NeuralNetwork neuralNetwork = createDataParallelNetwork(inputSize, expectedSize);
+		neuralNetwork.setDataParallel(false);
+		neuralNetwork.setThreads(4);
+		neuralNetwork.setMaxBatchesInFlight(maxInFlight);
+		neuralNetwork.setEpochs(3);
+		neuralNetwork.clearListeners();
+
+		neuralNetwork.addListener(new TrainingListener() {
+			public void batchCompleted(BatchMetrics metrics) {
+				inFlight.decrementAndGet();
+			}
+		});
+
+		neuralNetwork.fit(loader, null);
+		neuralNetwork.shutdown();
+
+		assertTrue(maxObserved.get() <= maxInFlight);
+		assertTrue(workers.size() <= 4);
+	}
+
+	@Test
+	public void testVirtualThreadStrategy() {
+		int inputSize = 10;
+		int expectedSize = 3;
+
+		Loader fixedLoader = createFixedLoader(inputSize, expectedSize, 20, 8);
+		Set<Boolean> virtualReads = ConcurrentHashMap.newKeySet();
+
+		Loader loader = withReadHook(fixedLoader, () -> virtualReads.add(Thread.currentThread().isVirtual()));
+
+		NeuralNetwork neuralNetwork = createDataParallelNetwork(inputSize, expectedSize);
+		neuralNetwork.setDataParallel(false);
+		neuralNetwork.setExecutorStrategy(ExecutorStrategy.VIRTUAL_THREADS);
+		neuralNetwork.clearListeners();
+
+		List<EpochMetrics> passes = new ArrayList<>();
+
+		neuralNetwork.addListener(new TrainingListener() {
+			public void passCompleted(EpochMetrics metrics) {
+				passes.add(metrics);
+			}
+		});
+
+		neuralNetwork.fit(loader, loader);
+		neuralNetwork.shutdown();
+
+		assertEquals(Set.of(true), virtualReads);
+		assertEquals(4, passes.size());
+		assertEquals(160, passes.get(3).getItems());
+	}
+
+	private void trainStep(Engine engine, Workspace workspace, Matrix input, Matrix expected) {
+		BatchResult batchResult = engine.runForwards(input, workspace);
+		engine.runBackwards(batchResult, expected, workspace);
+		engine.adjust(batchResult, 0.001, workspace);
+	}
+
 	@Test
 	public void testWeightGradient() {
 		int inputRows = 4;
@@ -114,6 +796,121 @@ public class NeuralNetTest {
 		assertTrue(approximatedError.equals(calculatedError));
 	}
 
+	@Test
+	public void testConvolutionEngine() {
+		int cols = 3;
+
+		Engine engine = new Engine();
+
+		engine.setInputShape(2, 6, 5);
+		engine.add(Transform.CONV2D, 3, 3, 1, 1);
+		engine.add(Transform.RELU);
+		engine.add(Transform.MAXPOOL, 2);
+		engine.add(Transform.CONV2D, 4, 2);
+		engine.add(Transform.DENSE, 4);
+		engine.add(Transform.SOFTMAX);
+
+		engine.setStoreInputError(true);
+
+		assertEquals(60, engine.getInputSize());
+		assertEquals(4, engine.getWeights().get(2).getRows());
+		assertEquals(8, engine.getWeights().get(2).getCols());
+
+		Matrix input = Util.generateInputMatrix(60, cols);
+		Matrix expected = Util.generateExpectedMatrix(4, cols);
+
+		Matrix approximatedError = Approximator.gradient(input, in -> {
+			BatchResult batchResult = engine.runForwards(in);
+			return LossFunctions.crossEntropy(expected, batchResult.getIo().getLast());
+		});
+
+		BatchResult batchResult = engine.runForwards(input);
+		engine.runBackwards(batchResult, expected);
+
+		Matrix calculatedError = batchResult.getInputError();
+
+		calculatedError.setTolerance(0.001);
+
+		assertTrue(calculatedError.equals(approximatedError));
+
+		Gradients gradients = engine.createGradients();
+		engine.accumulateGradients(batchResult, gradients);
+
+		assertEquals(cols, gradients.getSamples());
+
+		Matrix weight = engine.getWeights().get(0);
+		Matrix approximatedWeightGradient = Approximator.weightGradient(weight, w -> {
+			engine.getWeights().set(0, w);
+			Matrix loss = LossFunctions.crossEntropy(expected, engine.runForwards(input).getIo().getLast());
+			engine.getWeights().set(0, weight);
+
+			return new Matrix(1, 1, i -> loss.sum());
+		});
+
+		Matrix calculatedWeightGradient = gradients.getWeightGradient(0);
+
+		calculatedWeightGradient.setTolerance(0.001);
+
+		assertTrue(calculatedWeightGradient.equals(approximatedWeightGradient));
+	}
+
+	@Test
+	public void testEmbedding() {
+		NeuralNetwork neuralNetwork = new NeuralNetwork();
+		neuralNetwork.add(Transform.DENSE, 20, 10);
+		neuralNetwork.add(Transform.RELU);
+		neuralNetwork.add(Transform.DENSE, 3);
+		neuralNetwork.add(Transform.SOFTMAX);
+
+		assertEquals(20, neuralNetwork.getEmbeddingSize());
+
+		Matrix input = Util.generateInputMatrix(10, 2);
+		double[] inputs = new double[20];
+
+		for (int col = 0; col < 2; col++) {
+			for (int row = 0; row < 10; row++) {
+				inputs[col * 10 + row] = input.get(row, col);
+			}
+		}
+
+		float[] embeddings = neuralNetwork.embedBatch(inputs, 2);
+		Matrix hidden = neuralNetwork.getEngine().runForwards(input).getIo().get(2);
+
+		for (int col = 0; col < 2; col++) {
+			for (int row = 0; row < 20; row++) {
+				assertEquals(hidden.get(row, col), embeddings[col * 20 + row], 0.00001);
+			}
+		}
+	}
+
+	@Test
+	public void testSaveLoadConvolution() throws IOException {
+		NeuralNetwork neuralNetwork = new NeuralNetwork();
+		neuralNetwork.setPrecision(Precision.FLOAT);
+		neuralNetwork.setInputShape(1, 8, 8);
+		neuralNetwork.add(Transform.CONV2D, 4, 3, 1, 1);
+		neuralNetwork.add(Transform.RELU);
+		neuralNetwork.add(Transform.MAXPOOL, 2);
+		neuralNetwork.add(Transform.DENSE, 3);
+		neuralNetwork.add(Transform.SOFTMAX);
+
+		File file = File.createTempFile("model", ".net");
+		file.deleteOnExit();
+
+		neuralNetwork.save(file.getPath());
+		NeuralNetwork loaded = NeuralNetwork.load(file.getPath());
+
+		assertEquals(neuralNetwork.toString(), loaded.toString());
+
+		double[] input = new double[64];
+
+		for (int i = 0; i < input.length; i++) {
+			input[i] = random.nextGaussian();
+		}
+
+		assertArrayEquals(neuralNetwork.predict(input), loaded.predict(input), 0);
+	}
+
 	@Test
 	public void testBackprop() {
 
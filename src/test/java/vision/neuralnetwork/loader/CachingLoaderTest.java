@@ -0,0 +1,124 @@
+package vision.neuralnetwork.loader;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import vision.neuralnetwork.loader.image.IdxFiles;
+import vision.neuralnetwork.loader.image.ImageLoader;
+import vision.neuralnetwork.loader.image.ImageMetaData;
+import vision.neuralnetwork.loader.test.TestLoader;
+
+public class CachingLoaderTest {
+	private static final int ITEMS = 100;
+	private static final int BATCH_SIZE = 10;
+	private static final int INPUT_SIZE = 20;
+
+	private AtomicInteger opens = new AtomicInteger();
+	private AtomicInteger reads = new AtomicInteger();
+
+	private ImageLoader createImageLoader() throws Exception {
+		File images = File.createTempFile("images", ".idx3-ubyte");
+		File labels = File.createTempFile("labels", ".idx1-ubyte");
+
+		images.deleteOnExit();
+		labels.deleteOnExit();
+
+		IdxFiles.write(images, labels, ITEMS, 5, 4);
+
+		return new ImageLoader(images.getPath(), labels.getPath(), BATCH_SIZE) {
+			@Override
+			public ImageMetaData open() {
+				opens.incrementAndGet();
+				return super.open();
+			}
+
+			@Override
+			public vision.neuralnetwork.loader.image.ImageBatchData readBatch(int batch) {
+				reads.incrementAndGet();
+				return super.readBatch(batch);
+			}
+		};
+	}
+
+	private List<double[]> readEpoch(Loader loader) {
+		MetaData metaData = loader.open();
+		List<double[]> inputs = new ArrayList<>();
+
+		for (int i = 0; i < metaData.getNumberBatches(); i++) {
+			inputs.add(loader.readBatch().getInputBatch());
+		}
+
+		assertNull(loader.readBatch());
+		loader.close();
+
+		return inputs;
+	}
+
+	private void assertSameBatches(List<double[]> expected, List<double[]> actual) {
+		Comparator<double[]> byFirstValue = Comparator.comparingDouble(values -> values[0]);
+
+		expected = new ArrayList<>(expected);
+		actual = new ArrayList<>(actual);
+		expected.sort(byFirstValue);
+		actual.sort(byFirstValue);
+
+		assertEquals(expected.size(), actual.size());
+
+		for (int i = 0; i < expected.size(); i++) {
+			assertArrayEquals(expected.get(i), actual.get(i), 0);
+		}
+	}
+
+	private List<Double> firstValues(List<double[]> batches) {
+		return batches.stream().map(values -> values[0]).toList();
+	}
+
+	@Test
+	public void testServesLaterEpochsFromMemory() throws Exception {
+		CachingLoader loader = new CachingLoader(createImageLoader(), 1 << 20);
+		loader.setShuffle(true);
+		loader.setSeed(3);
+
+		List<double[]> first = readEpoch(loader);
+		List<double[]> second = readEpoch(loader);
+		List<double[]> third = readEpoch(loader);
+
+		assertEquals(1, opens.get());
+		assertEquals(ITEMS / BATCH_SIZE, reads.get());
+		assertEquals(ITEMS * (INPUT_SIZE + 10), loader.getCachedBytes());
+
+		assertSameBatches(first, second);
+		assertSameBatches(first, third);
+		assertNotEquals(firstValues(second), firstValues(third));
+	}
+
+	@Test
+	public void testSpillsWhenOverBudget() throws Exception {
+		CachingLoader loader = new CachingLoader(createImageLoader(), 4 * BATCH_SIZE * (INPUT_SIZE + 10));
+
+		List<double[]> first = readEpoch(loader);
+		reads.set(0);
+
+		assertSameBatches(first, readEpoch(loader));
+		assertEquals(4, loader.getCachedBatches());
+		assertEquals(ITEMS / BATCH_SIZE - 4, reads.get());
+	}
+
+	@Test
+	public void testSequentialLoaderPassesThroughWhenOverBudget() {
+		CachingLoader loader = new CachingLoader(new TestLoader(ITEMS, BATCH_SIZE), 1000);
+
+		for (int epoch = 0; epoch < 3; epoch++) {
+			assertEquals(ITEMS / BATCH_SIZE, readEpoch(loader).size());
+		}
+
+		assertEquals(0, loader.getCachedBatches());
+	}
+}
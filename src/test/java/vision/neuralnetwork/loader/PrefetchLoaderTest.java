@@ -0,0 +1,155 @@
+package vision.neuralnetwork.loader;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import vision.neuralnetwork.loader.test.TestLoader;
+
+public class PrefetchLoaderTest {
+
+	@Test
+	public void testDeliversEveryBatch() {
+		int numberItems = 1000;
+		int batchSize = 33;
+
+		PrefetchLoader loader = new PrefetchLoader(new TestLoader(numberItems, batchSize), 3, 4);
+
+		for (int epoch = 0; epoch < 2; epoch++) {
+			MetaData metaData = loader.open();
+
+			int totalItems = 0;
+
+			for (int i = 0; i < metaData.getNumberBatches(); i++) {
+				BatchData batchData = loader.readBatch();
+
+				assertNotNull(batchData);
+				assertEquals(batchData.getItemsRead() * metaData.getInputSize(), batchData.getInputBatch().length);
+
+				totalItems += batchData.getItemsRead();
+			}
+
+			assertNull(loader.readBatch());
+			assertEquals(numberItems, totalItems);
+			assertEquals(metaData.getNumberBatches(), loader.getBatchesDelivered());
+			assertTrue(loader.getAverageQueueDepth() <= 4);
+
+			loader.close();
+		}
+	}
+
+	@Test
+	public void testProducerFailure() {
+		Loader failing = new TestLoader(100, 10) {
+			@Override
+			public synchronized BatchData readBatch() {
+				throw new IllegalStateException("broken");
+			}
+		};
+
+		PrefetchLoader loader = new PrefetchLoader(failing, 2, 4);
+		loader.open();
+
+		try {
+			loader.readBatch();
+			fail("Expected producer failure to reach the consumer");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		} finally {
+			loader.close();
+		}
+	}
+
+	@Test
+	public void testCloseWaitsForProducers() {
+		int numberItems = 200;
+		AtomicBoolean closed = new AtomicBoolean();
+		AtomicInteger readsAfterClose = new AtomicInteger();
+
+		Loader slow = new TestLoader(numberItems, 10) {
+			@Override
+			public MetaData open() {
+				closed.set(false);
+				return super.open();
+			}
+
+			@Override
+			public BatchData readBatch() {
+				long end = System.nanoTime() + 2_000_000;
+
+				while (System.nanoTime() < end) {
+					Thread.onSpinWait();
+				}
+
+				if (closed.get()) {
+					readsAfterClose.incrementAndGet();
+				}
+
+				return super.readBatch();
+			}
+
+			@Override
+			public void close() {
+				closed.set(true);
+				super.close();
+			}
+		};
+
+		PrefetchLoader loader = new PrefetchLoader(slow, 3, 2);
+
+		loader.open();
+		assertNotNull(loader.readBatch());
+		loader.close();
+
+		assertEquals(0, readsAfterClose.get());
+
+		MetaData metaData = loader.open();
+		int totalItems = 0;
+
+		for (int i = 0; i < metaData.getNumberBatches(); i++) {
+			totalItems += loader.readBatch().getItemsRead();
+		}
+
+		loader.close();
+
+		assertEquals(numberItems, totalItems);
+		assertEquals(0, readsAfterClose.get());
+	}
+
+	@Test(timeout = 10000)
+	public void testFailureWithFullQueue() throws InterruptedException {
+		AtomicInteger reads = new AtomicInteger();
+
+		Loader failing = new TestLoader(100, 10) {
+			@Override
+			public synchronized BatchData readBatch() {
+				if (reads.incrementAndGet() > 2) {
+					throw new IllegalStateException("broken");
+				}
+
+				return super.readBatch();
+			}
+		};
+
+		PrefetchLoader loader = new PrefetchLoader(failing, 2, 1);
+		loader.open();
+
+		// Let the producers fill the queue and fail against it before anything is read.
+		Thread.sleep(100);
+
+		try {
+			for (int i = 0; i < 10; i++) {
+				loader.readBatch();
+			}
+
+			fail("Expected producer failure to reach the consumer");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		} finally {
+			loader.close();
+		}
+	}
+}
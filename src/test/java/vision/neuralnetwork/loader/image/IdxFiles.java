@@ -0,0 +1,42 @@
+package vision.neuralnetwork.loader.image;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class IdxFiles {
+
+	public static byte pixel(int item, int index) {
+		return (byte) (item * 31 + index * 7);
+	}
+
+	public static int label(int item) {
+		return (item * 7) % 10;
+	}
+
+	public static void write(File imageFile, File labelFile, int numberItems, int width, int height) throws IOException {
+		try (var ds = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(imageFile)))) {
+			ds.writeInt(2051);
+			ds.writeInt(numberItems);
+			ds.writeInt(height);
+			ds.writeInt(width);
+
+			for (int item = 0; item < numberItems; item++) {
+				for (int i = 0; i < width * height; i++) {
+					ds.writeByte(pixel(item, i));
+				}
+			}
+		}
+
+		try (var ds = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(labelFile)))) {
+			ds.writeInt(2049);
+			ds.writeInt(numberItems);
+
+			for (int item = 0; item < numberItems; item++) {
+				ds.writeByte(label(item));
+			}
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package vision.neuralnetwork.loader.image;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class ImageLoaderTest {
+	private static final int WIDTH = 5;
+	private static final int HEIGHT = 4;
+
+	private File[] createFiles(int numberItems) throws Exception {
+		File images = File.createTempFile("images", ".idx3-ubyte");
+		File labels = File.createTempFile("labels", ".idx1-ubyte");
+
+		images.deleteOnExit();
+		labels.deleteOnExit();
+
+		IdxFiles.write(images, labels, numberItems, WIDTH, HEIGHT);
+
+		return new File[] { images, labels };
+	}
+
+	private void checkBatch(ImageBatchData batchData, int firstItem, int expectedItems) {
+		int inputSize = WIDTH * HEIGHT;
+
+		assertEquals(expectedItems, batchData.getItemsRead());
+
+		double[] input = batchData.getInputBatch();
+		double[] expected = batchData.getExpectedBatch();
+
+		for (int i = 0; i < expectedItems; i++) {
+			int item = firstItem + i;
+
+			for (int p = 0; p < inputSize; p++) {
+				assertTrue(input[i * inputSize + p] == (IdxFiles.pixel(item, p) & 0xFF) / 256.0);
+			}
+
+			for (int e = 0; e < 10; e++) {
+				assertTrue(expected[i * 10 + e] == (e == IdxFiles.label(item) ? 1 : 0));
+			}
+		}
+	}
+
+	@Test
+	public void testReadBatches() throws Exception {
+		File[] files = createFiles(103);
+		ImageLoader loader = new ImageLoader(files[0].getPath(), files[1].getPath(), 10);
+
+		ImageMetaData metaData = loader.open();
+
+		assertEquals(103, metaData.getNumberItems());
+		assertEquals(11, metaData.getNumberBatches());
+		assertEquals(WIDTH * HEIGHT, metaData.getInputSize());
+
+		for (int batch = 0; batch < metaData.getNumberBatches(); batch++) {
+			var batchData = (ImageBatchData) loader.readBatch();
+
+			checkBatch(batchData, batch * 10, batch == 10 ? 3 : 10);
+		}
+
+		assertNull(loader.readBatch());
+
+		loader.close();
+	}
+
+	@Test
+	public void testConcurrentRandomAccess() throws Exception {
+		File[] files = createFiles(1000);
+		ImageLoader loader = new ImageLoader(files[0].getPath(), files[1].getPath(), 7);
+
+		ImageMetaData metaData = loader.open();
+		var tasks = new ArrayList<Callable<Void>>();
+
+		for (int batch = metaData.getNumberBatches() - 1; batch >= 0; batch--) {
+			final int index = batch;
+
+			tasks.add(() -> {
+				checkBatch(loader.readBatch(index), index * 7, Math.min(7, 1000 - index * 7));
+				return null;
+			});
+		}
+
+		var executor = Executors.newFixedThreadPool(8);
+
+		try {
+			for (var future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		loader.close();
+	}
+
+	private int[] readShuffledEpoch(ImageLoader loader) {
+		ImageMetaData metaData = loader.open();
+		int inputSize = WIDTH * HEIGHT;
+
+		int[] items = new int[metaData.getNumberItems()];
+		int position = 0;
+
+		for (int batch = 0; batch < metaData.getNumberBatches(); batch++) {
+			ImageBatchData batchData = loader.readBatch(batch);
+
+			for (int i = 0; i < batchData.getItemsRead(); i++) {
+				int item = items[position++] = findItem(batchData.getInputBatch()[i * inputSize]);
+
+				checkItem(batchData, i, item);
+			}
+		}
+
+		loader.close();
+
+		return items;
+	}
+
+	private int findItem(double firstPixel) {
+		for (int item = 0; item < 256; item++) {
+			if ((IdxFiles.pixel(item, 0) & 0xFF) / 256.0 == firstPixel) {
+				return item;
+			}
+		}
+
+		throw new AssertionError("Unknown item");
+	}
+
+	private void checkItem(ImageBatchData batchData, int index, int item) {
+		int inputSize = WIDTH * HEIGHT;
+
+		for (int p = 0; p < inputSize; p++) {
+			assertTrue(batchData.getInputBatch()[index * inputSize + p] == (IdxFiles.pixel(item, p) & 0xFF) / 256.0);
+		}
+
+		assertTrue(batchData.getExpectedBatch()[index * 10 + IdxFiles.label(item)] == 1);
+	}
+
+	@Test
+	public void testShuffledEpochs() throws Exception {
+		File[] files = createFiles(200);
+
+		ImageLoader loader = new ImageLoader(files[0].getPath(), files[1].getPath(), 16);
+		loader.setShuffle(true);
+		loader.setSeed(5);
+
+		int[] first = readShuffledEpoch(loader);
+		int[] second = readShuffledEpoch(loader);
+
+		assertFalse(Arrays.equals(first, second));
+
+		for (int[] items : new int[][] { first, second }) {
+			int[] sorted = items.clone();
+			Arrays.sort(sorted);
+
+			for (int i = 0; i < sorted.length; i++) {
+				assertEquals(i, sorted[i]);
+			}
+		}
+
+		loader.setSeed(5);
+
+		assertArrayEquals(first, readShuffledEpoch(loader));
+	}
+
+	@Test
+	public void testChunkedMapping() throws Exception {
+		File[] files = createFiles(50);
+		int itemSize = WIDTH * HEIGHT;
+
+		MappedIdxFile images = new MappedIdxFile(files[0].getPath(), 2051, 3 * itemSize + 5);
+
+		assertEquals(17, images.getNumberChunks());
+
+		double[] data = new double[itemSize];
+
+		for (int item = 0; item < 50; item++) {
+			images.read(item, data, 0, 1);
+
+			for (int p = 0; p < itemSize; p++) {
+				assertTrue(data[p] == (IdxFiles.pixel(item, p) & 0xFF));
+				assertTrue(images.get(item, p) == (IdxFiles.pixel(item, p) & 0xFF));
+			}
+		}
+	}
+}
@@ -26,7 +26,7 @@ public class TestTestLoader {
 			
 			assertTrue(batchData != null);
 			
-			int itemsRead = metaData.getItemsRead();
+			int itemsRead = batchData.getItemsRead();
 			int inputSize = metaData.getInputSize();
 			int expectedSize = metaData.getExpectedSize();
 			
@@ -0,0 +1,91 @@
+package vision.opencv;
+
+import static org.junit.Assert.*;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+
+/*
+ * Runs the detector offline with a small test cascade, on a still with a
+ * drawn face and on synthetic frames with none.
+ */
+public class FaceDetectorTest {
+	private static final String CASCADE = "./src/test/resources/opencv/face_cascade.xml";
+	private static final String FACE_IMAGE = "./src/test/resources/opencv/face.png";
+
+	@BeforeClass
+	public static void loadOpenCV() {
+		OpenCVLibrary.load();
+	}
+
+	@Test(expected = DetectorException.class)
+	public void testMissingCascade() {
+		new FaceDetector("missing-cascade.xml");
+	}
+
+	@Test
+	public void testDetectsFaceInStill() {
+		try (FaceDetector detector = new FaceDetector(CASCADE)) {
+			Rect[] faces = detector.detect(FACE_IMAGE);
+
+			assertEquals(1, faces.length);
+
+			// Both eyes and the mouth are inside the face found.
+			assertTrue(faces[0].contains(new Point(140, 105)));
+			assertTrue(faces[0].contains(new Point(180, 105)));
+			assertTrue(faces[0].contains(new Point(160, 155)));
+
+			assertEquals(1, detector.getStatistics().getCount());
+		}
+	}
+
+	@Test(expected = DetectorException.class)
+	public void testUnreadableImage() {
+		try (FaceDetector detector = new FaceDetector(CASCADE)) {
+			detector.detect("missing-image.png");
+		}
+	}
+
+	@Test
+	public void testReusedAcrossFrames() {
+		try (FaceDetector detector = new FaceDetector(CASCADE)) {
+			Mat colour = new Mat(240, 320, CvType.CV_8UC3);
+			Mat grey = new Mat(480, 640, CvType.CV_8UC1);
+
+			colour.setTo(new Scalar(128, 128, 128));
+			grey.setTo(new Scalar(0));
+
+			for (int frame = 0; frame < 5; frame++) {
+				assertEquals(0, detector.detect(colour).length);
+				assertEquals(0, detector.detect(grey).length);
+			}
+
+			assertEquals(10, detector.getStatistics().getCount());
+			assertTrue(detector.getStatistics().getMaxNanos() > 0);
+		}
+	}
+
+	@Test
+	public void testServiceGivesEachThreadADetector() throws InterruptedException {
+		try (FaceDetectorService service = new FaceDetectorService(CASCADE)) {
+			Mat image = new Mat(120, 160, CvType.CV_8UC1);
+			image.setTo(new Scalar(0));
+
+			Thread other = new Thread(() -> service.detect(image.clone()));
+			other.start();
+			other.join();
+
+			FaceDetector detector = service.getDetector();
+			service.detect(image);
+
+			assertSame(detector, service.getDetector());
+			assertEquals(2, service.getDetectorCount());
+			assertEquals(2, service.getStatistics().getCount());
+		}
+	}
+}
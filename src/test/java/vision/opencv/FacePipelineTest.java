@@ -0,0 +1,224 @@
+package vision.opencv;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+
+import vision.neuralnetwork.NeuralNetwork;
+import vision.neuralnetwork.Transform;
+
+public class FacePipelineTest {
+	private static final int FRAME_HEIGHT = 120;
+
+	@BeforeClass
+	public static void loadOpenCV() {
+		OpenCVLibrary.load();
+	}
+
+	private NeuralNetwork createNetwork() {
+		NeuralNetwork neuralNetwork = new NeuralNetwork();
+		neuralNetwork.setSeed(3);
+		neuralNetwork.setInputShape(1, 16, 16);
+		neuralNetwork.add(Transform.DENSE, 8);
+		neuralNetwork.add(Transform.RELU);
+		neuralNetwork.add(Transform.DENSE, 4);
+		neuralNetwork.add(Transform.SOFTMAX);
+
+		return neuralNetwork;
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNeedsInputShape() {
+		NeuralNetwork neuralNetwork = new NeuralNetwork();
+		neuralNetwork.add(Transform.DENSE, 4, 10);
+
+		try (FacePipeline pipeline = new FacePipeline(neuralNetwork)) {
+			pipeline.start(result -> {
+			});
+		}
+	}
+
+	/*
+	 * Stands in for the cascade: a frame FRAME_HEIGHT + i rows high has
+	 * i % 3 faces side by side.
+	 */
+	private static Rect[] regions(Mat image) {
+		Rect[] regions = new Rect[(image.rows() - FRAME_HEIGHT) % 3];
+
+		for (int i = 0; i < regions.length; i++) {
+			regions[i] = new Rect(i * 40, 10, 32, 32);
+		}
+
+		return regions;
+	}
+
+	@Test
+	public void testDrainsEveryFrame() {
+		int frameCount = 20;
+		int batchSize = 4;
+
+		List<FaceResult> results = Collections.synchronizedList(new ArrayList<>());
+		List<String> expected = new ArrayList<>();
+
+		try (FacePipeline pipeline = new FacePipeline(createNetwork(), "missing-cascade.xml")) {
+			pipeline.setDetectors(() -> FacePipelineTest::regions);
+			pipeline.setQueueCapacity(2);
+			pipeline.setBatchSize(batchSize);
+			pipeline.setBatchDeadline(1, TimeUnit.SECONDS);
+			pipeline.start(results::add);
+
+			for (int i = 0; i < frameCount; i++) {
+				Mat frame = new Mat(FRAME_HEIGHT + i, 160, CvType.CV_8UC3);
+				frame.setTo(new Scalar(i * 10, i * 10, i * 10));
+
+				pipeline.submit(frame, "frame" + i);
+
+				for (int face = 0; face < i % 3; face++) {
+					expected.add("frame" + i + " at " + face * 40);
+				}
+			}
+
+			pipeline.submit("missing-image.png");
+			pipeline.drain();
+
+			assertEquals(frameCount + 1, pipeline.getFrames());
+			assertEquals(1, pipeline.getUnreadableFrames());
+			assertEquals(frameCount, pipeline.getStatistics(PipelineStage.DETECT).getCount());
+			assertEquals(expected.size(), pipeline.getFaces());
+
+			/*
+			 * The faces arrive well within the deadline, so every batch but
+			 * the last is full.
+			 */
+			assertEquals((expected.size() + batchSize - 1) / batchSize, pipeline.getBatches());
+
+			// With one thread per stage, faces come out in the order they went in.
+			List<String> actual = new ArrayList<>();
+
+			for (FaceResult result : results) {
+				actual.add(result.getSource() + " at " + result.getRegion().x);
+				assertEquals(4, result.getOutputs().length);
+			}
+
+			assertEquals(expected, actual);
+		}
+	}
+
+	/*
+	 * Input buffers and outputs arrays are reused from face to face, so
+	 * faces with the same pixels must still get the same outputs, and
+	 * faces with different pixels different ones.
+	 */
+	@Test
+	public void testReusedBuffersKeepFacesApart() {
+		Map<String, double[]> outputs = new ConcurrentHashMap<>();
+
+		try (FacePipeline pipeline = new FacePipeline(createNetwork(), "missing-cascade.xml")) {
+			pipeline.setDetectors(() -> FacePipelineTest::regions);
+			pipeline.setQueueCapacity(2);
+			pipeline.setBatchSize(4);
+			pipeline.setBatchDeadline(1, TimeUnit.SECONDS);
+			pipeline.start(result -> outputs.put(result.getSource(), result.getOutputs().clone()));
+
+			// A frame one row over FRAME_HEIGHT has one face.
+			for (int i = 0; i < 12; i++) {
+				Mat frame = new Mat(FRAME_HEIGHT + 1, 160, CvType.CV_8UC3);
+				frame.setTo(new Scalar(i % 3 * 100, i % 3 * 100, i % 3 * 100));
+
+				pipeline.submit(frame, "frame" + i);
+			}
+
+			pipeline.drain();
+		}
+
+		assertEquals(12, outputs.size());
+
+		for (int i = 3; i < 12; i++) {
+			assertArrayEquals(outputs.get("frame" + (i % 3)), outputs.get("frame" + i), 0);
+		}
+
+		assertFalse(Arrays.equals(outputs.get("frame0"), outputs.get("frame1")));
+		assertFalse(Arrays.equals(outputs.get("frame1"), outputs.get("frame2")));
+	}
+
+	@Test(timeout = 10000)
+	public void testSubmitSeesFailedStage() {
+		try (FacePipeline pipeline = new FacePipeline(createNetwork(), "missing-cascade.xml")) {
+			pipeline.setDetectors(() -> image -> {
+				// Fails only once submit is waiting on a full queue.
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				throw new IllegalStateException("Detector broke");
+			});
+			pipeline.setQueueCapacity(2);
+			pipeline.start(result -> {
+			});
+
+			// More frames than the queue holds, so submit would block if it missed the failure.
+			for (int i = 0; i < 20; i++) {
+				pipeline.submit(new Mat(FRAME_HEIGHT, 160, CvType.CV_8UC3), "frame" + i);
+			}
+
+			fail("Submit should have thrown");
+		} catch (DetectorException e) {
+			assertEquals("Detector broke", e.getCause().getMessage());
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testConsumerFailure() {
+		List<FaceResult> results = Collections.synchronizedList(new ArrayList<>());
+		DetectorException failure = null;
+
+		try (FacePipeline pipeline = new FacePipeline(createNetwork(), "missing-cascade.xml")) {
+			pipeline.setDetectors(() -> FacePipelineTest::regions);
+			pipeline.setBatchSize(4);
+			pipeline.setBatchDeadline(200, TimeUnit.MILLISECONDS);
+			pipeline.start(result -> {
+				results.add(result);
+
+				if (results.size() == 1) {
+					throw new IllegalStateException("Consumer broke");
+				}
+			});
+
+			// Three faces, which make up a single batch.
+			for (int i = 0; i < 3; i++) {
+				pipeline.submit(new Mat(FRAME_HEIGHT + i, 160, CvType.CV_8UC3), "frame" + i);
+			}
+
+			try {
+				pipeline.drain();
+
+				for (int i = 0; i < 20; i++) {
+					pipeline.submit(new Mat(FRAME_HEIGHT, 160, CvType.CV_8UC3), "more" + i);
+				}
+			} catch (DetectorException e) {
+				failure = e;
+			}
+		}
+
+		assertNotNull(failure);
+		assertEquals("Consumer broke", failure.getCause().getMessage());
+
+		// The rest of the batch was still delivered.
+		assertEquals(3, results.size());
+	}
+}
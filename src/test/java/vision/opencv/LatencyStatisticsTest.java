@@ -0,0 +1,51 @@
+package vision.opencv;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyStatisticsTest {
+
+	@Test
+	public void testPercentiles() {
+		LatencyStatistics statistics = new LatencyStatistics();
+
+		assertEquals(0, statistics.getPercentileNanos(0.5));
+
+		for (long nanos = 1; nanos <= 1000; nanos++) {
+			statistics.record(nanos * 1000);
+		}
+
+		assertEquals(1000, statistics.getCount());
+		assertEquals(1000, statistics.getMinNanos());
+		assertEquals(1_000_000, statistics.getMaxNanos());
+		assertEquals(500_500, statistics.getAverageNanos(), 0.001);
+
+		/*
+		 * Percentiles are bucket edges, no more than a quarter high.
+		 */
+		long median = statistics.getPercentileNanos(0.5);
+		long p99 = statistics.getPercentileNanos(0.99);
+
+		assertTrue("Median " + median, median >= 500_000 && median <= 625_000);
+		assertTrue("p99 " + p99, p99 >= 990_000 && p99 <= 1_000_000);
+		assertEquals(1_000_000, statistics.getPercentileNanos(1));
+
+		statistics.reset();
+
+		assertEquals(0, statistics.getCount());
+		assertEquals(0, statistics.getMaxNanos());
+	}
+
+	@Test
+	public void testSmallValuesAreExact() {
+		LatencyStatistics statistics = new LatencyStatistics();
+
+		for (long nanos = 0; nanos < 8; nanos++) {
+			statistics.record(nanos);
+		}
+
+		assertEquals(3, statistics.getPercentileNanos(0.5));
+		assertEquals(7, statistics.getPercentileNanos(1));
+	}
+}
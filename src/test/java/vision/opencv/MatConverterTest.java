@@ -0,0 +1,96 @@
+package vision.opencv;
+
+import static org.junit.Assert.*;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+public class MatConverterTest {
+	private static final double SCALE = 1.0 / 256.0;
+
+	@BeforeClass
+	public static void loadOpenCV() {
+		OpenCVLibrary.load();
+	}
+
+	@Test
+	public void testGreyPixels() {
+		Mat image = new Mat(2, 3, CvType.CV_8UC1);
+		image.put(0, 0, new byte[] { 0, 1, 2, (byte) 128, (byte) 255, 10 });
+
+		try (MatConverter converter = new MatConverter(1, 2, 3, 2)) {
+			converter.add(image);
+			converter.add(image);
+
+			assertTrue(converter.isFull());
+
+			double[] expected = { 0, 1, 2, 128, 255, 10 };
+			double[] batch = converter.getBatch();
+
+			for (int i = 0; i < 12; i++) {
+				assertEquals(expected[i % 6] * SCALE, batch[i], 0);
+			}
+		}
+	}
+
+	@Test
+	public void testColourChannelsFirst() {
+		Mat image = new Mat(1, 2, CvType.CV_8UC3);
+		image.put(0, 0, new byte[] { 1, 2, 3, 4, 5, 6 });
+
+		try (MatConverter converter = new MatConverter(3, 1, 2, 1)) {
+			converter.add(image);
+
+			double[] expected = { 1, 4, 2, 5, 3, 6 };
+
+			for (int i = 0; i < expected.length; i++) {
+				assertEquals(expected[i] * SCALE, converter.getBatch()[i], 0);
+			}
+		}
+	}
+
+	@Test
+	public void testRegionAndResize() {
+		Mat image = new Mat(4, 4, CvType.CV_8UC1);
+		byte[] pixels = new byte[16];
+
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = (byte) i;
+		}
+
+		image.put(0, 0, pixels);
+
+		try (MatConverter converter = new MatConverter(1, 2, 2, 2)) {
+			converter.add(image.submat(1, 3, 1, 3));
+
+			double[] expected = { 5, 6, 9, 10 };
+
+			for (int i = 0; i < expected.length; i++) {
+				assertEquals(expected[i] * SCALE, converter.getBatch()[i], 0);
+			}
+
+			Mat flat = new Mat(8, 8, CvType.CV_8UC1);
+			flat.setTo(new Scalar(100));
+
+			converter.add(flat);
+
+			for (int i = 4; i < 8; i++) {
+				assertEquals(100 * SCALE, converter.getBatch()[i], 0);
+			}
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testBatchFull() {
+		Mat image = new Mat(2, 2, CvType.CV_8UC1);
+		image.setTo(new Scalar(0));
+
+		try (MatConverter converter = new MatConverter(1, 2, 2, 1)) {
+			converter.add(image);
+			converter.add(image);
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package vision.opencv;
+
+import static org.junit.Assume.assumeNoException;
+
+import nu.pattern.OpenCV;
+
+/*
+ * Loads the OpenCV native library for the tests that need it. The bundled
+ * library is extracted and loaded directly, which works on any JDK, and a
+ * platform it cannot be loaded on skips the calling test class rather
+ * than failing it.
+ */
+class OpenCVLibrary {
+
+	private OpenCVLibrary() {
+	}
+
+	static void load() {
+		try {
+			OpenCV.loadLocally();
+		} catch (UnsatisfiedLinkError e) {
+			assumeNoException(e);
+		}
+	}
+}